@@ -38,9 +38,16 @@ public class ProducerConsumerApplication implements CommandLineRunner {
 
 	@Autowired
 	private Sender senderPerson;
+
+	// In load generator mode (see LoadConfig), the load replaces the demo record.
+	@Value("${kafka.load.enabled:false}")
+	private boolean loadEnabled;
 	
 	@Override
 	public void run(String... strings) throws Exception {
+		if (loadEnabled) {
+			return;
+		}
 		
 		//1.
 		//sender.send("Spring Kafka Producer and Consumer Example - " + new Date());
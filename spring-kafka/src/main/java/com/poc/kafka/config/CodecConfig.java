@@ -0,0 +1,104 @@
+package com.poc.kafka.config;
+
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import com.poc.kafka.model.PersonModel;
+import com.poc.kafka.serializer.FailSafeDeserializer;
+import com.poc.kafka.serializer.PersonModelBinaryDeserializer;
+import com.poc.kafka.serializer.PersonModelBinarySerializer;
+import com.poc.kafka.serializer.TopicRoutingDeserializer;
+import com.poc.kafka.serializer.TopicRoutingSerializer;
+
+/**
+ * Selects the payload format of PersonModel per topic. Topics use the
+ * kafka.codec.default codec unless they are listed in kafka.codec.json-topics
+ * or kafka.codec.binary-topics. Producers and consumers must of course agree
+ * on the codec of a topic.
+ * 
+ * - json: Spring's JsonSerializer/JsonDeserializer.
+ * - binary: the compact PersonModelBinarySerializer/Deserializer.
+ * 
+ * @author kali
+ *
+ */
+@Configuration
+public class CodecConfig {
+
+	public static final String JSON = "json";
+
+	public static final String BINARY = "binary";
+
+	@Value("${kafka.codec.default:json}")
+	private String defaultCodec;
+
+	@Value("${kafka.codec.json-topics:}")
+	private String[] jsonTopics;
+
+	@Value("${kafka.codec.binary-topics:}")
+	private String[] binaryTopics;
+
+	@Bean
+	public Serializer<PersonModel> personModelSerializer() {
+		TopicRoutingSerializer<PersonModel> serializer = new TopicRoutingSerializer<>(serializer(defaultCodec));
+		for (String topic : jsonTopics) {
+			if (!topic.trim().isEmpty()) {
+				serializer.route(topic.trim(), serializer(JSON));
+			}
+		}
+		for (String topic : binaryTopics) {
+			if (!topic.trim().isEmpty()) {
+				serializer.route(topic.trim(), serializer(BINARY));
+			}
+		}
+		return serializer;
+	}
+
+	/**
+	 * A payload the codec of its topic cannot read does not fail the poll: the
+	 * record is delivered with a null value and the failure in its headers, see
+	 * FailSafeDeserializer.
+	 */
+	@Bean
+	public Deserializer<PersonModel> personModelDeserializer() {
+		TopicRoutingDeserializer<PersonModel> deserializer = new TopicRoutingDeserializer<>(
+				deserializer(defaultCodec));
+		for (String topic : jsonTopics) {
+			if (!topic.trim().isEmpty()) {
+				deserializer.route(topic.trim(), deserializer(JSON));
+			}
+		}
+		for (String topic : binaryTopics) {
+			if (!topic.trim().isEmpty()) {
+				deserializer.route(topic.trim(), deserializer(BINARY));
+			}
+		}
+		return new FailSafeDeserializer<>(deserializer);
+	}
+
+	private static Serializer<PersonModel> serializer(String codec) {
+		if (JSON.equalsIgnoreCase(codec)) {
+			return new JsonSerializer<>();
+		}
+		if (BINARY.equalsIgnoreCase(codec)) {
+			return new PersonModelBinarySerializer();
+		}
+		throw new IllegalArgumentException("Unknown codec '" + codec + "'");
+	}
+
+	private static Deserializer<PersonModel> deserializer(String codec) {
+		if (JSON.equalsIgnoreCase(codec)) {
+			return new JsonDeserializer<>(PersonModel.class);
+		}
+		if (BINARY.equalsIgnoreCase(codec)) {
+			return new PersonModelBinaryDeserializer();
+		}
+		throw new IllegalArgumentException("Unknown codec '" + codec + "'");
+	}
+
+}
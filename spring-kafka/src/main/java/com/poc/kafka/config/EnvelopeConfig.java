@@ -0,0 +1,143 @@
+package com.poc.kafka.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.KafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.listener.AbstractMessageListenerContainer.AckMode;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+
+import com.poc.kafka.consumer.Receiver;
+import com.poc.kafka.envelope.ModelCodecRegistry;
+import com.poc.kafka.envelope.ModelDispatcher;
+import com.poc.kafka.envelope.ModelEnvelopeDeserializer;
+import com.poc.kafka.envelope.ModelEnvelopeSerializer;
+import com.poc.kafka.envelope.PersonModelBinaryCodec;
+import com.poc.kafka.model.Model;
+import com.poc.kafka.model.PersonModel;
+import com.poc.kafka.retry.RetryTopics;
+import com.poc.kafka.serializer.FailSafeDeserializer;
+
+/**
+ * Model envelopes on kafka.envelope.topic, off unless kafka.envelope.enabled
+ * is true: one topic, one producer and one consumer group for every
+ * registered Model subclass, instead of a topic, a consumer factory and a
+ * container per type.
+ * 
+ * To carry a new type, register its codec under a new type id (a
+ * JsonModelCodec is enough to start with) and its handler in the dispatcher.
+ * 
+ * @author kali
+ *
+ */
+@Configuration
+@ConditionalOnProperty(name = "kafka.envelope.enabled")
+public class EnvelopeConfig {
+
+	public static final int PERSON_TYPE_ID = 1;
+
+	@Value("${kafka.envelope.topic:models}")
+	private String topic;
+
+	@Value("${kafka.topic.partitions:1}")
+	private int partitions;
+
+	@Value("${kafka.topic.replication-factor:1}")
+	private short replicationFactor;
+
+	@Value("${kafka.consumer.concurrency:1}")
+	private int concurrency;
+
+	@Autowired
+	private SenderConfig senderConfig;
+
+	@Autowired
+	private ReceiverConfig receiverConfig;
+
+	@Autowired
+	private Receiver receiver;
+
+	@Bean
+	public NewTopic envelopeTopic() {
+		return new NewTopic(topic, partitions, replicationFactor);
+	}
+
+	/**
+	 * Where the ModelReceiver forwards the envelopes it failed to process.
+	 */
+	@Bean
+	@ConditionalOnProperty(name = "kafka.consumer.retry.enabled", matchIfMissing = true)
+	public NewTopic envelopeDeadLetterTopic(RetryTopics retryTopics) {
+		return new NewTopic(retryTopics.deadLetterTopic(topic), partitions, replicationFactor);
+	}
+
+	@Bean
+	public ModelCodecRegistry modelCodecRegistry() {
+		return new ModelCodecRegistry().register(PERSON_TYPE_ID, new PersonModelBinaryCodec());
+	}
+
+	@Bean
+	public ModelEnvelopeSerializer modelEnvelopeSerializer() {
+		return new ModelEnvelopeSerializer(modelCodecRegistry());
+	}
+
+	/**
+	 * PersonModel records get the processing of the Receiver.
+	 */
+	@Bean
+	public ModelDispatcher modelDispatcher() {
+		return new ModelDispatcher().on(PersonModel.class, receiver::process);
+	}
+
+	@Bean
+	public ProducerFactory<String, Model> modelProducerFactory() {
+		return new DefaultKafkaProducerFactory<>(senderConfig.producerConfigs(), new StringSerializer(),
+				modelEnvelopeSerializer());
+	}
+
+	@Bean
+	public KafkaTemplate<String, Model> modelKafkaTemplate() {
+		KafkaTemplate<String, Model> template = new KafkaTemplate<>(modelProducerFactory());
+		template.setDefaultTopic(topic);
+		return template;
+	}
+
+	@Bean
+	public ConsumerFactory<String, Model> modelConsumerFactory() {
+		Map<String, Object> props = new HashMap<>(receiverConfig.batchConsumerConfigs());
+		props.put(ConsumerConfig.GROUP_ID_CONFIG, "models");
+		return new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(),
+				new FailSafeDeserializer<>(new ModelEnvelopeDeserializer(modelCodecRegistry())));
+	}
+
+	/**
+	 * Batch listener container factory of the envelope topic, committing once
+	 * per batch. An envelope that cannot be read (unknown type id, corrupted
+	 * payload) is delivered with a null value instead of failing the poll.
+	 */
+	@Bean
+	public KafkaListenerContainerFactory<ConcurrentMessageListenerContainer<String, Model>> modelKafkaListenerContainerFactory() {
+		ConcurrentKafkaListenerContainerFactory<String, Model> factory = new ConcurrentKafkaListenerContainerFactory<>();
+		factory.setConsumerFactory(modelConsumerFactory());
+		factory.setBatchListener(true);
+		factory.setConcurrency(Math.min(concurrency, partitions));
+		factory.getContainerProperties().setAckMode(AckMode.BATCH);
+		return factory;
+	}
+
+}
@@ -0,0 +1,112 @@
+package com.poc.kafka.config;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.poc.kafka.load.KeyDistribution;
+import com.poc.kafka.load.LoadGenerator;
+import com.poc.kafka.load.LoadReport;
+import com.poc.kafka.metrics.KafkaMetrics;
+import com.poc.kafka.producer.Sender;
+
+/**
+ * Load generator mode, off unless kafka.load.enabled is true. It replaces the
+ * single demo record of the application, typically from the command line:
+ * 
+ * java -jar spring-kafka.jar --kafka.load.enabled=true --kafka.load.rate=20000
+ * --kafka.load.duration-seconds=600 --spring.kafka.bootstrap-servers=broker:9092
+ * 
+ * The report is written to kafka.load.report-file, then the application exits
+ * unless kafka.load.exit-on-completion is false.
+ * 
+ * @author kali
+ *
+ */
+@Configuration
+@ConditionalOnProperty(name = "kafka.load.enabled")
+public class LoadConfig {
+
+	private static final Logger logger = LoggerFactory.getLogger(LoadConfig.class);
+
+	@Value("${kafka.load.topic:${kafka.topic.batch}}")
+	private String topic;
+
+	@Value("${kafka.load.rate:1000}")
+	private double rate;
+
+	// closed | open
+	@Value("${kafka.load.loop:closed}")
+	private String loop;
+
+	@Value("${kafka.load.producer-threads:1}")
+	private int producerThreads;
+
+	@Value("${kafka.load.payload-bytes:100}")
+	private int payloadBytes;
+
+	@Value("${kafka.load.keys.distribution:uniform}")
+	private String keyDistribution;
+
+	@Value("${kafka.load.keys.count:1000}")
+	private int keyCount;
+
+	@Value("${kafka.load.keys.zipf-exponent:0.99}")
+	private double zipfExponent;
+
+	@Value("${kafka.load.duration-seconds:60}")
+	private long durationSeconds;
+
+	@Value("${kafka.load.report-interval-seconds:5}")
+	private long reportIntervalSeconds;
+
+	@Value("${kafka.load.drain-timeout-seconds:30}")
+	private long drainTimeoutSeconds;
+
+	@Value("${kafka.load.report-file:./load-report.json}")
+	private String reportFile;
+
+	@Value("${kafka.load.exit-on-completion:true}")
+	private boolean exitOnCompletion;
+
+	@Autowired
+	private Sender sender;
+
+	@Autowired
+	private KafkaMetrics kafkaMetrics;
+
+	@Bean
+	public LoadGenerator loadGenerator() {
+		return new LoadGenerator(sender, kafkaMetrics, topic)
+				.withKeys(KeyDistribution.fromName(keyDistribution, keyCount, zipfExponent))
+				.withRate(rate, "open".equalsIgnoreCase(loop)).withProducerThreads(producerThreads)
+				.withPayloadBytes(payloadBytes)
+				.withDuration(TimeUnit.SECONDS.toMillis(durationSeconds),
+						TimeUnit.SECONDS.toMillis(reportIntervalSeconds),
+						TimeUnit.SECONDS.toMillis(drainTimeoutSeconds));
+	}
+
+	@Bean
+	public CommandLineRunner loadRunner(ConfigurableApplicationContext context) {
+		return args -> {
+			LoadReport report = loadGenerator().run();
+			File file = new File(reportFile);
+			report.writeTo(file);
+			logger.info("load report written to {}", file.getAbsolutePath());
+			if (exitOnCompletion) {
+				System.exit(SpringApplication.exit(context));
+			}
+		};
+	}
+
+}
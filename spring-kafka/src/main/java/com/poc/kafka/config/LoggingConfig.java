@@ -0,0 +1,39 @@
+package com.poc.kafka.config;
+
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.poc.kafka.consumer.Receiver;
+import com.poc.kafka.logging.MessageLogger;
+import com.poc.kafka.producer.Sender;
+
+/**
+ * Per-message logging of the Sender and the Receiver, off by default. Set
+ * kafka.logging.messages.sample-rate to N to log one message out of N, bounded
+ * by kafka.logging.messages.max-per-second.
+ * 
+ * @author kali
+ *
+ */
+@Configuration
+public class LoggingConfig {
+
+	@Value("${kafka.logging.messages.sample-rate:0}")
+	private int sampleRate;
+
+	@Value("${kafka.logging.messages.max-per-second:10}")
+	private int maxPerSecond;
+
+	@Bean
+	public MessageLogger senderMessageLogger() {
+		return new MessageLogger(LoggerFactory.getLogger(Sender.class), sampleRate, maxPerSecond);
+	}
+
+	@Bean
+	public MessageLogger receiverMessageLogger() {
+		return new MessageLogger(LoggerFactory.getLogger(Receiver.class), sampleRate, maxPerSecond);
+	}
+
+}
@@ -0,0 +1,142 @@
+package com.poc.kafka.config;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.KafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.listener.AbstractMessageListenerContainer.AckMode;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.SeekToCurrentBatchErrorHandler;
+
+import com.poc.kafka.pipeline.RecordPredicates;
+
+/**
+ * Pass-through routing stage (PassThroughForwarder), off unless
+ * kafka.passthrough.enabled is true. The values are consumed and produced as
+ * raw bytes, whatever their codec, and filtered on the key, a header or a JSON
+ * field of the value; the filters configured must all match, none forwards
+ * every record.
+ * 
+ * @author kali
+ *
+ */
+@Configuration
+@ConditionalOnProperty(name = "kafka.passthrough.enabled")
+public class PassThroughConfig {
+
+	@Value("${kafka.passthrough.output:personRouted}")
+	private String outputTopic;
+
+	@Value("${kafka.passthrough.filter.key-prefix:}")
+	private String keyPrefix;
+
+	// name=value
+	@Value("${kafka.passthrough.filter.header:}")
+	private String header;
+
+	// field=value
+	@Value("${kafka.passthrough.filter.json-field:}")
+	private String jsonField;
+
+	@Value("${kafka.topic.partitions:1}")
+	private int partitions;
+
+	@Value("${kafka.topic.replication-factor:1}")
+	private short replicationFactor;
+
+	@Value("${kafka.consumer.concurrency:1}")
+	private int concurrency;
+
+	@Autowired
+	private SenderConfig senderConfig;
+
+	@Autowired
+	private ReceiverConfig receiverConfig;
+
+	@Bean
+	public NewTopic passThroughOutputTopic() {
+		return new NewTopic(outputTopic, partitions, replicationFactor);
+	}
+
+	@Bean
+	public Predicate<ConsumerRecord<String, byte[]>> passThroughFilter() {
+		Predicate<ConsumerRecord<String, byte[]>> filter = record -> true;
+		if (!keyPrefix.isEmpty()) {
+			filter = filter.and(RecordPredicates.keyPrefix(keyPrefix));
+		}
+		if (!header.isEmpty()) {
+			String[] nameValue = split(header);
+			filter = filter.and(RecordPredicates.header(nameValue[0], nameValue[1]));
+		}
+		if (!jsonField.isEmpty()) {
+			String[] nameValue = split(jsonField);
+			filter = filter.and(RecordPredicates.jsonField(nameValue[0], nameValue[1]));
+		}
+		return filter;
+	}
+
+	@Bean
+	public ProducerFactory<String, byte[]> passThroughProducerFactory() {
+		Map<String, Object> props = new HashMap<>(senderConfig.producerConfigs());
+		props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+		return new DefaultKafkaProducerFactory<>(props, new StringSerializer(), new ByteArraySerializer());
+	}
+
+	@Bean
+	public KafkaTemplate<String, byte[]> passThroughKafkaTemplate() {
+		return new KafkaTemplate<>(passThroughProducerFactory());
+	}
+
+	@Bean
+	public ConsumerFactory<String, byte[]> passThroughConsumerFactory() {
+		Map<String, Object> props = new HashMap<>(receiverConfig.batchConsumerConfigs());
+		props.put(ConsumerConfig.GROUP_ID_CONFIG, "passthrough");
+		props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+		return new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(), new ByteArrayDeserializer());
+	}
+
+	/**
+	 * A batch that could not be forwarded is not committed: the error handler
+	 * seeks back to its first record, so it is polled and forwarded again.
+	 */
+	@Bean
+	public KafkaListenerContainerFactory<ConcurrentMessageListenerContainer<String, byte[]>> passThroughKafkaListenerContainerFactory() {
+		ConcurrentKafkaListenerContainerFactory<String, byte[]> factory = new ConcurrentKafkaListenerContainerFactory<>();
+		factory.setConsumerFactory(passThroughConsumerFactory());
+		factory.setBatchListener(true);
+		factory.setConcurrency(Math.min(concurrency, partitions));
+		factory.getContainerProperties().setAckMode(AckMode.BATCH);
+		factory.getContainerProperties().setAckOnError(false);
+		factory.getContainerProperties().setBatchErrorHandler(new SeekToCurrentBatchErrorHandler());
+		return factory;
+	}
+
+	private static String[] split(String nameValue) {
+		int separator = nameValue.indexOf('=');
+		if (separator < 1) {
+			throw new IllegalArgumentException("Expected name=value, got '" + nameValue + "'");
+		}
+		return new String[] { nameValue.substring(0, separator), nameValue.substring(separator + 1) };
+	}
+
+}
@@ -0,0 +1,88 @@
+package com.poc.kafka.config;
+
+import java.util.Map;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+
+/**
+ * Named sets of producer tuning properties, selected with the
+ * kafka.producer.profile property.
+ *
+ * Every profile sets the same keys (batching, linger, compression, buffer
+ * memory, max in-flight requests, acks, retries and idempotence) so that
+ * switching profile never leaves a half-applied combination behind:
+ *
+ * - default: the Kafka client defaults.
+ * - throughput: large batches, a linger window and lz4 compression to
+ * maximize messages per request.
+ * - low-latency: no linger and no compression, a single in-flight request so
+ * that a record leaves as soon as it is sent.
+ * - durable: acks from all in-sync replicas and the idempotent producer, so
+ * retries can neither lose nor duplicate nor reorder records.
+ *
+ * @author kali
+ *
+ */
+public enum ProducerProfile {
+
+	DEFAULT("default", 16384, 0, "none", 33554432L, 5, "1", 0, false),
+
+	THROUGHPUT("throughput", 131072, 20, "lz4", 67108864L, 5, "1", 3, false),
+
+	LOW_LATENCY("low-latency", 16384, 0, "none", 33554432L, 1, "1", 0, false),
+
+	DURABLE("durable", 32768, 5, "snappy", 33554432L, 5, "all", Integer.MAX_VALUE, true);
+
+	private final String profileName;
+	private final int batchSize;
+	private final int lingerMs;
+	private final String compressionType;
+	private final long bufferMemory;
+	private final int maxInFlightRequestsPerConnection;
+	private final String acks;
+	private final int retries;
+	private final boolean idempotence;
+
+	ProducerProfile(String profileName, int batchSize, int lingerMs, String compressionType, long bufferMemory,
+			int maxInFlightRequestsPerConnection, String acks, int retries, boolean idempotence) {
+		this.profileName = profileName;
+		this.batchSize = batchSize;
+		this.lingerMs = lingerMs;
+		this.compressionType = compressionType;
+		this.bufferMemory = bufferMemory;
+		this.maxInFlightRequestsPerConnection = maxInFlightRequestsPerConnection;
+		this.acks = acks;
+		this.retries = retries;
+		this.idempotence = idempotence;
+	}
+
+	public String getProfileName() {
+		return profileName;
+	}
+
+	/**
+	 * Put the properties of this profile in the given producer configuration,
+	 * replacing any previous value of the same keys.
+	 */
+	public Map<String, Object> applyTo(Map<String, Object> props) {
+		props.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+		props.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+		props.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+		props.put(ProducerConfig.BUFFER_MEMORY_CONFIG, bufferMemory);
+		props.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, maxInFlightRequestsPerConnection);
+		props.put(ProducerConfig.ACKS_CONFIG, acks);
+		props.put(ProducerConfig.RETRIES_CONFIG, retries);
+		props.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, idempotence);
+		return props;
+	}
+
+	public static ProducerProfile fromName(String name) {
+		for (ProducerProfile profile : values()) {
+			if (profile.profileName.equalsIgnoreCase(name)) {
+				return profile;
+			}
+		}
+		throw new IllegalArgumentException("Unknown producer profile '" + name + "'");
+	}
+
+}
@@ -0,0 +1,47 @@
+package com.poc.kafka.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.ConsumerFactory;
+
+import com.poc.kafka.model.PersonModel;
+import com.poc.kafka.producer.Sender;
+import com.poc.kafka.reactive.ReactiveReceiver;
+import com.poc.kafka.reactive.ReactiveSender;
+
+/**
+ * Reactive facade over the consumer factory of ReceiverConfig and the Sender,
+ * to compose them in streams whose rate follows the slowest stage.
+ * 
+ * @author kali
+ *
+ */
+@Configuration
+public class ReactiveConfig {
+
+	@Autowired
+	private ConsumerFactory<String, PersonModel> consumerFactory;
+
+	@Autowired
+	private Sender sender;
+
+	/*
+	 * The in-flight bound of the reactive sends. The window of the Sender is
+	 * shared with its other callers, so a reactive send may still wait for it.
+	 */
+	@Value("${kafka.producer.max-in-flight-sends:1000}")
+	private int maxInFlightSends;
+
+	@Bean
+	public ReactiveReceiver reactiveReceiver() {
+		return new ReactiveReceiver(consumerFactory);
+	}
+
+	@Bean(destroyMethod = "close")
+	public ReactiveSender reactiveSender() {
+		return new ReactiveSender(sender, maxInFlightSends);
+	}
+
+}
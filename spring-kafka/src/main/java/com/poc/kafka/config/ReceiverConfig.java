@@ -1,22 +1,57 @@
 package com.poc.kafka.config;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
 
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.RangeAssignor;
+import org.apache.kafka.clients.consumer.RoundRobinAssignor;
+import org.apache.kafka.clients.consumer.StickyAssignor;
+import org.apache.kafka.common.serialization.Deserializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.annotation.EnableKafka;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.config.KafkaListenerContainerFactory;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.listener.AbstractMessageListenerContainer.AckMode;
+import org.springframework.kafka.listener.BatchErrorHandler;
+import org.springframework.kafka.listener.BatchLoggingErrorHandler;
 import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.ErrorHandler;
+import org.springframework.kafka.listener.LoggingErrorHandler;
+import org.springframework.kafka.listener.MessageListenerContainer;
 import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.transaction.KafkaTransactionManager;
 
+import com.poc.kafka.consumer.AdaptivePollController;
+import com.poc.kafka.consumer.DeduplicationCache;
+import com.poc.kafka.consumer.DeduplicationFilter;
+import com.poc.kafka.consumer.PartitionHandoffListener;
+import com.poc.kafka.consumer.PartitionHandoffListener.PartitionWarmer;
+import com.poc.kafka.consumer.ParallelRecordProcessor;
+import com.poc.kafka.consumer.Receiver;
+import com.poc.kafka.consumer.VirtualThreads;
+import com.poc.kafka.metrics.KafkaMetrics;
 import com.poc.kafka.model.PersonModel;
+import com.poc.kafka.pipeline.ModelTransformer;
+import com.poc.kafka.pipeline.PersonEnricher;
+import com.poc.kafka.retry.RetryForwarder;
 
 /**
  * This mechanism requires an @EnableKafka annotation on one of
@@ -30,9 +65,125 @@ import com.poc.kafka.model.PersonModel;
 @Configuration
 public class ReceiverConfig {
 
+	private static final Logger logger = LoggerFactory.getLogger(ReceiverConfig.class);
+
+	// Approximate size of a serialized PersonModel record, to turn a number of
+	// records into a fetch size.
+	private static final int ESTIMATED_RECORD_SIZE = 100;
+
+	// Static membership (KIP-345), not in the ConsumerConfig of the kafka-clients
+	// shipped with Spring Boot 2.0: these clients log it as unknown and join the
+	// group as dynamic members.
+	private static final String GROUP_INSTANCE_ID_CONFIG = "group.instance.id";
+
+	// max.poll.interval.ms of the Kafka consumer when it is not configured.
+	private static final int DEFAULT_MAX_POLL_INTERVAL_MS = 300000;
+
 	@Value("${spring.kafka.bootstrap-servers}")
 	private String bootstrapServers;
 
+	@Value("${kafka.consumer.batch.max-poll-records:500}")
+	private int batchMaxPollRecords;
+
+	@Value("${kafka.consumer.batch.fetch-min-bytes:1}")
+	private int batchFetchMinBytes;
+
+	@Value("${kafka.consumer.batch.fetch-max-wait-ms:500}")
+	private int batchFetchMaxWaitMs;
+
+	@Autowired
+	private Deserializer<PersonModel> personModelDeserializer;
+
+	@Autowired
+	private KafkaMetrics kafkaMetrics;
+
+	@Autowired
+	private KafkaListenerEndpointRegistry kafkaListenerEndpointRegistry;
+
+	@Autowired(required = false)
+	private RetryForwarder retryForwarder;
+
+	@Value("${kafka.topic.partitions:1}")
+	private int partitions;
+
+	@Value("${kafka.consumer.concurrency:1}")
+	private int concurrency;
+
+	@Value("${kafka.consumer.parallel.enabled:false}")
+	private boolean parallelEnabled;
+
+	@Value("${kafka.consumer.parallel.workers:0}")
+	private int parallelWorkers;
+
+	@Value("${kafka.consumer.parallel.ordering:key}")
+	private String parallelOrdering;
+
+	@Value("${kafka.consumer.parallel.max-in-flight:10000}")
+	private int parallelMaxInFlight;
+
+	@Value("${kafka.consumer.parallel.executor:lanes}")
+	private String parallelExecutor;
+
+	@Value("${kafka.consumer.adaptive.enabled:false}")
+	private boolean adaptiveEnabled;
+
+	@Value("${kafka.consumer.adaptive.target-cycle-ms:1000}")
+	private long adaptiveTargetCycleMs;
+
+	@Value("${kafka.consumer.adaptive.min-records:10}")
+	private int adaptiveMinRecords;
+
+	@Value("${kafka.consumer.adaptive.max-records:2000}")
+	private int adaptiveMaxRecords;
+
+	@Value("${kafka.consumer.adaptive.max-fetch-wait-ms:500}")
+	private int adaptiveMaxFetchWaitMs;
+
+	@Value("${kafka.consumer.adaptive.max-poll-interval-ms:30000}")
+	private int adaptiveMaxPollIntervalMs;
+
+	@Value("${kafka.consumer.adaptive.min-restart-interval-ms:60000}")
+	private long adaptiveMinRestartIntervalMs;
+
+	@Value("${kafka.consumer.rebalance.assignor:sticky}")
+	private String rebalanceAssignor;
+
+	@Value("${kafka.consumer.rebalance.instance-id:}")
+	private String rebalanceInstanceId;
+
+	@Value("${kafka.consumer.rebalance.session-timeout-ms:10000}")
+	private int rebalanceSessionTimeoutMs;
+
+	@Value("${kafka.consumer.rebalance.handoff-timeout-ms:5000}")
+	private long rebalanceHandoffTimeoutMs;
+
+	@Autowired(required = false)
+	private List<PartitionWarmer> partitionWarmers;
+
+	@Value("${kafka.pipeline.enabled:false}")
+	private boolean pipelineEnabled;
+
+	@Value("${kafka.pipeline.batch-size:500}")
+	private int pipelineBatchSize;
+
+	@Value("${kafka.pipeline.commit-interval-ms:100}")
+	private int pipelineCommitIntervalMs;
+
+	@Autowired
+	private KafkaTransactionManager<String, PersonModel> kafkaTransactionManager;
+
+	@Value("${kafka.consumer.dedup.enabled:false}")
+	private boolean dedupEnabled;
+
+	@Value("${kafka.consumer.dedup.max-entries:1000000}")
+	private int dedupMaxEntries;
+
+	@Value("${kafka.consumer.dedup.expiry-seconds:600}")
+	private long dedupExpirySeconds;
+
+	@Value("${kafka.window.enabled:false}")
+	private boolean windowEnabled;
+
 	@Bean
 	public Map<String, Object> consumerConfigs() {
 		Map<String, Object> props = new HashMap<>();
@@ -51,10 +202,40 @@ public class ReceiverConfig {
 		// the consumer’s group
 		// - anything else: throw exception to the consumer.
 		props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+		// Offsets are committed by the listener container according to its AckMode
+		// (once per poll by default) rather than by the consumer's background timer.
+		props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+		// The sticky assignor keeps the partitions on their current owner across
+		// rebalances. The range assignor, the former default, stays listed second
+		// so that the members not upgraded yet still agree on a protocol during a
+		// rolling deploy.
+		Class<?> assignor = assignor(rebalanceAssignor);
+		props.put(ConsumerConfig.PARTITION_ASSIGNMENT_STRATEGY_CONFIG, assignor == RangeAssignor.class
+				? Collections.singletonList(assignor) : Arrays.asList(assignor, RangeAssignor.class));
+		// How long the group waits for a silent member before reassigning its
+		// partitions.
+		props.put(ConsumerConfig.SESSION_TIMEOUT_MS_CONFIG, rebalanceSessionTimeoutMs);
 
 		return props;
 	}
 
+	/**
+	 * Consumer properties for the batch listener: the same base settings plus the
+	 * fetch tuning that decides how many records each poll hands to the listener.
+	 */
+	@Bean
+	public Map<String, Object> batchConsumerConfigs() {
+		Map<String, Object> props = new HashMap<>(consumerConfigs());
+		// The maximum number of records returned by a single poll, i.e. the upper
+		// bound of a batch delivered to the listener.
+		props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, batchMaxPollRecords);
+		// The broker waits until at least this amount of data is available (or the
+		// fetch max wait elapses) before answering a fetch request.
+		props.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, batchFetchMinBytes);
+		props.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, batchFetchMaxWaitMs);
+		return props;
+	}
+
 //	@Bean
 //	public ConsumerFactory<String, String> consumerFactory() {
 //		return new DefaultKafkaConsumerFactory<>(consumerConfigs());
@@ -70,14 +251,288 @@ public class ReceiverConfig {
 	@Bean
 	public ConsumerFactory<String, PersonModel> consumerFactory() {
 		return new DefaultKafkaConsumerFactory<>(consumerConfigs(), new StringDeserializer(),
-				new JsonDeserializer<>(PersonModel.class));
+				personModelDeserializer);
 	}
 
+	/**
+	 * With windowed aggregation, the idle events let the windows of idle
+	 * partitions close while nothing arrives.
+	 */
 	@Bean
 	public KafkaListenerContainerFactory<ConcurrentMessageListenerContainer<String, PersonModel>> kafkaListenerContainerFactory() {
 		ConcurrentKafkaListenerContainerFactory<String, PersonModel> factory = new ConcurrentKafkaListenerContainerFactory<>();
-		factory.setConsumerFactory(consumerFactory());
+		factory.setConsumerFactory(listenerConsumerFactory(consumerConfigs(), "record", UnaryOperator.identity()));
+		factory.setConcurrency(listenerConcurrency());
+		factory.getContainerProperties().setErrorHandler(countingErrorHandler());
+		factory.getContainerProperties().setConsumerRebalanceListener(partitionHandoffListener());
+		if (dedupEnabled) {
+			factory.setRecordFilterStrategy(new DeduplicationFilter(deduplicationCache()));
+		}
+		if (windowEnabled) {
+			factory.getContainerProperties().setIdleEventInterval(1000L);
+		}
+		return factory;
+	}
+
+	/**
+	 * With adaptive polling, every consumer is created with the batch limit
+	 * decided so far by the AdaptivePollController as max.poll.records.
+	 */
+	@Bean
+	public ConsumerFactory<String, PersonModel> batchConsumerFactory() {
+		if (!adaptiveEnabled) {
+			return listenerConsumerFactory(batchConsumerConfigs(), "batch", UnaryOperator.identity());
+		}
+		return listenerConsumerFactory(batchConsumerConfigs(), "batch", adaptivePollController()::consumerConfigs);
+	}
+
+	/**
+	 * Listener container factory delivering the whole poll result to the listener
+	 * as a List. Offsets are committed once, after the listener returns from the
+	 * batch.
+	 * 
+	 * When deduplication is enabled, the records already seen are removed from
+	 * the batch before the listener is called.
+	 * 
+	 * In parallel mode the records are processed by the ParallelRecordProcessor
+	 * and it is the processor that commits the completed offsets, so the
+	 * container is switched to manual acknowledgement. The idle events give the
+	 * processor a chance to commit when no new records arrive.
+	 * 
+	 * With adaptive polling (and no parallel mode), the AdaptivePollController
+	 * hands the listener a batch sized to the target poll cycle and commits it,
+	 * so the container is switched to manual acknowledgement as well; the idle
+	 * events tell the controller the traffic is sparse.
+	 * 
+	 * With windowed aggregation, the idle events let the windows of idle
+	 * partitions close.
+	 */
+	@Bean
+	public KafkaListenerContainerFactory<ConcurrentMessageListenerContainer<String, PersonModel>> batchKafkaListenerContainerFactory() {
+		ConcurrentKafkaListenerContainerFactory<String, PersonModel> factory = new ConcurrentKafkaListenerContainerFactory<>();
+		factory.setConsumerFactory(batchConsumerFactory());
+		factory.setBatchListener(true);
+		factory.setConcurrency(listenerConcurrency());
+		factory.getContainerProperties().setBatchErrorHandler(countingBatchErrorHandler());
+		factory.getContainerProperties().setConsumerRebalanceListener(partitionHandoffListener());
+		if (dedupEnabled) {
+			factory.setRecordFilterStrategy(new DeduplicationFilter(deduplicationCache()));
+		}
+		if (parallelEnabled || adaptiveEnabled) {
+			factory.getContainerProperties().setAckMode(AckMode.MANUAL);
+		} else {
+			factory.getContainerProperties().setAckMode(AckMode.BATCH);
+		}
+		if (parallelEnabled || adaptiveEnabled || windowEnabled) {
+			factory.getContainerProperties().setIdleEventInterval(1000L);
+		}
 		return factory;
 	}
 
+	/**
+	 * Only created in parallel mode, since its threads are started up front.
+	 * 
+	 * With the virtual executor, every key in flight gets its own virtual thread
+	 * (Java 21 and later, platform threads otherwise), for handlers that mostly
+	 * wait on I/O; max-in-flight is then the only bound on the concurrency.
+	 */
+	@Bean
+	@ConditionalOnProperty(name = "kafka.consumer.parallel.enabled", havingValue = "true")
+	public ParallelRecordProcessor parallelRecordProcessor() {
+		int workers = parallelWorkers > 0 ? parallelWorkers : Runtime.getRuntime().availableProcessors();
+		ParallelRecordProcessor.Ordering ordering = ParallelRecordProcessor.Ordering
+				.valueOf(parallelOrdering.toUpperCase());
+		if ("virtual".equalsIgnoreCase(parallelExecutor)) {
+			return new ParallelRecordProcessor(VirtualThreads.newExecutor(workers, "parallel-consumer-"), ordering,
+					parallelMaxInFlight);
+		}
+		return new ParallelRecordProcessor(workers, ordering, parallelMaxInFlight);
+	}
+
+	/**
+	 * Commits the completed offsets of the revoked partitions and warms the
+	 * assigned ones, for both listener container factories. Only the parallel
+	 * mode has records in flight on a revoke.
+	 */
+	@Bean
+	public PartitionHandoffListener partitionHandoffListener() {
+		return new PartitionHandoffListener(parallelEnabled ? parallelRecordProcessor() : null,
+				rebalanceHandoffTimeoutMs, partitionWarmers);
+	}
+
+	/**
+	 * Batch size of the batch listener, only created when adaptive polling is
+	 * enabled. It starts from kafka.consumer.batch.max-poll-records and applies a
+	 * smaller limit by restarting the batch listener container.
+	 */
+	@Bean(destroyMethod = "close")
+	@ConditionalOnProperty(name = "kafka.consumer.adaptive.enabled", havingValue = "true")
+	public AdaptivePollController adaptivePollController() {
+		AdaptivePollController controller = new AdaptivePollController(adaptiveMinRecords, adaptiveMaxRecords,
+				batchMaxPollRecords, adaptiveTargetCycleMs, adaptiveMaxFetchWaitMs, adaptiveMaxPollIntervalMs,
+				adaptiveMinRestartIntervalMs);
+		controller.setRestarter(() -> {
+			MessageListenerContainer container = kafkaListenerEndpointRegistry
+					.getListenerContainer(Receiver.BATCH_LISTENER_ID);
+			if (container != null && container.isRunning()) {
+				container.stop();
+				container.start();
+			}
+		});
+		return controller;
+	}
+
+	/**
+	 * The shortest max.poll.interval.ms of the listener consumers, within which
+	 * a listener thread must get back to its consumer.
+	 */
+	public int listenerMaxPollIntervalMs() {
+		return adaptiveEnabled ? Math.min(adaptiveMaxPollIntervalMs, DEFAULT_MAX_POLL_INTERVAL_MS)
+				: DEFAULT_MAX_POLL_INTERVAL_MS;
+	}
+
+	/**
+	 * Consumer properties of the PersonPipeline. A poll is one transaction: it
+	 * returns at most batch-size records, and the broker holds each fetch until
+	 * about that many records are available or the commit interval elapsed.
+	 * Only committed records are read, so the pipeline can be chained after
+	 * another transactional producer.
+	 */
+	@Bean
+	public Map<String, Object> pipelineConsumerConfigs() {
+		Map<String, Object> props = new HashMap<>(consumerConfigs());
+		props.put(ConsumerConfig.GROUP_ID_CONFIG, "pipeline");
+		props.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+		props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, pipelineBatchSize);
+		props.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, pipelineBatchSize * ESTIMATED_RECORD_SIZE);
+		props.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, pipelineCommitIntervalMs);
+		return props;
+	}
+
+	@Bean
+	public ConsumerFactory<String, PersonModel> pipelineConsumerFactory() {
+		return new DefaultKafkaConsumerFactory<>(pipelineConsumerConfigs(), new StringDeserializer(),
+				personModelDeserializer);
+	}
+
+	/**
+	 * Batch listener container factory running each poll in a transaction of the
+	 * KafkaTransactionManager: the container sends the offsets of the batch to
+	 * the transaction once the listener returns, then commits it. The containers
+	 * only start when kafka.pipeline.enabled is set.
+	 */
+	@Bean
+	public KafkaListenerContainerFactory<ConcurrentMessageListenerContainer<String, PersonModel>> pipelineKafkaListenerContainerFactory() {
+		ConcurrentKafkaListenerContainerFactory<String, PersonModel> factory = new ConcurrentKafkaListenerContainerFactory<>();
+		factory.setConsumerFactory(pipelineConsumerFactory());
+		factory.setBatchListener(true);
+		factory.setConcurrency(listenerConcurrency());
+		factory.setAutoStartup(pipelineEnabled);
+		factory.getContainerProperties().setAckMode(AckMode.BATCH);
+		factory.getContainerProperties().setTransactionManager(kafkaTransactionManager);
+		return factory;
+	}
+
+	/**
+	 * The transformation of the PersonPipeline; declare another ModelTransformer
+	 * bean to change it, this one then backs off.
+	 */
+	@Bean
+	@ConditionalOnMissingBean(ModelTransformer.class)
+	public ModelTransformer<PersonModel> personTransformer() {
+		return new PersonEnricher();
+	}
+
+	/**
+	 * Identities of the recently received records, shared by both listener
+	 * container factories. Only created when deduplication is enabled since the
+	 * table is allocated up front.
+	 */
+	@Bean
+	@ConditionalOnProperty(name = "kafka.consumer.dedup.enabled", havingValue = "true")
+	public DeduplicationCache deduplicationCache() {
+		return new DeduplicationCache(dedupMaxEntries, dedupExpirySeconds, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Forwards the failed records to the retry topics when they are enabled, so
+	 * that the partition moves on to the next record. Otherwise the container's
+	 * default logging error handler, counting the failed records in the receive
+	 * errors of their topic.
+	 */
+	private ErrorHandler countingErrorHandler() {
+		if (retryForwarder != null) {
+			return (thrownException, record) -> retryForwarder.forward(record, thrownException);
+		}
+		ErrorHandler delegate = new LoggingErrorHandler();
+		return (thrownException, record) -> {
+			kafkaMetrics.recordReceiveError(record.topic());
+			delegate.handle(thrownException, record);
+		};
+	}
+
+	private BatchErrorHandler countingBatchErrorHandler() {
+		BatchErrorHandler delegate = new BatchLoggingErrorHandler();
+		return (thrownException, records) -> {
+			records.forEach(record -> kafkaMetrics.recordReceiveError(record.topic()));
+			delegate.handle(thrownException, records);
+		};
+	}
+
+	/**
+	 * Consumer factory of a listener container. With
+	 * kafka.consumer.rebalance.instance-id set, the consumers are static members
+	 * of the group: the client id is the instance id followed by the listener
+	 * name and the container suffixes it per consumer thread, so it also makes a
+	 * group.instance.id unique in the group and stable across restarts.
+	 * 
+	 * @param customizer applied to the properties of each consumer created
+	 */
+	private ConsumerFactory<String, PersonModel> listenerConsumerFactory(Map<String, Object> configs, String listener,
+			UnaryOperator<Map<String, Object>> customizer) {
+		Map<String, Object> props = new HashMap<>(configs);
+		if (!rebalanceInstanceId.isEmpty()) {
+			props.put(ConsumerConfig.CLIENT_ID_CONFIG, rebalanceInstanceId + '-' + listener);
+		}
+		return new DefaultKafkaConsumerFactory<String, PersonModel>(props, new StringDeserializer(),
+				personModelDeserializer) {
+
+			@Override
+			protected KafkaConsumer<String, PersonModel> createKafkaConsumer(Map<String, Object> configs) {
+				Map<String, Object> consumerProps = new HashMap<>(customizer.apply(configs));
+				if (!rebalanceInstanceId.isEmpty()) {
+					consumerProps.put(GROUP_INSTANCE_ID_CONFIG, consumerProps.get(ConsumerConfig.CLIENT_ID_CONFIG));
+				}
+				return super.createKafkaConsumer(consumerProps);
+			}
+
+		};
+	}
+
+	private static Class<?> assignor(String name) {
+		if ("sticky".equalsIgnoreCase(name)) {
+			return StickyAssignor.class;
+		}
+		if ("range".equalsIgnoreCase(name)) {
+			return RangeAssignor.class;
+		}
+		if ("round-robin".equalsIgnoreCase(name)) {
+			return RoundRobinAssignor.class;
+		}
+		throw new IllegalArgumentException("Unknown assignor '" + name + "'");
+	}
+
+	/**
+	 * One consumer thread per partition at most: the consumers beyond the
+	 * partition count would never be assigned anything.
+	 */
+	private int listenerConcurrency() {
+		if (concurrency > partitions) {
+			logger.warn("kafka.consumer.concurrency={} is capped to the {} partitions of the topics", concurrency,
+					partitions);
+			return partitions;
+		}
+		return concurrency;
+	}
+
 }
@@ -0,0 +1,174 @@
+package com.poc.kafka.config;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.BeanDefinitionRegistryPostProcessor;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.KafkaListenerContainerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.listener.AbstractMessageListenerContainer.AckMode;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+
+import com.poc.kafka.metrics.KafkaMetrics;
+import com.poc.kafka.model.PersonModel;
+import com.poc.kafka.retry.RetryForwarder;
+import com.poc.kafka.retry.RetryTopics;
+
+/**
+ * Retry topics of the listeners, on unless kafka.consumer.retry.enabled is
+ * false: a record failing in a listener is forwarded to the retry tiers of
+ * kafka.consumer.retry.delays-ms, then to the dead letter topic, instead of
+ * being retried in place or dropped.
+ * 
+ * The records of the retry tiers are consumed by a dedicated listener
+ * (RetryReceiver), which pauses a tier partition until its next record is due.
+ * 
+ * @author kali
+ *
+ */
+@Configuration
+@ConditionalOnProperty(name = "kafka.consumer.retry.enabled", matchIfMissing = true)
+public class RetryConfig {
+
+	// How often the paused retry partitions are checked while nothing arrives.
+	private static final long RESUME_CHECK_INTERVAL_MS = 100;
+
+	@Value("${kafka.topic.json}")
+	private String jsonTopic;
+
+	@Value("${kafka.topic.batch}")
+	private String batchTopic;
+
+	@Value("${kafka.consumer.retry.delays-ms:1000,30000}")
+	private long[] delays;
+
+	@Value("${kafka.consumer.retry.send-timeout-ms:5000}")
+	private long sendTimeoutMs;
+
+	@Autowired
+	private SenderConfig senderConfig;
+
+	@Autowired
+	private ReceiverConfig receiverConfig;
+
+	@Autowired
+	private Serializer<PersonModel> personModelSerializer;
+
+	@Autowired
+	private Deserializer<PersonModel> personModelDeserializer;
+
+	@Autowired
+	private KafkaMetrics kafkaMetrics;
+
+	@Bean
+	public RetryTopics retryTopics() {
+		return new RetryTopics(Arrays.asList(jsonTopic, batchTopic), delays);
+	}
+
+	/**
+	 * A NewTopic bean per retry tier and dead letter topic, for the KafkaAdmin to
+	 * create them on startup. Their number and names follow the configured
+	 * delays, so their definitions are registered from the environment before
+	 * the beans are created rather than declared one method each.
+	 */
+	@Bean
+	public static BeanDefinitionRegistryPostProcessor retryTopicsRegistrar(Environment environment) {
+		return new BeanDefinitionRegistryPostProcessor() {
+
+			@Override
+			public void postProcessBeanDefinitionRegistry(BeanDefinitionRegistry registry) {
+				RetryTopics retryTopics = new RetryTopics(
+						Arrays.asList(environment.getRequiredProperty("kafka.topic.json"),
+								environment.getRequiredProperty("kafka.topic.batch")),
+						environment.getProperty("kafka.consumer.retry.delays-ms", long[].class,
+								new long[] { 1000, 30000 }));
+				int partitions = environment.getProperty("kafka.topic.partitions", Integer.class, 1);
+				short replicationFactor = environment.getProperty("kafka.topic.replication-factor", Short.class,
+						(short) 1);
+				for (String topic : retryTopics.getAllTopicNames()) {
+					registry.registerBeanDefinition(topic + ".topic", new RootBeanDefinition(NewTopic.class,
+							() -> new NewTopic(topic, partitions, replicationFactor)));
+				}
+			}
+
+			@Override
+			public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) {
+				// nothing to post process
+			}
+
+		};
+	}
+
+	/**
+	 * Values are forwarded as bytes: re-serialized with the codec of the retry
+	 * topic, or as they were received when they could not be deserialized.
+	 */
+	@Bean
+	public ProducerFactory<String, byte[]> retryProducerFactory() {
+		Map<String, Object> props = new HashMap<>(senderConfig.producerConfigs());
+		props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+		return new DefaultKafkaProducerFactory<>(props, new StringSerializer(), new ByteArraySerializer());
+	}
+
+	@Bean
+	public KafkaTemplate<String, byte[]> retryKafkaTemplate() {
+		return new KafkaTemplate<>(retryProducerFactory());
+	}
+
+	/**
+	 * The listener thread waits for each forwarded record, so the send timeout
+	 * must leave it time to get back to its consumer.
+	 */
+	@Bean
+	public RetryForwarder retryForwarder() {
+		int maxPollIntervalMs = receiverConfig.listenerMaxPollIntervalMs();
+		if (sendTimeoutMs >= maxPollIntervalMs) {
+			throw new IllegalArgumentException("kafka.consumer.retry.send-timeout-ms=" + sendTimeoutMs
+					+ " must be shorter than max.poll.interval.ms=" + maxPollIntervalMs);
+		}
+		return new RetryForwarder(retryTopics(), retryKafkaTemplate(), personModelSerializer, kafkaMetrics,
+				sendTimeoutMs);
+	}
+
+	/**
+	 * Batch listener container factory of the retry tiers. The listener commits
+	 * the records it processed itself, since the records held back for later
+	 * must not be committed.
+	 */
+	@Bean
+	public KafkaListenerContainerFactory<ConcurrentMessageListenerContainer<String, PersonModel>> retryKafkaListenerContainerFactory() {
+		Map<String, Object> props = new HashMap<>(receiverConfig.consumerConfigs());
+		props.put(ConsumerConfig.GROUP_ID_CONFIG, "json-retry");
+		ConcurrentKafkaListenerContainerFactory<String, PersonModel> factory = new ConcurrentKafkaListenerContainerFactory<>();
+		factory.setConsumerFactory(
+				new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(), personModelDeserializer));
+		factory.setBatchListener(true);
+		factory.getContainerProperties().setAckMode(AckMode.MANUAL);
+		factory.getContainerProperties().setPollTimeout(RESUME_CHECK_INTERVAL_MS);
+		factory.getContainerProperties().setIdleEventInterval(RESUME_CHECK_INTERVAL_MS);
+		return factory;
+	}
+
+}
@@ -4,16 +4,25 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.apache.kafka.clients.producer.ProducerConfig;
-import org.apache.kafka.common.serialization.IntegerSerializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.transaction.KafkaTransactionManager;
 import org.springframework.kafka.support.serializer.JsonSerializer;
 
 import com.poc.kafka.model.PersonModel;
+import com.poc.kafka.producer.KeyExtractor;
+import com.poc.kafka.producer.PersonKeyExtractor;
+import com.poc.kafka.producer.PersonKeyPartitioner;
+import com.poc.kafka.producer.ProducerPool;
 
 /**
  * In order to successfully send messages to a Kafka topic, we need to configure
@@ -28,6 +37,36 @@ public class SenderConfig {
 	@Value("${spring.kafka.bootstrap-servers}")
 	private String bootstrapServers;
 
+	@Value("${kafka.producer.profile:default}")
+	private String producerProfile;
+
+	@Value("${kafka.producer.hot-keys:}")
+	private String hotKeys;
+
+	@Value("${kafka.producer.spill.enabled:false}")
+	private boolean spillEnabled;
+
+	@Value("${kafka.producer.spill.max-block-ms:1000}")
+	private long spillMaxBlockMs;
+
+	@Value("${kafka.producer.pool.isolation:shared}")
+	private String poolIsolation;
+
+	@Value("${kafka.producer.pool.groups:}")
+	private String poolGroups;
+
+	@Value("${kafka.producer.pool.buffer-memory:33554432}")
+	private long poolBufferMemory;
+
+	@Value("${kafka.producer.pool.idle-timeout-ms:300000}")
+	private long poolIdleTimeoutMs;
+
+	@Value("${kafka.pipeline.transaction-id-prefix:person-pipeline-}")
+	private String transactionIdPrefix;
+
+	@Autowired
+	private Serializer<PersonModel> personModelSerializer;
+
 	@Bean
 	public Map<String, Object> producerConfigs() {
 		Map<String, Object> props = new HashMap<>();
@@ -37,22 +76,115 @@ public class SenderConfig {
 
 		// Specifies the serializer class for key that implements the
 		// org.apache.kafka.common.serialization.Serializer interface.
-		props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, IntegerSerializer.class);
+		props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
 
 		// ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG specifies the serializer class
 		// for value that implements the
 		// org.apache.kafka.common.serialization.Serializer interface.
 		props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
-		return props;
+
+		// Keyed records are spread by the PersonKeyPartitioner, which keeps the
+		// configured hot keys on partitions of their own.
+		props.put(ProducerConfig.PARTITIONER_CLASS_CONFIG, PersonKeyPartitioner.class);
+		props.put(PersonKeyPartitioner.HOT_KEYS_CONFIG, hotKeys);
+
+		// With the spill buffer, a send must not wait long for the metadata of an
+		// unreachable broker, or for room in a full buffer, before failing: the
+		// Sender then spills the record.
+		if (spillEnabled) {
+			props.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, spillMaxBlockMs);
+		}
+
+		// Batching, linger, compression, buffer memory, in-flight requests and
+		// idempotence come from the selected producer profile.
+		return ProducerProfile.fromName(producerProfile).applyTo(props);
 	}
 
+	/**
+	 * The value serializer instance (picked per topic by CodecConfig) takes
+	 * precedence over the serializer class of the producer configuration.
+	 */
 	@Bean
 	public ProducerFactory<String, PersonModel> producerFactory() {
-		return new DefaultKafkaProducerFactory<>(producerConfigs());
+		return new DefaultKafkaProducerFactory<>(producerConfigs(), new StringSerializer(), personModelSerializer);
 	}
 	
 	@Bean
 	public KafkaTemplate<String, PersonModel> kafkaTemplate() {
 		return new KafkaTemplate<>(producerFactory());
 	}
+
+	/**
+	 * Producers of the Sender per isolation group, created on the first send and
+	 * closed when idle. The kafkaTemplate above is then left to the other users
+	 * (spill replay) and its producer is only created if they send.
+	 */
+	@Bean(destroyMethod = "close")
+	@ConditionalOnProperty(name = "kafka.producer.pool.enabled", havingValue = "true")
+	public ProducerPool<PersonModel> producerPool() {
+		return new ProducerPool<>(producerConfigs(), personModelSerializer,
+				ProducerPool.Isolation.fromName(poolIsolation), topicGroups(poolGroups), poolBufferMemory,
+				poolIdleTimeoutMs);
+	}
+
+	/**
+	 * Transactional producers for the PersonPipeline. A transactional producer is
+	 * idempotent and needs acks from all in-sync replicas, hence the durable
+	 * profile whatever the kafka.producer.profile.
+	 */
+	@Bean
+	public ProducerFactory<String, PersonModel> transactionalProducerFactory() {
+		Map<String, Object> props = ProducerProfile.DURABLE.applyTo(new HashMap<>(producerConfigs()));
+		// Back to back transactions on the same partitions are answered with a
+		// retriable CONCURRENT_TRANSACTIONS error until the markers of the previous
+		// one are written: retry quickly instead of after the default 100 ms.
+		props.put(ProducerConfig.RETRY_BACKOFF_MS_CONFIG, 10);
+		DefaultKafkaProducerFactory<String, PersonModel> producerFactory = new DefaultKafkaProducerFactory<>(props,
+				new StringSerializer(), personModelSerializer);
+		producerFactory.setTransactionIdPrefix(transactionIdPrefix);
+		return producerFactory;
+	}
+
+	@Bean
+	public KafkaTemplate<String, PersonModel> transactionalKafkaTemplate() {
+		return new KafkaTemplate<>(transactionalProducerFactory());
+	}
+
+	/**
+	 * Binds a transactional producer to the listener container thread, so that
+	 * the records sent by the transactionalKafkaTemplate and the consumed offsets
+	 * are committed in the same transaction.
+	 */
+	@Bean
+	public KafkaTransactionManager<String, PersonModel> kafkaTransactionManager() {
+		return new KafkaTransactionManager<>(transactionalProducerFactory());
+	}
+
+	/**
+	 * The key of every PersonModel sent by the Sender; declare another
+	 * KeyExtractor bean to change it, this one then backs off.
+	 */
+	@Bean
+	@ConditionalOnMissingBean(KeyExtractor.class)
+	public KeyExtractor<PersonModel> personKeyExtractor() {
+		return new PersonKeyExtractor();
+	}
+
+	/**
+	 * Parse comma separated topic:group pairs.
+	 */
+	private static Map<String, String> topicGroups(String pairs) {
+		Map<String, String> groups = new HashMap<>();
+		for (String pair : pairs.split(",")) {
+			if (pair.trim().isEmpty()) {
+				continue;
+			}
+			String[] topicAndGroup = pair.split(":");
+			if (topicAndGroup.length != 2) {
+				throw new IllegalArgumentException("Invalid topic:group pair " + pair);
+			}
+			groups.put(topicAndGroup[0].trim(), topicAndGroup[1].trim());
+		}
+		return groups;
+	}
 }
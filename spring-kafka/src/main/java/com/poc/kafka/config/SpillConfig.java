@@ -0,0 +1,69 @@
+package com.poc.kafka.config;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import com.poc.kafka.model.PersonModel;
+import com.poc.kafka.producer.SpillBuffer;
+import com.poc.kafka.producer.SpillDrainer;
+import com.poc.kafka.serializer.PersonModelBinaryDeserializer;
+
+/**
+ * Local spill buffer of the Sender, off unless kafka.producer.spill.enabled is
+ * true: while the producer cannot keep up or the broker is unreachable, the
+ * records are appended to memory-mapped segment files in
+ * kafka.producer.spill.directory, and replayed in order by the SpillDrainer.
+ * The values are written with the binary PersonModel codec whatever the codec
+ * of their topic.
+ * 
+ * @author kali
+ *
+ */
+@Configuration
+@ConditionalOnProperty(name = "kafka.producer.spill.enabled")
+public class SpillConfig {
+
+	@Value("${kafka.producer.spill.directory:./spill}")
+	private File directory;
+
+	@Value("${kafka.producer.spill.segment-bytes:67108864}")
+	private int segmentBytes;
+
+	@Value("${kafka.producer.spill.max-segments:16}")
+	private int maxSegments;
+
+	@Value("${kafka.producer.spill.retention-ms:86400000}")
+	private long retentionMs;
+
+	@Value("${kafka.producer.spill.drain-batch-size:500}")
+	private int drainBatchSize;
+
+	@Value("${kafka.producer.spill.drain-backoff-ms:1000}")
+	private long drainBackoffMs;
+
+	@Autowired
+	private KafkaTemplate<String, PersonModel> kafkaTemplate;
+
+	@Bean
+	public SpillBuffer spillBuffer() throws IOException {
+		return new SpillBuffer(directory, segmentBytes, maxSegments, retentionMs);
+	}
+
+	/**
+	 * A replayed batch must be acknowledged within the producer's delivery
+	 * window, as for a regular send.
+	 */
+	@Bean(initMethod = "start", destroyMethod = "stop")
+	public SpillDrainer spillDrainer() throws IOException {
+		return new SpillDrainer(spillBuffer(), kafkaTemplate, new PersonModelBinaryDeserializer(), drainBatchSize,
+				60000, drainBackoffMs);
+	}
+
+}
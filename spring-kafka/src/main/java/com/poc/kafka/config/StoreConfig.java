@@ -0,0 +1,61 @@
+package com.poc.kafka.config;
+
+import java.io.File;
+import java.util.Collections;
+
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.config.TopicConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.ConsumerFactory;
+
+import com.poc.kafka.model.PersonModel;
+import com.poc.kafka.store.PersonStore;
+
+/**
+ * Local PersonStore of the compacted topic kafka.store.topic, off unless
+ * kafka.store.enabled is true. The store reads the topic with the consumer
+ * factory of ReceiverConfig; leave kafka.store.snapshot-file empty to replay
+ * the whole topic on every start.
+ * 
+ * @author kali
+ *
+ */
+@Configuration
+@ConditionalOnProperty(name = "kafka.store.enabled")
+public class StoreConfig {
+
+	@Value("${kafka.store.topic:personStore}")
+	private String topic;
+
+	@Value("${kafka.store.snapshot-file:}")
+	private String snapshotFile;
+
+	@Value("${kafka.store.snapshot-interval-ms:60000}")
+	private long snapshotIntervalMs;
+
+	@Value("${kafka.topic.partitions:1}")
+	private int partitions;
+
+	@Value("${kafka.topic.replication-factor:1}")
+	private short replicationFactor;
+
+	@Autowired
+	private ConsumerFactory<String, PersonModel> consumerFactory;
+
+	@Bean
+	public NewTopic storeTopic() {
+		return new NewTopic(topic, partitions, replicationFactor)
+				.configs(Collections.singletonMap(TopicConfig.CLEANUP_POLICY_CONFIG, TopicConfig.CLEANUP_POLICY_COMPACT));
+	}
+
+	@Bean(initMethod = "start", destroyMethod = "close")
+	public PersonStore personStore() {
+		return new PersonStore(consumerFactory, topic, snapshotFile.isEmpty() ? null : new File(snapshotFile),
+				snapshotIntervalMs);
+	}
+
+}
@@ -0,0 +1,51 @@
+package com.poc.kafka.config;
+
+import org.apache.kafka.clients.admin.NewTopic;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Declares the topics used by the application. The KafkaAdmin created by
+ * Spring Boot creates them on startup when they do not exist yet, with the
+ * configured number of partitions, which is also the upper bound of the
+ * listener concurrency in ReceiverConfig. The retry and dead letter topics are
+ * declared by RetryConfig.
+ * 
+ * @author kali
+ *
+ */
+@Configuration
+public class TopicConfig {
+
+	@Value("${kafka.topic.json}")
+	private String jsonTopic;
+
+	@Value("${kafka.topic.batch}")
+	private String batchTopic;
+
+	@Value("${kafka.pipeline.output:personEnriched}")
+	private String pipelineOutputTopic;
+
+	@Value("${kafka.topic.partitions:1}")
+	private int partitions;
+
+	@Value("${kafka.topic.replication-factor:1}")
+	private short replicationFactor;
+
+	@Bean
+	public NewTopic jsonTopic() {
+		return new NewTopic(jsonTopic, partitions, replicationFactor);
+	}
+
+	@Bean
+	public NewTopic batchTopic() {
+		return new NewTopic(batchTopic, partitions, replicationFactor);
+	}
+
+	@Bean
+	public NewTopic pipelineOutputTopic() {
+		return new NewTopic(pipelineOutputTopic, partitions, replicationFactor);
+	}
+
+}
@@ -0,0 +1,34 @@
+package com.poc.kafka.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.poc.kafka.metrics.KafkaMetrics;
+import com.poc.kafka.tracing.RecordTracer;
+
+/**
+ * Tracing of a sample of the records from the Sender to the Receiver, off
+ * unless kafka.tracing.enabled is true. The queue, append and processing
+ * times land in the topic metrics of KafkaMetrics.
+ *
+ * @author kali
+ *
+ */
+@Configuration
+@ConditionalOnProperty(name = "kafka.tracing.enabled", havingValue = "true")
+public class TracingConfig {
+
+	@Value("${kafka.tracing.sample-rate:0.01}")
+	private double sampleRate;
+
+	@Value("${kafka.tracing.slow-threshold-ms:1000}")
+	private long slowThresholdMs;
+
+	@Bean
+	public RecordTracer recordTracer(KafkaMetrics kafkaMetrics) {
+		return new RecordTracer(kafkaMetrics, sampleRate, slowThresholdMs);
+	}
+
+}
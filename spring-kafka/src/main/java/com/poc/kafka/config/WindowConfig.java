@@ -0,0 +1,93 @@
+package com.poc.kafka.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import com.poc.kafka.window.WindowResult;
+import com.poc.kafka.window.WindowSpec;
+import com.poc.kafka.window.WindowedAggregator;
+
+/**
+ * Windowed aggregation of the records received by the Receiver, off unless
+ * kafka.window.enabled is true. The results of the closed windows are sent as
+ * JSON to kafka.window.output, keyed by the window start, with the producer
+ * configuration of the Sender.
+ * 
+ * An advance-ms of 0 gives tumbling windows, a smaller advance than size-ms
+ * hopping ones.
+ * 
+ * @author kali
+ *
+ */
+@Configuration
+@ConditionalOnProperty(name = "kafka.window.enabled")
+public class WindowConfig {
+
+	@Value("${kafka.window.size-ms:60000}")
+	private long sizeMs;
+
+	@Value("${kafka.window.advance-ms:0}")
+	private long advanceMs;
+
+	@Value("${kafka.window.allowed-lateness-ms:5000}")
+	private long allowedLatenessMs;
+
+	@Value("${kafka.window.idle-timeout-ms:30000}")
+	private long idleTimeoutMs;
+
+	// event: the date of the PersonModel, record: the record timestamp
+	@Value("${kafka.window.time:event}")
+	private String time;
+
+	@Value("${kafka.window.output:personWindows}")
+	private String outputTopic;
+
+	@Value("${kafka.topic.partitions:1}")
+	private int partitions;
+
+	@Value("${kafka.topic.replication-factor:1}")
+	private short replicationFactor;
+
+	@Autowired
+	private SenderConfig senderConfig;
+
+	@Bean
+	public NewTopic windowOutputTopic() {
+		return new NewTopic(outputTopic, partitions, replicationFactor);
+	}
+
+	@Bean
+	public ProducerFactory<String, WindowResult> windowResultProducerFactory() {
+		Map<String, Object> props = new HashMap<>(senderConfig.producerConfigs());
+		return new DefaultKafkaProducerFactory<>(props, new StringSerializer(), new JsonSerializer<WindowResult>());
+	}
+
+	@Bean
+	public KafkaTemplate<String, WindowResult> windowResultKafkaTemplate() {
+		return new KafkaTemplate<>(windowResultProducerFactory());
+	}
+
+	/**
+	 * The windows still open on shutdown are emitted as they are.
+	 */
+	@Bean(destroyMethod = "flush")
+	public WindowedAggregator windowedAggregator() {
+		WindowSpec spec = advanceMs > 0 ? WindowSpec.hopping(sizeMs, advanceMs) : WindowSpec.tumbling(sizeMs);
+		KafkaTemplate<String, WindowResult> template = windowResultKafkaTemplate();
+		return new WindowedAggregator(spec.withAllowedLateness(allowedLatenessMs), "event".equalsIgnoreCase(time),
+				idleTimeoutMs, result -> template.send(outputTopic, Long.toString(result.getWindowStart()), result));
+	}
+
+}
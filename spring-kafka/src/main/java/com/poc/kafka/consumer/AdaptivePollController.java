@@ -0,0 +1,310 @@
+package com.poc.kafka.consumer;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Sizes the batches polled by the batch listener from the observed processing
+ * time, so that a poll cycle stays close to a target duration and never comes
+ * near max.poll.interval.ms, whose expiry kicks the consumer out of the group.
+ *
+ * The batch limit is the max.poll.records of the consumers: every polled record
+ * is processed, and the consumer keeps the records it fetched beyond a poll for
+ * the next ones. The controller commits the processed records itself, so the
+ * container must not commit by itself (AckMode.MANUAL without acknowledging).
+ *
+ * After each batch the limit moves towards the number of records the moving
+ * average of the per record time allows within the target: it grows by a
+ * quarter at most per batch and is halved when a batch overran the target. A
+ * Kafka consumer cannot change its max.poll.records, so once the limit is half
+ * the one the consumers were created with (see {@link #consumerConfigs(Map)}),
+ * the controller runs the restarter, off the consumer thread and at most once
+ * per restart interval, to create them again. A restart rebalances the whole
+ * group (eager protocol), hence the hysteresis, and a growing limit never
+ * restarts: an undersized batch only costs throughput, so it waits for the
+ * consumers to be created again for another reason, while an oversized one
+ * risks the poll interval.
+ *
+ * The decisions are exported over JMX as
+ * com.poc.kafka:type=AdaptivePollController.
+ *
+ * @author kali
+ *
+ */
+@ManagedResource(objectName = "com.poc.kafka:type=AdaptivePollController", description = "Adaptive batch size of the batch listener")
+public class AdaptivePollController {
+
+	private static final Logger logger = LoggerFactory.getLogger(AdaptivePollController.class);
+
+	// Weight of the latest batch in the moving averages.
+	private static final double SMOOTHING = 0.2;
+
+	private final int minRecords;
+
+	private final int maxRecords;
+
+	private final long targetCycleNanos;
+
+	private final int fetchMaxWaitMs;
+
+	private final int maxPollIntervalMs;
+
+	private final long minRestartIntervalMs;
+
+	private final ExecutorService restartExecutor;
+
+	private Runnable restarter;
+
+	// Decisions and observations, updated once per batch under the lock.
+	private int batchLimit;
+
+	// max.poll.records of the consumers created last.
+	private int appliedLimit;
+
+	private boolean restartPending;
+
+	private long lastRestart;
+
+	private double recordNanos = -1;
+
+	private long lastCycleNanos;
+
+	private long batches;
+
+	private long idlePeriods;
+
+	private long returnedRecords;
+
+	private long limitDecreases;
+
+	private long restarts;
+
+	/**
+	 * @param initialRecords       batch limit until the processing time is
+	 *                             measured
+	 * @param maxFetchWaitMs       upper bound of fetch.max.wait.ms, which is also
+	 *                             kept under a quarter of the target cycle
+	 * @param maxPollIntervalMs    the max.poll.interval.ms of the consumers, at
+	 *                             least twice the target cycle
+	 * @param minRestartIntervalMs shortest time between two restarts of the
+	 *                             consumers
+	 */
+	public AdaptivePollController(int minRecords, int maxRecords, int initialRecords, long targetCycleMs,
+			int maxFetchWaitMs, int maxPollIntervalMs, long minRestartIntervalMs) {
+		if (minRecords < 1 || maxRecords < minRecords) {
+			throw new IllegalArgumentException("Invalid batch bounds min=" + minRecords + " max=" + maxRecords);
+		}
+		if (targetCycleMs <= 0 || maxPollIntervalMs < 2 * targetCycleMs) {
+			throw new IllegalArgumentException("Invalid target cycle=" + targetCycleMs
+					+ "ms, max.poll.interval.ms=" + maxPollIntervalMs + " must be at least twice as long");
+		}
+		this.minRecords = minRecords;
+		this.maxRecords = maxRecords;
+		this.targetCycleNanos = TimeUnit.MILLISECONDS.toNanos(targetCycleMs);
+		this.fetchMaxWaitMs = (int) Math.max(1, Math.min(maxFetchWaitMs, targetCycleMs / 4));
+		this.maxPollIntervalMs = maxPollIntervalMs;
+		this.minRestartIntervalMs = minRestartIntervalMs;
+		this.batchLimit = clamp(initialRecords);
+		this.appliedLimit = batchLimit;
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("adaptive-poll-restart-");
+		threadFactory.setDaemon(true);
+		this.restartExecutor = Executors.newSingleThreadExecutor(threadFactory);
+	}
+
+	/**
+	 * What recreates the consumers, e.g. a stop and start of their container.
+	 * Without one, the limit only applies to the consumers created later.
+	 */
+	public synchronized void setRestarter(Runnable restarter) {
+		this.restarter = restarter;
+	}
+
+	/**
+	 * Run the handler on the records of a poll, in order, and commit them. Must be
+	 * called from the consumer thread.
+	 *
+	 * A record whose handler throws is committed like a processed one and the
+	 * exception is rethrown to the container's error handler; the records after
+	 * it are given back to the consumer, to be polled again.
+	 */
+	public <K, V> void process(List<ConsumerRecord<K, V>> records, Consumer<?, ?> consumer,
+			ParallelRecordProcessor.RecordHandler<K, V> handler) throws Exception {
+		Map<TopicPartition, OffsetAndMetadata> processed = new HashMap<>();
+		int count = 0;
+		long start = System.nanoTime();
+		try {
+			for (ConsumerRecord<K, V> record : records) {
+				count++;
+				processed.put(new TopicPartition(record.topic(), record.partition()),
+						new OffsetAndMetadata(record.offset() + 1));
+				handler.handle(record);
+			}
+		} finally {
+			long elapsed = System.nanoTime() - start;
+			if (count < records.size()) {
+				giveBack(records.subList(count, records.size()), consumer);
+			}
+			if (!processed.isEmpty()) {
+				consumer.commitSync(processed);
+			}
+			recordBatch(records.size(), count, elapsed);
+		}
+	}
+
+	/**
+	 * The container polled nothing for its idle interval.
+	 */
+	public synchronized void recordIdle() {
+		idlePeriods++;
+	}
+
+	/**
+	 * The given consumer properties with the current batch limit as
+	 * max.poll.records.
+	 */
+	public synchronized Map<String, Object> consumerConfigs(Map<String, Object> configs) {
+		Map<String, Object> props = new HashMap<>(configs);
+		props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, batchLimit);
+		props.put(ConsumerConfig.MAX_POLL_INTERVAL_MS_CONFIG, maxPollIntervalMs);
+		props.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, fetchMaxWaitMs);
+		appliedLimit = batchLimit;
+		restartPending = false;
+		return props;
+	}
+
+	/**
+	 * Stop the restarts.
+	 */
+	public void close() {
+		restartExecutor.shutdownNow();
+	}
+
+	@ManagedAttribute(description = "Records per poll decided from the processing time")
+	public synchronized int getBatchLimit() {
+		return batchLimit;
+	}
+
+	@ManagedAttribute(description = "max.poll.records of the current consumers")
+	public synchronized int getAppliedLimit() {
+		return appliedLimit;
+	}
+
+	@ManagedAttribute(description = "fetch.max.wait.ms of the consumers")
+	public int getFetchMaxWaitMs() {
+		return fetchMaxWaitMs;
+	}
+
+	@ManagedAttribute(description = "max.poll.interval.ms of the consumers")
+	public int getMaxPollIntervalMs() {
+		return maxPollIntervalMs;
+	}
+
+	@ManagedAttribute(description = "Moving average of the processing time of a record, in microseconds")
+	public synchronized double getRecordProcessingMicros() {
+		return recordNanos < 0 ? 0 : recordNanos / 1000;
+	}
+
+	@ManagedAttribute(description = "Processing time of the last batch, in milliseconds")
+	public synchronized long getLastCycleMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(lastCycleNanos);
+	}
+
+	@ManagedAttribute(description = "Batches processed")
+	public synchronized long getBatches() {
+		return batches;
+	}
+
+	@ManagedAttribute(description = "Idle intervals of the containers")
+	public synchronized long getIdlePeriods() {
+		return idlePeriods;
+	}
+
+	@ManagedAttribute(description = "Records after a failing one given back to the consumer to be polled again")
+	public synchronized long getReturnedRecords() {
+		return returnedRecords;
+	}
+
+	@ManagedAttribute(description = "Batches that overran the target cycle and halved the limit")
+	public synchronized long getLimitDecreases() {
+		return limitDecreases;
+	}
+
+	@ManagedAttribute(description = "Restarts of the consumers to apply the limit")
+	public synchronized long getRestarts() {
+		return restarts;
+	}
+
+	private synchronized void recordBatch(int polled, int processed, long elapsedNanos) {
+		batches++;
+		lastCycleNanos = elapsedNanos;
+		returnedRecords += polled - processed;
+		if (processed == 0) {
+			return;
+		}
+		recordNanos = average(recordNanos, (double) elapsedNanos / processed);
+		int sustainable = clamp((long) (targetCycleNanos / Math.max(1, recordNanos)));
+		if (elapsedNanos > targetCycleNanos) {
+			batchLimit = clamp(Math.min(sustainable, batchLimit / 2));
+			limitDecreases++;
+		} else {
+			batchLimit = clamp(Math.min(sustainable, batchLimit + Math.max(1, batchLimit / 4)));
+		}
+		if (restarter != null && !restartPending && 2 * batchLimit <= appliedLimit
+				&& System.currentTimeMillis() - lastRestart >= minRestartIntervalMs) {
+			restartPending = true;
+			lastRestart = System.currentTimeMillis();
+			restarts++;
+			logger.info("restarting the consumers to poll {} records instead of {}", batchLimit, appliedLimit);
+			Runnable restart = restarter;
+			restartExecutor.execute(() -> {
+				try {
+					restart.run();
+				} catch (RuntimeException e) {
+					logger.error("failed to restart the consumers", e);
+				} finally {
+					synchronized (this) {
+						restartPending = false;
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Seek each partition back to its first record not processed, so the next
+	 * poll returns it again. Only after a failure, since a seek drops what the
+	 * consumer fetched beyond.
+	 */
+	private static void giveBack(List<? extends ConsumerRecord<?, ?>> remaining, Consumer<?, ?> consumer) {
+		Map<TopicPartition, Long> positions = new LinkedHashMap<>();
+		for (ConsumerRecord<?, ?> record : remaining) {
+			positions.putIfAbsent(new TopicPartition(record.topic(), record.partition()), record.offset());
+		}
+		positions.forEach(consumer::seek);
+	}
+
+	private int clamp(long records) {
+		return (int) Math.max(minRecords, Math.min(maxRecords, records));
+	}
+
+	private static double average(double average, double value) {
+		return average < 0 ? value : average + SMOOTHING * (value - average);
+	}
+
+}
@@ -0,0 +1,176 @@
+package com.poc.kafka.consumer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Bounded set of the 64-bit identities of the recently seen messages, each one
+ * forgotten once its expiry elapsed.
+ *
+ * The entries live in primitive arrays, a long identity and an int expiry in
+ * seconds per slot (12 bytes), so a few million identities take a few tens of
+ * megabytes and no object per entry. The table is split in segments locked
+ * independently. A lookup probes at most {@link #MAX_PROBE} consecutive slots:
+ * when they are all live, the entry closest to expiry is evicted, which keeps
+ * both the memory and the cost of a lookup bounded whatever the load.
+ *
+ * @author kali
+ *
+ */
+@ManagedResource(objectName = "com.poc.kafka:type=DeduplicationCache", description = "Consumer deduplication cache")
+public class DeduplicationCache {
+
+	private static final int SEGMENTS = 16;
+
+	private static final int MAX_PROBE = 16;
+
+	// Identity 0 marks an empty slot.
+	private static final long EMPTY = 0;
+
+	private final Segment[] segments = new Segment[SEGMENTS];
+
+	private final int expirySeconds;
+
+	// Expiries are stored in seconds from this instant to fit in an int.
+	private final long epochMillis = System.currentTimeMillis();
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	private final LongAdder evictions = new LongAdder();
+
+	public DeduplicationCache(int maxEntries, long expiry, TimeUnit unit) {
+		int slots = Integer.highestOneBit(Math.max(maxEntries / SEGMENTS, MAX_PROBE) - 1) << 1;
+		for (int i = 0; i < SEGMENTS; i++) {
+			segments[i] = new Segment(slots);
+		}
+		this.expirySeconds = (int) Math.max(1, unit.toSeconds(expiry));
+	}
+
+	/**
+	 * Record the given identity as seen.
+	 *
+	 * @return false if it was already seen and has not expired, i.e. the message
+	 *         is a duplicate
+	 */
+	public boolean add(long identity) {
+		long id = mix(identity);
+		int now = (int) ((System.currentTimeMillis() - epochMillis) / 1000);
+		boolean added = segments[(int) (id >>> 60)].add(id, now, now + expirySeconds);
+		if (added) {
+			misses.increment();
+		} else {
+			hits.increment();
+		}
+		return added;
+	}
+
+	/**
+	 * The murmur3 finalizer, so that identities which are not hashes still spread
+	 * over the segments and the slots. Only 0 maps to the empty marker.
+	 */
+	private static long mix(long identity) {
+		long h = identity;
+		h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+		h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h == EMPTY ? 1 : h;
+	}
+
+	@ManagedAttribute(description = "Duplicates found")
+	public long getHits() {
+		return hits.sum();
+	}
+
+	@ManagedAttribute(description = "Identities seen for the first time")
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	@ManagedAttribute(description = "Live entries evicted before their expiry to make room")
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	@ManagedAttribute(description = "Number of slots, i.e. the maximum number of entries")
+	public int getCapacity() {
+		return SEGMENTS * segments[0].identities.length;
+	}
+
+	/**
+	 * 64-bit FNV-1a hash of a string, to derive identities from message
+	 * contents; a null string hashes differently from an empty one.
+	 */
+	public static long hash(long hash, String value) {
+		if (value == null) {
+			return hash(hash, -1L);
+		}
+		for (int i = 0; i < value.length(); i++) {
+			hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+		}
+		return hash(hash, value.length());
+	}
+
+	public static long hash(long hash, long value) {
+		for (int i = 0; i < 8; i++) {
+			hash = (hash ^ (value & 0xff)) * 0x100000001b3L;
+			value >>>= 8;
+		}
+		return hash;
+	}
+
+	/**
+	 * Initial value of {@link #hash(long, String)} chains.
+	 */
+	public static long initialHash() {
+		return 0xcbf29ce484222325L;
+	}
+
+	private final class Segment {
+
+		private final long[] identities;
+
+		private final int[] expiries;
+
+		private final int mask;
+
+		Segment(int slots) {
+			this.identities = new long[slots];
+			this.expiries = new int[slots];
+			this.mask = slots - 1;
+		}
+
+		synchronized boolean add(long identity, int now, int expiry) {
+			int start = (int) (identity ^ (identity >>> 32)) & mask;
+			int free = -1;
+			int oldest = start;
+			for (int probe = 0; probe < MAX_PROBE; probe++) {
+				int slot = (start + probe) & mask;
+				long current = identities[slot];
+				if (current == identity && expiries[slot] > now) {
+					return false;
+				}
+				if (current == EMPTY || expiries[slot] <= now) {
+					if (free < 0) {
+						free = slot;
+					}
+				} else if (expiries[slot] < expiries[oldest]) {
+					oldest = slot;
+				}
+			}
+			if (free < 0) {
+				free = oldest;
+				evictions.increment();
+			}
+			identities[free] = identity;
+			expiries[free] = expiry;
+			return true;
+		}
+
+	}
+
+}
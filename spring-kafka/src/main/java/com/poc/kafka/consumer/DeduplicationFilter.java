@@ -0,0 +1,64 @@
+package com.poc.kafka.consumer;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.listener.adapter.RecordFilterStrategy;
+
+import com.poc.kafka.model.PersonModel;
+import com.poc.kafka.serializer.FailSafeDeserializer;
+
+/**
+ * Idempotent consumer stage: discards, before they reach the listener, the
+ * records whose key and payload were already seen recently, which is what a
+ * producer retry or a redelivery after a rebalance looks like.
+ *
+ * A record is remembered as soon as it passes the filter, so a record whose
+ * processing failed is not processed again when it is redelivered within the
+ * cache expiry.
+ *
+ * A record whose value could not be deserialized is always let through: it has
+ * no payload to tell it from another one with the same key, and it must reach
+ * the listener to be routed to the dead letter topic.
+ *
+ * @author kali
+ *
+ */
+public class DeduplicationFilter implements RecordFilterStrategy<String, PersonModel> {
+
+	private static final Logger logger = LoggerFactory.getLogger(DeduplicationFilter.class);
+
+	private final DeduplicationCache cache;
+
+	public DeduplicationFilter(DeduplicationCache cache) {
+		this.cache = cache;
+	}
+
+	@Override
+	public boolean filter(ConsumerRecord<String, PersonModel> record) {
+		if (FailSafeDeserializer.isFailed(record) || cache.add(identity(record))) {
+			return false;
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("discarding duplicate topic='{}' partition={} offset={}", record.topic(), record.partition(),
+					record.offset());
+		}
+		return true;
+	}
+
+	/**
+	 * The hash of the topic, the key and every field of the PersonModel.
+	 */
+	static long identity(ConsumerRecord<String, PersonModel> record) {
+		long hash = DeduplicationCache.hash(DeduplicationCache.initialHash(), record.topic());
+		hash = DeduplicationCache.hash(hash, record.key());
+		PersonModel person = record.value();
+		if (person != null) {
+			hash = DeduplicationCache.hash(hash, person.getName());
+			hash = DeduplicationCache.hash(hash, person.getLastname());
+			hash = DeduplicationCache.hash(hash, person.getDate() == null ? Long.MIN_VALUE : person.getDate().getTime());
+		}
+		return hash;
+	}
+
+}
@@ -0,0 +1,73 @@
+package com.poc.kafka.consumer;
+
+import java.util.List;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Service;
+
+import com.poc.kafka.envelope.ModelDispatcher;
+import com.poc.kafka.envelope.ModelEnvelopeSerializer;
+import com.poc.kafka.metrics.KafkaMetrics;
+import com.poc.kafka.model.Model;
+import com.poc.kafka.retry.RetryForwarder;
+
+/**
+ * Consumes the model envelopes of every type from a single topic and hands
+ * each record to the handler of its type (see EnvelopeConfig).
+ * 
+ * A failing or undeserializable record is forwarded to the dead letter topic
+ * of the envelope topic, its envelope written again, and the batch goes on.
+ * The retry tiers are skipped since the retry listener hands their records to
+ * the Receiver, which only reads PersonModel. Without the retry topics, the
+ * record is logged and counted in the receive errors of its topic.
+ * 
+ * @author kali
+ *
+ */
+@Service
+@ConditionalOnProperty(name = "kafka.envelope.enabled")
+public class ModelReceiver {
+
+	private static final Logger logger = LoggerFactory.getLogger(ModelReceiver.class);
+
+	public static final String MODEL_LISTENER_ID = "modelListener";
+
+	@Autowired
+	private ModelDispatcher modelDispatcher;
+
+	@Autowired
+	private ModelEnvelopeSerializer modelEnvelopeSerializer;
+
+	@Autowired
+	private KafkaMetrics kafkaMetrics;
+
+	/*
+	 * Forwards the failed records to the dead letter topic, unless the retry
+	 * topics are disabled.
+	 */
+	@Autowired(required = false)
+	private RetryForwarder retryForwarder;
+
+	@KafkaListener(id = MODEL_LISTENER_ID, topics = "${kafka.envelope.topic}", containerFactory = "modelKafkaListenerContainerFactory")
+	public void listen(List<ConsumerRecord<String, Model>> records) {
+		for (ConsumerRecord<String, Model> record : records) {
+			try {
+				modelDispatcher.dispatch(record);
+			} catch (Exception e) {
+				if (retryForwarder != null) {
+					retryForwarder.deadLetter(record, e, modelEnvelopeSerializer);
+					continue;
+				}
+				kafkaMetrics.recordReceiveError(record.topic());
+				logger.error("failed to process record topic='{}' partition={} offset={}", record.topic(),
+						record.partition(), record.offset(), e);
+			}
+		}
+	}
+
+}
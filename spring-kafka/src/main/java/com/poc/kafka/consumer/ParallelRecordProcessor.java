@@ -0,0 +1,278 @@
+package com.poc.kafka.consumer;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.utils.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Fans the records of a poll out to a pool of worker lanes, so that CPU bound
+ * listener work uses more than the single consumer thread.
+ *
+ * Each lane is a single thread executor and a record always goes to the lane
+ * chosen by its key (or its partition, depending on the {@link Ordering}), so
+ * records sharing a key are still processed one after the other, in offset
+ * order.
+ *
+ * Since records complete out of order across lanes, the processor tracks the
+ * offsets handed out per partition and only commits, on the consumer thread,
+ * the offset below which every record is complete. The container must
+ * therefore not commit by itself (AckMode.MANUAL without acknowledging).
+ *
+ * Instead of lanes, the records can run on a single executor, typically a
+ * virtual thread per task (see VirtualThreads): the records of a key (or a
+ * partition) are then chained one after the other, while every key in flight
+ * has its own thread. This suits handlers blocked on I/O most of the time,
+ * with thousands of records in flight and no large platform thread pool.
+ *
+ * A record whose handler throws is logged and counted as complete, like the
+ * container's default error handler does with a single record listener.
+ *
+ * @author kali
+ *
+ */
+public class ParallelRecordProcessor {
+
+	private static final Logger logger = LoggerFactory.getLogger(ParallelRecordProcessor.class);
+
+	/**
+	 * How records are assigned to the worker lanes.
+	 */
+	public enum Ordering {
+
+		/**
+		 * Records with the same key are processed in order; records without key
+		 * fall back to their partition.
+		 */
+		KEY,
+
+		/**
+		 * Records of the same partition are processed in order.
+		 */
+		PARTITION
+
+	}
+
+	/**
+	 * The work done for each record on a worker lane.
+	 */
+	@FunctionalInterface
+	public interface RecordHandler<K, V> {
+
+		void handle(ConsumerRecord<K, V> record) throws Exception;
+
+	}
+
+	private final ExecutorService[] lanes;
+
+	private final ExecutorService executor;
+
+	// Last task of each key (or partition) in flight, in executor mode.
+	private final Map<Object, CompletableFuture<Void>> tails = new ConcurrentHashMap<>();
+
+	private final Ordering ordering;
+
+	private final Semaphore inFlight;
+
+	private final int maxInFlight;
+
+	private final Map<TopicPartition, PartitionProgress> progress = new ConcurrentHashMap<>();
+
+	public ParallelRecordProcessor(int workers, Ordering ordering, int maxInFlight) {
+		this.ordering = ordering;
+		this.maxInFlight = maxInFlight;
+		this.inFlight = new Semaphore(maxInFlight);
+		this.lanes = new ExecutorService[workers];
+		this.executor = null;
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("parallel-consumer-");
+		for (int i = 0; i < workers; i++) {
+			lanes[i] = Executors.newSingleThreadExecutor(threadFactory);
+		}
+	}
+
+	/**
+	 * Run the records on the given executor, chaining the records of a key (or a
+	 * partition) instead of assigning them to lanes.
+	 */
+	public ParallelRecordProcessor(ExecutorService executor, Ordering ordering, int maxInFlight) {
+		this.ordering = ordering;
+		this.maxInFlight = maxInFlight;
+		this.inFlight = new Semaphore(maxInFlight);
+		this.lanes = null;
+		this.executor = executor;
+	}
+
+	/**
+	 * Hand the records of a poll to the worker lanes. Must be called from the
+	 * consumer thread, which is blocked while the number of records in progress
+	 * reaches the configured maximum.
+	 */
+	public <K, V> void process(List<ConsumerRecord<K, V>> records, Consumer<?, ?> consumer,
+			RecordHandler<K, V> handler) throws InterruptedException {
+		for (ConsumerRecord<K, V> record : records) {
+			inFlight.acquire();
+			TopicPartition topicPartition = new TopicPartition(record.topic(), record.partition());
+			PartitionProgress partitionProgress = progress.computeIfAbsent(topicPartition,
+					tp -> new PartitionProgress());
+			long offset = record.offset();
+			partitionProgress.submitted(offset);
+			Runnable task = () -> {
+				try {
+					handler.handle(record);
+				} catch (Exception e) {
+					logger.error("failed to process record topic='{}' partition={} offset={}", record.topic(),
+							record.partition(), offset, e);
+				} finally {
+					partitionProgress.completed(offset);
+					inFlight.release();
+				}
+			};
+			if (lanes != null) {
+				lane(record).execute(task);
+			} else {
+				chain(record, task);
+			}
+		}
+		commitCompleted(consumer);
+	}
+
+	/**
+	 * Commit, for the partitions assigned to the consumer, the offsets below which
+	 * every record has been processed. Must be called from the consumer thread.
+	 */
+	public void commitCompleted(Consumer<?, ?> consumer) {
+		Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+		for (TopicPartition topicPartition : consumer.assignment()) {
+			PartitionProgress partitionProgress = progress.get(topicPartition);
+			if (partitionProgress != null) {
+				long offset = partitionProgress.commitableOffset();
+				if (offset > partitionProgress.committed) {
+					offsets.put(topicPartition, new OffsetAndMetadata(offset));
+					partitionProgress.committed = offset;
+				}
+			}
+		}
+		if (!offsets.isEmpty()) {
+			consumer.commitSync(offsets);
+		}
+	}
+
+	/**
+	 * Wait until every record handed out for the given partitions is complete.
+	 *
+	 * @return false if the timeout elapsed first
+	 */
+	public boolean awaitCompletion(Collection<TopicPartition> partitions, long timeout, TimeUnit unit)
+			throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		for (TopicPartition topicPartition : partitions) {
+			PartitionProgress partitionProgress = progress.get(topicPartition);
+			while (partitionProgress != null && !partitionProgress.pending.isEmpty()) {
+				if (System.nanoTime() > deadline) {
+					return false;
+				}
+				Thread.sleep(1);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Forget the progress of partitions this consumer no longer owns.
+	 */
+	public void release(Collection<TopicPartition> partitions) {
+		for (TopicPartition topicPartition : partitions) {
+			progress.remove(topicPartition);
+		}
+	}
+
+	/**
+	 * Number of records handed out and not yet complete.
+	 */
+	public int getInFlightCount() {
+		return maxInFlight - inFlight.availablePermits();
+	}
+
+	public void shutdown() {
+		if (lanes != null) {
+			for (ExecutorService lane : lanes) {
+				lane.shutdown();
+			}
+		} else {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Run the task on the executor once the previous task of the same key (or
+	 * partition) is complete. The tasks never complete exceptionally, so the
+	 * chain is never broken.
+	 */
+	private void chain(ConsumerRecord<?, ?> record, Runnable task) {
+		Object group = ordering == Ordering.KEY && record.key() != null ? record.key()
+				: new TopicPartition(record.topic(), record.partition());
+		CompletableFuture<Void> next = tails.compute(group,
+				(g, tail) -> tail == null ? CompletableFuture.runAsync(task, executor)
+						: tail.thenRunAsync(task, executor));
+		next.whenComplete((result, ex) -> tails.remove(group, next));
+	}
+
+	private ExecutorService lane(ConsumerRecord<?, ?> record) {
+		int hash;
+		if (ordering == Ordering.KEY && record.key() != null) {
+			hash = record.key().hashCode();
+		} else {
+			hash = 31 * record.topic().hashCode() + record.partition();
+		}
+		return lanes[Utils.toPositive(hash) % lanes.length];
+	}
+
+	/**
+	 * Offsets of a partition handed out to the lanes and not yet complete.
+	 * Offsets are submitted in increasing order by the consumer thread, so the
+	 * lowest pending offset (or the next offset to submit when nothing is
+	 * pending) is the position up to which the partition can be committed.
+	 */
+	private static final class PartitionProgress {
+
+		private final ConcurrentSkipListSet<Long> pending = new ConcurrentSkipListSet<>();
+
+		private volatile long next = -1;
+
+		// Only accessed by the consumer thread.
+		private long committed = -1;
+
+		void submitted(long offset) {
+			pending.add(offset);
+			next = offset + 1;
+		}
+
+		void completed(long offset) {
+			pending.remove(offset);
+		}
+
+		long commitableOffset() {
+			long upTo = next;
+			Long lowestPending = pending.ceiling(Long.MIN_VALUE);
+			return lowestPending == null ? upTo : Math.min(lowestPending, upTo);
+		}
+
+	}
+
+}
@@ -0,0 +1,109 @@
+package com.poc.kafka.consumer;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+
+/**
+ * Rebalance listener of the listener containers, handing the partitions over
+ * cleanly when they move to another member of the group.
+ *
+ * On revoke, the records of the revoked partitions still in progress in the
+ * ParallelRecordProcessor are given up to the handoff timeout to complete,
+ * then exactly the offsets below which every record is complete are
+ * committed, so the next owner neither skips nor processes again a record
+ * completed here. The progress of the revoked partitions is then forgotten,
+ * and each {@link PartitionWarmer} releases what it keeps for them.
+ *
+ * On assign, the progress left over from an earlier ownership of the
+ * partitions is dropped and each {@link PartitionWarmer} loads what it keeps
+ * per partition, before the first poll of the new assignment.
+ *
+ * @author kali
+ *
+ */
+public class PartitionHandoffListener implements ConsumerAwareRebalanceListener {
+
+	private static final Logger logger = LoggerFactory.getLogger(PartitionHandoffListener.class);
+
+	/**
+	 * Per partition state to load when partitions are assigned to a consumer.
+	 */
+	@FunctionalInterface
+	public interface PartitionWarmer {
+
+		void warm(Consumer<?, ?> consumer, Collection<TopicPartition> partitions);
+
+		/**
+		 * Forget the state of partitions revoked from a consumer.
+		 */
+		default void release(Collection<TopicPartition> partitions) {
+		}
+
+	}
+
+	private final ParallelRecordProcessor parallelRecordProcessor;
+
+	private final long handoffTimeoutMs;
+
+	private final List<PartitionWarmer> warmers;
+
+	/**
+	 * @param parallelRecordProcessor the processor of the records in flight, null
+	 *                                when the records are processed on the
+	 *                                consumer thread
+	 */
+	public PartitionHandoffListener(ParallelRecordProcessor parallelRecordProcessor, long handoffTimeoutMs,
+			List<PartitionWarmer> warmers) {
+		this.parallelRecordProcessor = parallelRecordProcessor;
+		this.handoffTimeoutMs = handoffTimeoutMs;
+		this.warmers = warmers != null ? warmers : Collections.emptyList();
+	}
+
+	@Override
+	public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+		if (parallelRecordProcessor == null || partitions.isEmpty()) {
+			return;
+		}
+		long start = System.currentTimeMillis();
+		try {
+			if (!parallelRecordProcessor.awaitCompletion(partitions, handoffTimeoutMs, TimeUnit.MILLISECONDS)) {
+				logger.warn("records of {} still in progress after {}ms, only the completed offsets are committed",
+						partitions, handoffTimeoutMs);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		parallelRecordProcessor.commitCompleted(consumer);
+		parallelRecordProcessor.release(partitions);
+		logger.info("handed off {} partitions in {}ms", partitions.size(), System.currentTimeMillis() - start);
+	}
+
+	@Override
+	public void onPartitionsRevokedAfterCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+		// The completed offsets were committed before the container's commit, and
+		// the records in flight are done or given up.
+		for (PartitionWarmer warmer : warmers) {
+			warmer.release(partitions);
+		}
+	}
+
+	@Override
+	public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+		if (parallelRecordProcessor != null) {
+			parallelRecordProcessor.release(partitions);
+		}
+		for (PartitionWarmer warmer : warmers) {
+			warmer.warm(consumer, partitions);
+		}
+		logger.info("assigned {}", partitions);
+	}
+
+}
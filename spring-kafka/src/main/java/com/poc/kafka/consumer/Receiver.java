@@ -1,14 +1,28 @@
 package com.poc.kafka.consumer;
 
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.errors.SerializationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.kafka.event.ListenerContainerIdleEvent;
 import org.springframework.stereotype.Service;
 
+import com.poc.kafka.logging.MessageLogger;
+import com.poc.kafka.metrics.KafkaMetrics;
 import com.poc.kafka.model.PersonModel;
+import com.poc.kafka.retry.RetryForwarder;
+import com.poc.kafka.serializer.FailSafeDeserializer;
+import com.poc.kafka.tracing.RecordTracer;
+import com.poc.kafka.window.WindowedAggregator;
 
 /**
  * Spring Kafka Listening Messages from Topic.
@@ -26,15 +40,159 @@ public class Receiver {
 
 	private static final Logger logger = LoggerFactory.getLogger(Receiver.class);
 
+	public static final String BATCH_LISTENER_ID = "batchListener";
+
 	private CountDownLatch latch = new CountDownLatch(5);
 
+	@Value("${kafka.consumer.parallel.enabled:false}")
+	private boolean parallelEnabled;
+
+	/*
+	 * Present when kafka.consumer.parallel.enabled is true.
+	 */
+	@Autowired(required = false)
+	private ParallelRecordProcessor parallelRecordProcessor;
+
+	@Autowired
+	private KafkaMetrics kafkaMetrics;
+
+	@Autowired
+	@Qualifier("receiverMessageLogger")
+	private MessageLogger messageLogger;
+
+	/*
+	 * Forwards the failed records to the retry topics, unless they are disabled.
+	 */
+	@Autowired(required = false)
+	private RetryForwarder retryForwarder;
+
+	/*
+	 * Aggregates the received records per time window, when enabled (see
+	 * WindowConfig).
+	 */
+	@Autowired(required = false)
+	private WindowedAggregator windowedAggregator;
+
+	/*
+	 * Sizes the batches of the batch listener to the target poll cycle, when
+	 * enabled.
+	 */
+	@Autowired(required = false)
+	private AdaptivePollController adaptivePollController;
+
+	/*
+	 * Records the latency of the records stamped by the Sender, when enabled
+	 * (see TracingConfig).
+	 */
+	@Autowired(required = false)
+	private RecordTracer recordTracer;
+
 	public CountDownLatch getLatch() {
 		return latch;
 	}
 
+	/**
+	 * The records stamped by the Sender are traced around their reception.
+	 */
 	@KafkaListener(topics = "${kafka.topic.json}")
-	public void listen(@Payload PersonModel record) {
-		logger.info("##### received message='{}'", record.toString());
+	public void listen(ConsumerRecord<String, PersonModel> record) throws Exception {
+		if (recordTracer != null) {
+			recordTracer.trace(record, this::receive);
+		} else {
+			receive(record);
+		}
+	}
+
+	private void receive(ConsumerRecord<String, PersonModel> record) throws Exception {
+		messageLogger.log("##### received message='{}' from topic='{}'", record.value(), record.topic());
+		process(record);
+	}
+
+	/**
+	 * Batch variant of {@link #listen(ConsumerRecord)}: the container hands over the
+	 * whole poll result at once, so the dispatch and logging cost is paid once per
+	 * batch and the offsets are committed once the method returns.
+	 * 
+	 * In parallel mode the records are handed to the worker lanes of the
+	 * ParallelRecordProcessor instead, which commits the completed offsets.
+	 * 
+	 * With adaptive polling, the AdaptivePollController sizes the polls to the
+	 * target poll cycle, runs the records and commits them.
+	 * 
+	 * A failing record is forwarded to the retry topics and the batch goes on.
+	 * The queue time of a traced record runs until a lane or the batch gets to
+	 * it.
+	 */
+	@KafkaListener(id = BATCH_LISTENER_ID, topics = "${kafka.topic.batch}", containerFactory = "batchKafkaListenerContainerFactory")
+	public void listenBatch(List<ConsumerRecord<String, PersonModel>> records, Consumer<?, ?> consumer)
+			throws Exception {
+		logger.debug("##### received batch of {} messages", records.size());
+		if (parallelEnabled) {
+			parallelRecordProcessor.process(records, consumer, this::handle);
+		} else if (adaptivePollController != null) {
+			adaptivePollController.process(records, consumer, this::handle);
+		} else {
+			for (ConsumerRecord<String, PersonModel> record : records) {
+				handle(record);
+			}
+		}
+	}
+
+	/**
+	 * Commit the offsets completed by the worker lanes while the batch listener
+	 * receives nothing, and let the adaptive polling know the traffic is sparse.
+	 */
+	@EventListener(condition = "event.listenerId.startsWith('" + BATCH_LISTENER_ID + "-')")
+	public void onBatchListenerIdle(ListenerContainerIdleEvent event) {
+		if (parallelEnabled) {
+			parallelRecordProcessor.commitCompleted(event.getConsumer());
+		} else if (adaptivePollController != null) {
+			adaptivePollController.recordIdle();
+		}
+	}
+
+	/**
+	 * Let the windows held back by idle partitions close while the listeners
+	 * receive nothing.
+	 */
+	@EventListener
+	public void onListenerIdle(ListenerContainerIdleEvent event) {
+		if (windowedAggregator != null) {
+			windowedAggregator.expireIdlePartitions();
+		}
+	}
+
+	private void handle(ConsumerRecord<String, PersonModel> record) throws Exception {
+		if (recordTracer != null) {
+			recordTracer.trace(record, this::processOrForward);
+		} else {
+			processOrForward(record);
+		}
+	}
+
+	private void processOrForward(ConsumerRecord<String, PersonModel> record) throws Exception {
+		if (retryForwarder == null) {
+			process(record);
+			return;
+		}
+		try {
+			process(record);
+		} catch (Exception e) {
+			retryForwarder.forward(record, e);
+		}
+	}
+
+	/**
+	 * The processing of a record received by any of the listeners.
+	 */
+	public void process(ConsumerRecord<String, PersonModel> record) throws Exception {
+		if (FailSafeDeserializer.isFailed(record)) {
+			throw new SerializationException("Undeserializable value in topic " + record.topic());
+		}
+		kafkaMetrics.recordReceive(record.topic(), record.timestamp());
+		if (windowedAggregator != null) {
+			windowedAggregator.add(record);
+		}
 		getLatch().countDown();
 	}
 
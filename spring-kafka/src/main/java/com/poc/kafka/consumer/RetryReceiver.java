@@ -0,0 +1,71 @@
+package com.poc.kafka.consumer;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.event.ListenerContainerIdleEvent;
+import org.springframework.stereotype.Service;
+
+import com.poc.kafka.model.PersonModel;
+import com.poc.kafka.retry.RetryDelayGate;
+import com.poc.kafka.retry.RetryForwarder;
+
+/**
+ * Processes again the records of the retry tiers once their delay elapsed,
+ * with the same logic as the Receiver. A record failing again moves on to the
+ * next tier, or to the dead letter topic.
+ * 
+ * @author kali
+ *
+ */
+@Service
+@ConditionalOnProperty(name = "kafka.consumer.retry.enabled", matchIfMissing = true)
+public class RetryReceiver {
+
+	public static final String RETRY_LISTENER_ID = "retryListener";
+
+	@Autowired
+	private Receiver receiver;
+
+	@Autowired
+	private RetryForwarder retryForwarder;
+
+	// Only used by the consumer thread of the retry listener.
+	private final RetryDelayGate gate = new RetryDelayGate();
+
+	@KafkaListener(id = RETRY_LISTENER_ID, topics = "#{@retryTopics.retryTopicNames}", containerFactory = "retryKafkaListenerContainerFactory")
+	public void listenRetry(List<ConsumerRecord<String, PersonModel>> records, Consumer<?, ?> consumer) {
+		gate.resumeDue(consumer);
+		Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+		for (ConsumerRecord<String, PersonModel> record : gate.due(records, consumer)) {
+			try {
+				receiver.process(record);
+			} catch (Exception e) {
+				retryForwarder.forward(record, e);
+			}
+			offsets.put(new TopicPartition(record.topic(), record.partition()),
+					new OffsetAndMetadata(record.offset() + 1));
+		}
+		if (!offsets.isEmpty()) {
+			consumer.commitSync(offsets);
+		}
+	}
+
+	/**
+	 * Resume the retry partitions that are due while all of them are paused.
+	 */
+	@EventListener(condition = "event.listenerId.startsWith('" + RETRY_LISTENER_ID + "-')")
+	public void onRetryListenerIdle(ListenerContainerIdleEvent event) {
+		gate.resumeDue(event.getConsumer());
+	}
+
+}
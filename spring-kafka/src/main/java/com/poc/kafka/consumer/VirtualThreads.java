@@ -0,0 +1,58 @@
+package com.poc.kafka.consumer;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Virtual thread executors on a JDK that has them (21 and later), while the
+ * project still compiles for Java 8: the factory method is looked up by
+ * reflection.
+ *
+ * @author kali
+ *
+ */
+public final class VirtualThreads {
+
+	private static final Logger logger = LoggerFactory.getLogger(VirtualThreads.class);
+
+	private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = lookup();
+
+	private VirtualThreads() {
+	}
+
+	public static boolean isAvailable() {
+		return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+	}
+
+	/**
+	 * An executor starting a virtual thread per task, or, on a JDK without
+	 * virtual threads, a pool of the given number of platform threads.
+	 */
+	public static ExecutorService newExecutor(int fallbackThreads, String threadNamePrefix) {
+		if (NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null) {
+			try {
+				return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+			} catch (ReflectiveOperationException e) {
+				logger.warn("virtual threads are not usable, falling back to platform threads", e);
+			}
+		} else {
+			logger.warn("virtual threads need Java 21 or later (running {}), falling back to {} platform threads",
+					System.getProperty("java.version"), fallbackThreads);
+		}
+		return Executors.newFixedThreadPool(fallbackThreads, new CustomizableThreadFactory(threadNamePrefix));
+	}
+
+	private static Method lookup() {
+		try {
+			return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+}
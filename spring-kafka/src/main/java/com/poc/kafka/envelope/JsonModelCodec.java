@@ -0,0 +1,66 @@
+package com.poc.kafka.envelope;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.apache.kafka.common.errors.SerializationException;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.poc.kafka.model.Model;
+
+/**
+ * JSON payload of a model type, the quickest way to carry a new type in the
+ * envelopes. Unknown properties are ignored, so adding a field only needs a
+ * new schema version, not a coordinated deploy of every consumer.
+ *
+ * @author kali
+ *
+ * @param <T> the model type
+ */
+public class JsonModelCodec<T extends Model> implements ModelCodec<T> {
+
+	private final ObjectMapper objectMapper = new ObjectMapper()
+			.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+	private final Class<T> type;
+
+	private final byte version;
+
+	public JsonModelCodec(Class<T> type, byte version) {
+		this.type = type;
+		this.version = version;
+	}
+
+	@Override
+	public Class<T> getType() {
+		return type;
+	}
+
+	@Override
+	public byte getVersion() {
+		return version;
+	}
+
+	@Override
+	public byte[] encode(T value, int offset) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(offset + 128);
+		out.write(new byte[offset], 0, offset);
+		try {
+			objectMapper.writeValue(out, value);
+		} catch (IOException e) {
+			throw new SerializationException("Can't serialize " + type.getName(), e);
+		}
+		return out.toByteArray();
+	}
+
+	@Override
+	public T decode(String topic, byte[] data, int offset, int length, byte version) {
+		try {
+			return objectMapper.readValue(data, offset, length, type);
+		} catch (IOException e) {
+			throw new SerializationException("Can't deserialize " + type.getName() + " on topic " + topic, e);
+		}
+	}
+
+}
@@ -0,0 +1,34 @@
+package com.poc.kafka.envelope;
+
+import com.poc.kafka.model.Model;
+
+/**
+ * Payload format of one Model subclass inside a model envelope.
+ *
+ * @author kali
+ *
+ * @param <T> the model type
+ */
+public interface ModelCodec<T extends Model> {
+
+	Class<T> getType();
+
+	/**
+	 * The schema version written in the envelope header. Bump it when the
+	 * payload changes and keep decoding the previous versions.
+	 */
+	byte getVersion();
+
+	/**
+	 * Encode the value after {@code offset} leading bytes, which the envelope
+	 * fills with its header.
+	 */
+	byte[] encode(T value, int offset);
+
+	/**
+	 * Decode the payload of {@code length} bytes at {@code offset}, written with
+	 * the given schema version.
+	 */
+	T decode(String topic, byte[] data, int offset, int length, byte version);
+
+}
@@ -0,0 +1,67 @@
+package com.poc.kafka.envelope;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import com.poc.kafka.model.Model;
+
+/**
+ * The codecs of the Model subclasses carried in model envelopes, with the
+ * type id identifying each of them on the wire.
+ *
+ * A type id indexes an array and a class an identity map, so finding the
+ * codec of a record costs no reflection nor string comparison. Types are
+ * registered while the application is configured, before the registry is
+ * shared with the serializers; it is read-only afterwards.
+ *
+ * @author kali
+ *
+ */
+public class ModelCodecRegistry {
+
+	/**
+	 * Largest type id, written as an unsigned 16-bit integer.
+	 */
+	public static final int MAX_TYPE_ID = 0xFFFF;
+
+	private ModelCodec<?>[] codecs = new ModelCodec<?>[0];
+
+	private final Map<Class<?>, Integer> typeIds = new IdentityHashMap<>();
+
+	/**
+	 * Register the codec of a model type under the given type id. A type id must
+	 * never be reused for another type once records have been written with it.
+	 */
+	public <T extends Model> ModelCodecRegistry register(int typeId, ModelCodec<T> codec) {
+		if (typeId < 0 || typeId > MAX_TYPE_ID) {
+			throw new IllegalArgumentException("Invalid model type id " + typeId);
+		}
+		if (codec(typeId) != null || typeIds.containsKey(codec.getType())) {
+			throw new IllegalArgumentException(
+					"Model type id " + typeId + " or type " + codec.getType().getName() + " already registered");
+		}
+		if (typeId >= codecs.length) {
+			codecs = Arrays.copyOf(codecs, typeId + 1);
+		}
+		codecs[typeId] = codec;
+		typeIds.put(codec.getType(), typeId);
+		return this;
+	}
+
+	/**
+	 * @return the type id of the given model class, -1 if it is not registered
+	 */
+	public int typeId(Class<?> type) {
+		Integer typeId = typeIds.get(type);
+		return typeId == null ? -1 : typeId;
+	}
+
+	/**
+	 * @return the codec registered under the given type id, null if none
+	 */
+	public ModelCodec<?> codec(int typeId) {
+		return typeId < codecs.length ? codecs[typeId] : null;
+	}
+
+}
@@ -0,0 +1,67 @@
+package com.poc.kafka.envelope;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.errors.SerializationException;
+
+import com.poc.kafka.consumer.ParallelRecordProcessor.RecordHandler;
+import com.poc.kafka.model.Model;
+import com.poc.kafka.serializer.FailSafeDeserializer;
+
+/**
+ * Hands the records of an envelope topic to the handler of their model type.
+ * The handler is found from the class of the value in an identity map, with
+ * no reflection per record.
+ *
+ * Handlers are registered while the application is configured. The records of
+ * a type without handler are skipped and counted, so a consumer can subscribe
+ * to a shared topic and only handle the types it cares about.
+ *
+ * @author kali
+ *
+ */
+public class ModelDispatcher {
+
+	private final Map<Class<?>, RecordHandler<String, ?>> handlers = new IdentityHashMap<>();
+
+	private final LongAdder skipped = new LongAdder();
+
+	public <T extends Model> ModelDispatcher on(Class<T> type, RecordHandler<String, T> handler) {
+		handlers.put(type, handler);
+		return this;
+	}
+
+	/**
+	 * Run the handler of the record's model type.
+	 * 
+	 * @throws SerializationException if the record could not be deserialized
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public void dispatch(ConsumerRecord<String, ? extends Model> record) throws Exception {
+		Model value = record.value();
+		if (value == null) {
+			if (FailSafeDeserializer.isFailed(record)) {
+				throw new SerializationException("Undeserializable value in topic " + record.topic());
+			}
+			skipped.increment();
+			return;
+		}
+		RecordHandler handler = handlers.get(value.getClass());
+		if (handler == null) {
+			skipped.increment();
+			return;
+		}
+		handler.handle(record);
+	}
+
+	/**
+	 * Records skipped for lack of a handler for their type, or with no value.
+	 */
+	public long getSkipped() {
+		return skipped.sum();
+	}
+
+}
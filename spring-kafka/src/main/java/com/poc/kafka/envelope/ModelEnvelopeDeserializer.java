@@ -0,0 +1,52 @@
+package com.poc.kafka.envelope;
+
+import java.util.Map;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import com.poc.kafka.model.Model;
+
+/**
+ * Reads the model envelopes written by {@link ModelEnvelopeSerializer}: the
+ * type id of the header selects the codec, which decodes the payload in place.
+ *
+ * @author kali
+ *
+ */
+public class ModelEnvelopeDeserializer implements Deserializer<Model> {
+
+	private final ModelCodecRegistry registry;
+
+	public ModelEnvelopeDeserializer(ModelCodecRegistry registry) {
+		this.registry = registry;
+	}
+
+	@Override
+	public void configure(Map<String, ?> configs, boolean isKey) {
+		// nothing to configure
+	}
+
+	@Override
+	public Model deserialize(String topic, byte[] data) {
+		if (data == null) {
+			return null;
+		}
+		if (data.length < ModelEnvelopeSerializer.HEADER_LENGTH || data[0] != ModelEnvelopeSerializer.MAGIC) {
+			throw new SerializationException("Not a model envelope on topic " + topic);
+		}
+		int typeId = (data[1] & 0xFF) << 8 | (data[2] & 0xFF);
+		ModelCodec<?> codec = registry.codec(typeId);
+		if (codec == null) {
+			throw new SerializationException("Unknown model type id " + typeId + " on topic " + topic);
+		}
+		return codec.decode(topic, data, ModelEnvelopeSerializer.HEADER_LENGTH,
+				data.length - ModelEnvelopeSerializer.HEADER_LENGTH, data[3]);
+	}
+
+	@Override
+	public void close() {
+		// nothing to close
+	}
+
+}
@@ -0,0 +1,74 @@
+package com.poc.kafka.envelope;
+
+import java.util.Map;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Serializer;
+
+import com.poc.kafka.model.Model;
+
+/**
+ * Serializer of any registered Model subclass into a model envelope, so that a
+ * single topic and a single consumer can carry several model types without a
+ * schema registry.
+ *
+ * Layout (big endian):
+ *
+ * <pre>
+ * magic     1 byte  ({@link #MAGIC})
+ * type id   uint16  (see {@link ModelCodecRegistry})
+ * version   1 byte  (schema version of the type, see {@link ModelCodec#getVersion()})
+ * payload   written by the codec of the type
+ * </pre>
+ *
+ * The codec writes its payload behind room left for the header, so the header
+ * costs no copy.
+ *
+ * @author kali
+ *
+ */
+public class ModelEnvelopeSerializer implements Serializer<Model> {
+
+	/**
+	 * First byte of every envelope.
+	 */
+	public static final byte MAGIC = 0x4D;
+
+	public static final int HEADER_LENGTH = 4;
+
+	private final ModelCodecRegistry registry;
+
+	public ModelEnvelopeSerializer(ModelCodecRegistry registry) {
+		this.registry = registry;
+	}
+
+	@Override
+	public void configure(Map<String, ?> configs, boolean isKey) {
+		// nothing to configure
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public byte[] serialize(String topic, Model data) {
+		if (data == null) {
+			return null;
+		}
+		int typeId = registry.typeId(data.getClass());
+		if (typeId < 0) {
+			throw new SerializationException("No codec registered for " + data.getClass().getName());
+		}
+		ModelCodec<Model> codec = (ModelCodec<Model>) registry.codec(typeId);
+		byte[] envelope = codec.encode(data, HEADER_LENGTH);
+		envelope[0] = MAGIC;
+		envelope[1] = (byte) (typeId >>> 8);
+		envelope[2] = (byte) typeId;
+		envelope[3] = codec.getVersion();
+		return envelope;
+	}
+
+	@Override
+	public void close() {
+		// nothing to close
+	}
+
+}
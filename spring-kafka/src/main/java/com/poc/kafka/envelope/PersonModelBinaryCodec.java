@@ -0,0 +1,41 @@
+package com.poc.kafka.envelope;
+
+import com.poc.kafka.model.PersonModel;
+import com.poc.kafka.serializer.PersonModelBinaryDeserializer;
+import com.poc.kafka.serializer.PersonModelBinarySerializer;
+
+/**
+ * The compact binary PersonModel layout of PersonModelBinarySerializer as an
+ * envelope payload. The layout carries its own version byte, which is also the
+ * schema version of the envelope.
+ *
+ * @author kali
+ *
+ */
+public class PersonModelBinaryCodec implements ModelCodec<PersonModel> {
+
+	private final PersonModelBinarySerializer serializer = new PersonModelBinarySerializer();
+
+	private final PersonModelBinaryDeserializer deserializer = new PersonModelBinaryDeserializer();
+
+	@Override
+	public Class<PersonModel> getType() {
+		return PersonModel.class;
+	}
+
+	@Override
+	public byte getVersion() {
+		return PersonModelBinarySerializer.VERSION;
+	}
+
+	@Override
+	public byte[] encode(PersonModel value, int offset) {
+		return serializer.serialize(value, offset);
+	}
+
+	@Override
+	public PersonModel decode(String topic, byte[] data, int offset, int length, byte version) {
+		return deserializer.deserialize(topic, data, offset);
+	}
+
+}
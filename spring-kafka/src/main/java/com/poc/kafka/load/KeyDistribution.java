@@ -0,0 +1,93 @@
+package com.poc.kafka.load;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * How the load generator picks the key of each record among a fixed number of
+ * keys.
+ *
+ * @author kali
+ *
+ */
+public abstract class KeyDistribution {
+
+	private final int keys;
+
+	private KeyDistribution(int keys) {
+		if (keys < 1) {
+			throw new IllegalArgumentException("Invalid key count " + keys);
+		}
+		this.keys = keys;
+	}
+
+	/**
+	 * @return the index of the next key, from 0 to the key count excluded
+	 */
+	public abstract int next(Random random);
+
+	public int getKeys() {
+		return keys;
+	}
+
+	/**
+	 * Every key equally likely.
+	 */
+	public static KeyDistribution uniform(int keys) {
+		return new KeyDistribution(keys) {
+
+			@Override
+			public int next(Random random) {
+				return random.nextInt(keys);
+			}
+
+			@Override
+			public String toString() {
+				return "uniform(" + keys + ")";
+			}
+
+		};
+	}
+
+	/**
+	 * Key k (from 0) drawn with a probability proportional to 1/(k+1)^exponent,
+	 * the skew of real traffic where a few keys are hot. The cumulative
+	 * probabilities are computed once, so a draw is a binary search.
+	 */
+	public static KeyDistribution zipfian(int keys, double exponent) {
+		double[] cumulative = new double[keys];
+		double sum = 0;
+		for (int k = 0; k < keys; k++) {
+			sum += 1 / Math.pow(k + 1, exponent);
+			cumulative[k] = sum;
+		}
+		for (int k = 0; k < keys; k++) {
+			cumulative[k] /= sum;
+		}
+		return new KeyDistribution(keys) {
+
+			@Override
+			public int next(Random random) {
+				int index = Arrays.binarySearch(cumulative, random.nextDouble());
+				return Math.min(index >= 0 ? index : -index - 1, keys - 1);
+			}
+
+			@Override
+			public String toString() {
+				return "zipfian(" + keys + ", " + exponent + ")";
+			}
+
+		};
+	}
+
+	public static KeyDistribution fromName(String name, int keys, double exponent) {
+		if ("uniform".equalsIgnoreCase(name)) {
+			return uniform(keys);
+		}
+		if ("zipfian".equalsIgnoreCase(name)) {
+			return zipfian(keys, exponent);
+		}
+		throw new IllegalArgumentException("Unknown key distribution '" + name + "'");
+	}
+
+}
@@ -0,0 +1,291 @@
+package com.poc.kafka.load;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import com.poc.kafka.metrics.KafkaMetrics;
+import com.poc.kafka.metrics.TopicMetrics;
+import com.poc.kafka.model.PersonModel;
+import com.poc.kafka.producer.Sender;
+
+/**
+ * Sends PersonModel records through the Sender for a fixed duration and
+ * reports what the Receiver made of them, to reproduce production load
+ * against the embedded broker or a real cluster.
+ *
+ * Each producer thread sends its share of the target rate:
+ * <ul>
+ * <li>closed loop: through {@link Sender#sendAsync}, so a slow broker blocks
+ * the thread on the in-flight window and the achieved rate drops below the
+ * target;</li>
+ * <li>open loop: through the fire-and-forget {@link Sender#send}, keeping to
+ * the schedule whatever the broker does (records late on the schedule are sent
+ * back to back to catch up).</li>
+ * </ul>
+ * A rate of 0 sends as fast as the threads can.
+ *
+ * The name of a record is the index of its key, drawn from the
+ * {@link KeyDistribution}, and its lastname pads the payload to the configured
+ * size. The records are consumed by whichever listener subscribes to the topic,
+ * with its own consumer threads (kafka.consumer.concurrency).
+ *
+ * @author kali
+ *
+ */
+public class LoadGenerator {
+
+	private static final Logger logger = LoggerFactory.getLogger(LoadGenerator.class);
+
+	private static final String KEY_PREFIX = "key-";
+
+	private final Sender sender;
+
+	private final KafkaMetrics kafkaMetrics;
+
+	private final String topic;
+
+	private KeyDistribution keys = KeyDistribution.uniform(1000);
+
+	private double ratePerSecond;
+
+	private boolean openLoop;
+
+	private int producerThreads = 1;
+
+	private int payloadBytes = 100;
+
+	private long durationMillis = TimeUnit.MINUTES.toMillis(1);
+
+	private long reportIntervalMillis = TimeUnit.SECONDS.toMillis(5);
+
+	private long drainTimeoutMillis = TimeUnit.SECONDS.toMillis(30);
+
+	public LoadGenerator(Sender sender, KafkaMetrics kafkaMetrics, String topic) {
+		this.sender = sender;
+		this.kafkaMetrics = kafkaMetrics;
+		this.topic = topic;
+	}
+
+	public LoadGenerator withKeys(KeyDistribution keys) {
+		this.keys = keys;
+		return this;
+	}
+
+	/**
+	 * @param ratePerSecond records per second over all the producer threads, 0 for
+	 *                      no limit
+	 */
+	public LoadGenerator withRate(double ratePerSecond, boolean openLoop) {
+		this.ratePerSecond = ratePerSecond;
+		this.openLoop = openLoop;
+		return this;
+	}
+
+	public LoadGenerator withProducerThreads(int producerThreads) {
+		this.producerThreads = producerThreads;
+		return this;
+	}
+
+	public LoadGenerator withPayloadBytes(int payloadBytes) {
+		this.payloadBytes = payloadBytes;
+		return this;
+	}
+
+	/**
+	 * @param durationMillis       how long records are sent
+	 * @param reportIntervalMillis interval of the samples of the timeline
+	 * @param drainTimeoutMillis   longest wait, once the sending stopped, for the
+	 *                             records to be received
+	 */
+	public LoadGenerator withDuration(long durationMillis, long reportIntervalMillis, long drainTimeoutMillis) {
+		this.durationMillis = durationMillis;
+		this.reportIntervalMillis = reportIntervalMillis;
+		this.drainTimeoutMillis = drainTimeoutMillis;
+		return this;
+	}
+
+	public LoadReport run() throws InterruptedException {
+		TopicMetrics metrics = kafkaMetrics.topic(topic);
+		long sentBefore = metrics.getSendRate().getCount();
+		long receivedBefore = metrics.getReceiveRate().getCount();
+		long sendErrorsBefore = metrics.getSendErrors().sum();
+		long receiveErrorsBefore = metrics.getReceiveErrors().sum();
+		String padding = padding(payloadBytes);
+		long intervalNanos = ratePerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) * producerThreads / ratePerSecond)
+				: 0;
+
+		LoadReport report = new LoadReport();
+		report.setTopic(topic);
+		report.setMode(openLoop ? "open" : "closed");
+		report.setTargetRatePerSecond(ratePerSecond);
+		report.setProducerThreads(producerThreads);
+		report.setPayloadBytes(payloadBytes);
+		report.setKeyDistribution(keys.toString());
+		logger.info("load of {} records/s ({} loop) on topic='{}' for {}ms with {} producer threads, keys {}",
+				ratePerSecond, report.getMode(), topic, durationMillis, producerThreads, keys);
+
+		long start = System.nanoTime();
+		long end = start + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+		ExecutorService producers = Executors.newFixedThreadPool(producerThreads,
+				new CustomizableThreadFactory("load-producer-"));
+		for (int i = 0; i < producerThreads; i++) {
+			producers.execute(() -> produce(end, intervalNanos, padding));
+		}
+		Progress progress = new Progress(metrics, sentBefore, receivedBefore);
+		while (System.nanoTime() < end) {
+			sleepUntil(Math.min(end, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(reportIntervalMillis)));
+			report.getTimeline().add(progress.sample(start));
+		}
+		producers.shutdown();
+		producers.awaitTermination(drainTimeoutMillis, TimeUnit.MILLISECONDS);
+		report.setDurationMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+		long drainStart = System.nanoTime();
+		long drainEnd = drainStart + TimeUnit.MILLISECONDS.toNanos(drainTimeoutMillis);
+		long nextSample = drainStart + TimeUnit.MILLISECONDS.toNanos(reportIntervalMillis);
+		while (metrics.getReceiveRate().getCount() - receivedBefore < metrics.getSendRate().getCount() - sentBefore
+				&& System.nanoTime() < drainEnd) {
+			Thread.sleep(10);
+			if (System.nanoTime() >= nextSample) {
+				report.getTimeline().add(progress.sample(start));
+				nextSample += TimeUnit.MILLISECONDS.toNanos(reportIntervalMillis);
+			}
+		}
+		report.setDrainMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - drainStart));
+		report.getTimeline().add(progress.sample(start));
+
+		report.setSent(metrics.getSendRate().getCount() - sentBefore);
+		report.setReceived(metrics.getReceiveRate().getCount() - receivedBefore);
+		report.setSendErrors(metrics.getSendErrors().sum() - sendErrorsBefore);
+		report.setReceiveErrors(metrics.getReceiveErrors().sum() - receiveErrorsBefore);
+		report.setAckLatency(metrics.getAckLatency().snapshot());
+		report.setEndToEndLatency(metrics.getEndToEndLatency().snapshot());
+		logger.info("load done: sent={} ({}/s) received={} ({}/s) sendErrors={} receiveErrors={} endToEnd={}",
+				report.getSent(), (long) report.getSendThroughput(), report.getReceived(),
+				(long) report.getReceiveThroughput(), report.getSendErrors(), report.getReceiveErrors(),
+				report.getEndToEndLatency());
+		return report;
+	}
+
+	private void produce(long end, long intervalNanos, String padding) {
+		Random random = ThreadLocalRandom.current();
+		long next = System.nanoTime();
+		while (!Thread.currentThread().isInterrupted()) {
+			long now = System.nanoTime();
+			if (now >= end) {
+				return;
+			}
+			if (intervalNanos > 0) {
+				if (now < next) {
+					LockSupport.parkNanos(Math.min(next, end) - now);
+					continue;
+				}
+				next += intervalNanos;
+			}
+			PersonModel person = new PersonModel(KEY_PREFIX + keys.next(random), padding);
+			try {
+				if (openLoop) {
+					sender.send(topic, person);
+				} else {
+					sender.sendAsync(topic, person);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (RuntimeException e) {
+				// Already counted in the send errors of the topic.
+			}
+		}
+	}
+
+	private static void sleepUntil(long deadline) throws InterruptedException {
+		long remaining = deadline - System.nanoTime();
+		if (remaining > 0) {
+			TimeUnit.NANOSECONDS.sleep(remaining);
+		}
+	}
+
+	/**
+	 * Whether the topic-partition name, as in the consumer lag metrics, is a
+	 * partition of the topic itself rather than of another topic named after it,
+	 * such as its retry tiers.
+	 */
+	static boolean isPartitionOf(String topicPartition, String topic) {
+		int length = topic.length();
+		if (topicPartition.length() < length + 2 || !topicPartition.startsWith(topic)
+				|| topicPartition.charAt(length) != '-') {
+			return false;
+		}
+		for (int i = length + 1; i < topicPartition.length(); i++) {
+			if (!Character.isDigit(topicPartition.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static String padding(int payloadBytes) {
+		StringBuilder padding = new StringBuilder(payloadBytes);
+		for (int i = 0; i < payloadBytes; i++) {
+			padding.append('x');
+		}
+		return padding.toString();
+	}
+
+	/**
+	 * Turns the counters of the topic into the samples of the timeline.
+	 */
+	private final class Progress {
+
+		private final TopicMetrics metrics;
+
+		private final long sentBefore;
+
+		private final long receivedBefore;
+
+		private long lastNanos = System.nanoTime();
+
+		private long lastSent;
+
+		private long lastReceived;
+
+		Progress(TopicMetrics metrics, long sentBefore, long receivedBefore) {
+			this.metrics = metrics;
+			this.sentBefore = sentBefore;
+			this.receivedBefore = receivedBefore;
+		}
+
+		LoadReport.Sample sample(long start) {
+			long now = System.nanoTime();
+			long sent = metrics.getSendRate().getCount() - sentBefore;
+			long received = metrics.getReceiveRate().getCount() - receivedBefore;
+			double seconds = Math.max(now - lastNanos, 1) / 1e9;
+			LoadReport.Sample sample = new LoadReport.Sample(TimeUnit.NANOSECONDS.toMillis(now - start), sent,
+					received, (sent - lastSent) / seconds, (received - lastReceived) / seconds, consumerLag());
+			lastNanos = now;
+			lastSent = sent;
+			lastReceived = received;
+			return sample;
+		}
+
+		private double consumerLag() {
+			double lag = 0;
+			for (Map.Entry<String, Double> partition : kafkaMetrics.getConsumerLag().entrySet()) {
+				if (isPartitionOf(partition.getKey(), topic)) {
+					lag += partition.getValue();
+				}
+			}
+			return lag;
+		}
+
+	}
+
+}
@@ -0,0 +1,246 @@
+package com.poc.kafka.load;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Outcome of a load generator run, written as JSON.
+ *
+ * The latencies come from the KafkaMetrics of the topic, so they cover every
+ * record of the topic since the application started: the ack latency from the
+ * send call to the broker acknowledgement, and the end-to-end latency from the
+ * record timestamp to its processing by the Receiver.
+ *
+ * @author kali
+ *
+ */
+public class LoadReport {
+
+	/**
+	 * The progress of the run at one point in time.
+	 */
+	public static class Sample {
+
+		private final long elapsedMillis;
+
+		private final long sent;
+
+		private final long received;
+
+		private final double sendRatePerSecond;
+
+		private final double receiveRatePerSecond;
+
+		private final double consumerLag;
+
+		public Sample(long elapsedMillis, long sent, long received, double sendRatePerSecond,
+				double receiveRatePerSecond, double consumerLag) {
+			this.elapsedMillis = elapsedMillis;
+			this.sent = sent;
+			this.received = received;
+			this.sendRatePerSecond = sendRatePerSecond;
+			this.receiveRatePerSecond = receiveRatePerSecond;
+			this.consumerLag = consumerLag;
+		}
+
+		public long getElapsedMillis() {
+			return elapsedMillis;
+		}
+
+		public long getSent() {
+			return sent;
+		}
+
+		public long getReceived() {
+			return received;
+		}
+
+		public double getSendRatePerSecond() {
+			return sendRatePerSecond;
+		}
+
+		public double getReceiveRatePerSecond() {
+			return receiveRatePerSecond;
+		}
+
+		public double getConsumerLag() {
+			return consumerLag;
+		}
+
+	}
+
+	private String topic;
+
+	private String mode;
+
+	private double targetRatePerSecond;
+
+	private int producerThreads;
+
+	private int payloadBytes;
+
+	private String keyDistribution;
+
+	private long durationMillis;
+
+	private long drainMillis;
+
+	private long sent;
+
+	private long received;
+
+	private long sendErrors;
+
+	private long receiveErrors;
+
+	private Map<String, Number> ackLatency;
+
+	private Map<String, Number> endToEndLatency;
+
+	private final List<Sample> timeline = new ArrayList<>();
+
+	public String getTopic() {
+		return topic;
+	}
+
+	public void setTopic(String topic) {
+		this.topic = topic;
+	}
+
+	public String getMode() {
+		return mode;
+	}
+
+	public void setMode(String mode) {
+		this.mode = mode;
+	}
+
+	public double getTargetRatePerSecond() {
+		return targetRatePerSecond;
+	}
+
+	public void setTargetRatePerSecond(double targetRatePerSecond) {
+		this.targetRatePerSecond = targetRatePerSecond;
+	}
+
+	public int getProducerThreads() {
+		return producerThreads;
+	}
+
+	public void setProducerThreads(int producerThreads) {
+		this.producerThreads = producerThreads;
+	}
+
+	public int getPayloadBytes() {
+		return payloadBytes;
+	}
+
+	public void setPayloadBytes(int payloadBytes) {
+		this.payloadBytes = payloadBytes;
+	}
+
+	public String getKeyDistribution() {
+		return keyDistribution;
+	}
+
+	public void setKeyDistribution(String keyDistribution) {
+		this.keyDistribution = keyDistribution;
+	}
+
+	public long getDurationMillis() {
+		return durationMillis;
+	}
+
+	public void setDurationMillis(long durationMillis) {
+		this.durationMillis = durationMillis;
+	}
+
+	public long getDrainMillis() {
+		return drainMillis;
+	}
+
+	public void setDrainMillis(long drainMillis) {
+		this.drainMillis = drainMillis;
+	}
+
+	public long getSent() {
+		return sent;
+	}
+
+	public void setSent(long sent) {
+		this.sent = sent;
+	}
+
+	public long getReceived() {
+		return received;
+	}
+
+	public void setReceived(long received) {
+		this.received = received;
+	}
+
+	public long getSendErrors() {
+		return sendErrors;
+	}
+
+	public void setSendErrors(long sendErrors) {
+		this.sendErrors = sendErrors;
+	}
+
+	public long getReceiveErrors() {
+		return receiveErrors;
+	}
+
+	public void setReceiveErrors(long receiveErrors) {
+		this.receiveErrors = receiveErrors;
+	}
+
+	/**
+	 * Records acknowledged per second over the run.
+	 */
+	public double getSendThroughput() {
+		return durationMillis == 0 ? 0 : sent * 1000.0 / durationMillis;
+	}
+
+	/**
+	 * Records received per second over the run and the drain that followed.
+	 */
+	public double getReceiveThroughput() {
+		long millis = durationMillis + drainMillis;
+		return millis == 0 ? 0 : received * 1000.0 / millis;
+	}
+
+	public Map<String, Number> getAckLatency() {
+		return ackLatency;
+	}
+
+	public void setAckLatency(Map<String, Number> ackLatency) {
+		this.ackLatency = ackLatency;
+	}
+
+	public Map<String, Number> getEndToEndLatency() {
+		return endToEndLatency;
+	}
+
+	public void setEndToEndLatency(Map<String, Number> endToEndLatency) {
+		this.endToEndLatency = endToEndLatency;
+	}
+
+	public List<Sample> getTimeline() {
+		return timeline;
+	}
+
+	public void writeTo(File file) throws IOException {
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null) {
+			parent.mkdirs();
+		}
+		new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(file, this);
+	}
+
+}
@@ -0,0 +1,74 @@
+package com.poc.kafka.logging;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+
+/**
+ * Sampled and rate limited logging of individual messages, for the Sender and
+ * Receiver hot paths.
+ *
+ * Per-message logging is opt-in: with the default sample rate of 0 a call is a
+ * single field read. Otherwise one message in sampleRate is logged, at most
+ * maxPerSecond times per second, and only if the logger is enabled for INFO.
+ * The message is handed to the logger as an argument, so its toString() runs
+ * only for the lines actually written.
+ *
+ * @author kali
+ *
+ */
+public class MessageLogger {
+
+	private final Logger logger;
+
+	private final int sampleRate;
+
+	private final int maxPerSecond;
+
+	private final AtomicLong count = new AtomicLong();
+
+	private final AtomicLong second = new AtomicLong();
+
+	private final AtomicInteger loggedThisSecond = new AtomicInteger();
+
+	/**
+	 * @param sampleRate   log one message out of sampleRate, 0 to log none
+	 * @param maxPerSecond upper bound of the lines written per second, 0 for no
+	 *                     bound
+	 */
+	public MessageLogger(Logger logger, int sampleRate, int maxPerSecond) {
+		this.logger = logger;
+		this.sampleRate = sampleRate;
+		this.maxPerSecond = maxPerSecond;
+	}
+
+	/**
+	 * A MessageLogger that never logs.
+	 */
+	public static MessageLogger disabled(Logger logger) {
+		return new MessageLogger(logger, 0, 0);
+	}
+
+	public void log(String format, Object message, Object topic) {
+		if (sampleRate > 0 && sample() && logger.isInfoEnabled()) {
+			logger.info(format, message, topic);
+		}
+	}
+
+	private boolean sample() {
+		if (sampleRate > 1 && count.incrementAndGet() % sampleRate != 0) {
+			return false;
+		}
+		if (maxPerSecond <= 0) {
+			return true;
+		}
+		long now = System.currentTimeMillis() / 1000;
+		long current = second.get();
+		if (current != now && second.compareAndSet(current, now)) {
+			loggedThisSecond.set(0);
+		}
+		return loggedThisSecond.incrementAndGet() <= maxPerSecond;
+	}
+
+}
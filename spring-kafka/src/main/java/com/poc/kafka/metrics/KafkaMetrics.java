@@ -0,0 +1,181 @@
+package com.poc.kafka.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import com.poc.kafka.model.PersonModel;
+import com.poc.kafka.producer.ProducerPool;
+
+/**
+ * Hot path instrumentation of the Sender and the Receiver, exported over JMX
+ * as com.poc.kafka:type=KafkaMetrics.
+ *
+ * Per topic, it keeps the send rate, the ack latency (from the send call to the
+ * broker acknowledgement), the send errors, the receive rate, the end-to-end
+ * latency (from the record timestamp to its reception) and the receive errors,
+ * plus the queue, append and processing times of the traced records (see
+ * RecordTracer).
+ * Recording never takes a lock nor allocates once the topic is known.
+ *
+ * The consumer lag per partition and the metrics of the Kafka clients
+ * themselves are read from the listener containers and the KafkaTemplate when
+ * the attributes are requested.
+ *
+ * @author kali
+ *
+ */
+@Component
+@ManagedResource(objectName = "com.poc.kafka:type=KafkaMetrics", description = "Sender and Receiver metrics")
+public class KafkaMetrics {
+
+	// Name of the per partition lag metric of the consumer fetch manager, which
+	// Kafka 1.0 prefixes with the topic partition.
+	private static final String RECORDS_LAG = "records-lag";
+
+	private final ConcurrentMap<String, TopicMetrics> topics = new ConcurrentHashMap<>();
+
+	@Autowired(required = false)
+	private KafkaListenerEndpointRegistry kafkaListenerEndpointRegistry;
+
+	@Autowired(required = false)
+	private KafkaTemplate<String, PersonModel> kafkaTemplate;
+
+	@Autowired(required = false)
+	private ProducerPool<PersonModel> producerPool;
+
+	public TopicMetrics topic(String topic) {
+		TopicMetrics metrics = topics.get(topic);
+		return metrics != null ? metrics : topics.computeIfAbsent(topic, t -> new TopicMetrics());
+	}
+
+	public void recordSend(String topic, long ackLatencyNanos) {
+		TopicMetrics metrics = topic(topic);
+		metrics.getSendRate().mark();
+		metrics.getAckLatency().record(ackLatencyNanos, TimeUnit.NANOSECONDS);
+	}
+
+	public void recordSendError(String topic) {
+		topic(topic).getSendErrors().increment();
+	}
+
+	/**
+	 * @param timestamp the record timestamp, in milliseconds; a negative value
+	 *                  (no timestamp) only counts the reception
+	 */
+	public void recordReceive(String topic, long timestamp) {
+		TopicMetrics metrics = topic(topic);
+		metrics.getReceiveRate().mark();
+		if (timestamp >= 0) {
+			metrics.getEndToEndLatency().record(System.currentTimeMillis() - timestamp, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * @param queueMillis     from the send call to the start of the handler
+	 * @param appendMillis    from the send call to the append to the log, negative
+	 *                        when unknown
+	 * @param processingNanos spent in the handler
+	 */
+	public void recordTrace(String topic, long queueMillis, long appendMillis, long processingNanos) {
+		TopicMetrics metrics = topic(topic);
+		metrics.getQueueLatency().record(queueMillis, TimeUnit.MILLISECONDS);
+		if (appendMillis >= 0) {
+			metrics.getAppendLatency().record(appendMillis, TimeUnit.MILLISECONDS);
+		}
+		metrics.getProcessingLatency().record(processingNanos, TimeUnit.NANOSECONDS);
+	}
+
+	public void recordReceiveError(String topic) {
+		topic(topic).getReceiveErrors().increment();
+	}
+
+	@ManagedAttribute(description = "Send and receive rates, latencies in microseconds and errors per topic")
+	public Map<String, Map<String, Object>> getTopicMetrics() {
+		Map<String, Map<String, Object>> snapshot = new TreeMap<>();
+		topics.forEach((topic, metrics) -> snapshot.put(topic, metrics.snapshot()));
+		return snapshot;
+	}
+
+	@ManagedAttribute(description = "Records behind the log end offset per topic-partition of the listeners")
+	public Map<String, Double> getConsumerLag() {
+		Map<String, Double> lag = new TreeMap<>();
+		for (Map<String, Double> clientMetrics : getConsumerClientMetrics().values()) {
+			clientMetrics.forEach((name, value) -> {
+				if (name.endsWith('.' + RECORDS_LAG)) {
+					lag.put(name.substring(name.indexOf(':') + 1, name.length() - RECORDS_LAG.length() - 1), value);
+				}
+			});
+		}
+		return lag;
+	}
+
+	@ManagedAttribute(description = "Metrics of the producer clients, per client id")
+	public Map<String, Map<String, Double>> getProducerClientMetrics() {
+		Map<String, Map<String, Double>> metrics = new TreeMap<>();
+		if (producerPool != null) {
+			// Reading the metrics of the kafkaTemplate would create its producer.
+			for (KafkaTemplate<String, PersonModel> template : producerPool.activeTemplates()) {
+				collectPerClient(template.metrics(), metrics);
+			}
+		} else if (kafkaTemplate != null) {
+			collectPerClient(kafkaTemplate.metrics(), metrics);
+		}
+		return metrics;
+	}
+
+	@ManagedAttribute(description = "Metrics of the listener consumer clients, per client id")
+	public Map<String, Map<String, Double>> getConsumerClientMetrics() {
+		Map<String, Map<String, Double>> metrics = new TreeMap<>();
+		if (kafkaListenerEndpointRegistry != null) {
+			for (MessageListenerContainer container : kafkaListenerEndpointRegistry.getListenerContainers()) {
+				container.metrics().values().forEach(clientMetrics -> collectPerClient(clientMetrics, metrics));
+			}
+		}
+		return metrics;
+	}
+
+	private static void collectPerClient(Map<MetricName, ? extends Metric> clientMetrics,
+			Map<String, Map<String, Double>> metrics) {
+		clientMetrics.forEach((name, metric) -> {
+			String clientId = name.tags().getOrDefault("client-id", "");
+			Map<String, Double> values = metrics.computeIfAbsent(clientId, c -> new TreeMap<>());
+			collect(name, metric, values);
+		});
+	}
+
+	/**
+	 * Numeric metrics only, keyed group:name plus the topic and partition tags
+	 * when the metric has them.
+	 */
+	private static void collect(MetricName name, Metric metric, Map<String, Double> values) {
+		Object value = metric.metricValue();
+		if (!(value instanceof Number) || Double.isNaN(((Number) value).doubleValue())) {
+			return;
+		}
+		StringBuilder key = new StringBuilder(name.group()).append(':');
+		String topic = name.tags().get("topic");
+		if (topic != null) {
+			key.append(topic).append('.');
+			String partition = name.tags().get("partition");
+			if (partition != null) {
+				key.setLength(key.length() - 1);
+				key.append('-').append(partition).append('.');
+			}
+		}
+		values.put(key.append(name.name()).toString(), ((Number) value).doubleValue());
+	}
+
+}
@@ -0,0 +1,116 @@
+package com.poc.kafka.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free, fixed size latency histogram for the message hot path.
+ *
+ * Values are recorded in microseconds into log-linear buckets: each power of
+ * two is split in {@link #SUB_BUCKETS} linear sub-buckets, which bounds the
+ * relative error of the percentiles to 1/8 while the whole range of a long
+ * fits in 488 counters. Recording is one array increment and two adders, with
+ * no allocation.
+ *
+ * @author kali
+ *
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 3;
+
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+	private final LongAdder count = new LongAdder();
+
+	private final LongAdder sum = new LongAdder();
+
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	public void record(long duration, TimeUnit unit) {
+		recordMicros(unit.toMicros(duration));
+	}
+
+	public void recordMicros(long micros) {
+		long value = Math.max(micros, 0);
+		counts.incrementAndGet(index(value));
+		count.increment();
+		sum.add(value);
+		max.accumulate(value);
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public double getMeanMicros() {
+		long total = count.sum();
+		return total == 0 ? 0 : (double) sum.sum() / total;
+	}
+
+	public long getMaxMicros() {
+		return max.get();
+	}
+
+	/**
+	 * The upper bound of the bucket holding the given percentile (0 to 100), in
+	 * microseconds.
+	 */
+	public long getPercentileMicros(double percentile) {
+		long total = count.sum();
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts.get(i);
+			if (seen >= rank) {
+				return Math.min(upperBound(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	/**
+	 * Count, mean, p50, p99, p99.9 and max, in microseconds.
+	 */
+	public Map<String, Number> snapshot() {
+		Map<String, Number> snapshot = new LinkedHashMap<>();
+		snapshot.put("count", getCount());
+		snapshot.put("meanMicros", getMeanMicros());
+		snapshot.put("p50Micros", getPercentileMicros(50));
+		snapshot.put("p99Micros", getPercentileMicros(99));
+		snapshot.put("p999Micros", getPercentileMicros(99.9));
+		snapshot.put("maxMicros", getMaxMicros());
+		return snapshot;
+	}
+
+	static int index(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int shift = exponent - SUB_BUCKET_BITS;
+		int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+		return (shift + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	static long upperBound(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = index / SUB_BUCKETS - 1;
+		long lowerBound = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+		return lowerBound + (1L << shift) - 1;
+	}
+
+}
@@ -0,0 +1,59 @@
+package com.poc.kafka.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts events and gives their rate over the last minute, using one counter
+ * per second in a ring. Marking an event is a couple of atomic operations and
+ * does not allocate; a slot reused for a new second is reset without locking,
+ * so the rate is approximate when many threads roll over at the same time.
+ *
+ * @author kali
+ *
+ */
+public class RateMeter {
+
+	private static final int WINDOW_SECONDS = 60;
+
+	private final LongAdder total = new LongAdder();
+
+	private final AtomicLongArray counts = new AtomicLongArray(WINDOW_SECONDS);
+
+	private final AtomicLongArray seconds = new AtomicLongArray(WINDOW_SECONDS);
+
+	public void mark() {
+		mark(1);
+	}
+
+	public void mark(long events) {
+		total.add(events);
+		long second = System.currentTimeMillis() / 1000;
+		int slot = (int) (second % WINDOW_SECONDS);
+		long slotSecond = seconds.get(slot);
+		if (slotSecond != second && seconds.compareAndSet(slot, slotSecond, second)) {
+			counts.set(slot, 0);
+		}
+		counts.addAndGet(slot, events);
+	}
+
+	public long getCount() {
+		return total.sum();
+	}
+
+	/**
+	 * Events per second over the last complete minute.
+	 */
+	public double getOneMinuteRate() {
+		long now = System.currentTimeMillis() / 1000;
+		long events = 0;
+		for (int slot = 0; slot < WINDOW_SECONDS; slot++) {
+			long second = seconds.get(slot);
+			if (second < now && second >= now - WINDOW_SECONDS) {
+				events += counts.get(slot);
+			}
+		}
+		return (double) events / WINDOW_SECONDS;
+	}
+
+}
@@ -0,0 +1,85 @@
+package com.poc.kafka.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The producer and consumer side metrics of one topic.
+ *
+ * @author kali
+ *
+ */
+public class TopicMetrics {
+
+	private final RateMeter sendRate = new RateMeter();
+
+	private final LatencyHistogram ackLatency = new LatencyHistogram();
+
+	private final LongAdder sendErrors = new LongAdder();
+
+	private final RateMeter receiveRate = new RateMeter();
+
+	private final LatencyHistogram endToEndLatency = new LatencyHistogram();
+
+	private final LongAdder receiveErrors = new LongAdder();
+
+	private final LatencyHistogram queueLatency = new LatencyHistogram();
+
+	private final LatencyHistogram appendLatency = new LatencyHistogram();
+
+	private final LatencyHistogram processingLatency = new LatencyHistogram();
+
+	public RateMeter getSendRate() {
+		return sendRate;
+	}
+
+	public LatencyHistogram getAckLatency() {
+		return ackLatency;
+	}
+
+	public LongAdder getSendErrors() {
+		return sendErrors;
+	}
+
+	public RateMeter getReceiveRate() {
+		return receiveRate;
+	}
+
+	public LatencyHistogram getEndToEndLatency() {
+		return endToEndLatency;
+	}
+
+	public LongAdder getReceiveErrors() {
+		return receiveErrors;
+	}
+
+	public LatencyHistogram getQueueLatency() {
+		return queueLatency;
+	}
+
+	public LatencyHistogram getAppendLatency() {
+		return appendLatency;
+	}
+
+	public LatencyHistogram getProcessingLatency() {
+		return processingLatency;
+	}
+
+	public Map<String, Object> snapshot() {
+		Map<String, Object> snapshot = new LinkedHashMap<>();
+		snapshot.put("sent", sendRate.getCount());
+		snapshot.put("sendRatePerSecond", sendRate.getOneMinuteRate());
+		snapshot.put("sendErrors", sendErrors.sum());
+		snapshot.put("ackLatency", ackLatency.snapshot());
+		snapshot.put("received", receiveRate.getCount());
+		snapshot.put("receiveRatePerSecond", receiveRate.getOneMinuteRate());
+		snapshot.put("receiveErrors", receiveErrors.sum());
+		snapshot.put("endToEndLatency", endToEndLatency.snapshot());
+		snapshot.put("queueLatency", queueLatency.snapshot());
+		snapshot.put("appendLatency", appendLatency.snapshot());
+		snapshot.put("processingLatency", processingLatency.snapshot());
+		return snapshot;
+	}
+
+}
@@ -1,7 +1,6 @@
 package com.poc.kafka.model;
 
 import java.util.Date;
-import java.util.StringJoiner;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -52,7 +51,11 @@ public class PersonModel extends Model {
 
 	@Override
 	public String toString() {
-		return new StringJoiner(", ", PersonModel.class.getSimpleName() + "[", "]").add("name=" + name)
-				.add("lastname=" + lastname).toString();
+		return new StringBuilder(29 + length(name) + length(lastname)).append("PersonModel[name=").append(name)
+				.append(", lastname=").append(lastname).append(']').toString();
+	}
+
+	private static int length(String value) {
+		return value == null ? 4 : value.length();
 	}
 }
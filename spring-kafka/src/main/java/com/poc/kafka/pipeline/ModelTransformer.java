@@ -0,0 +1,21 @@
+package com.poc.kafka.pipeline;
+
+import com.poc.kafka.model.Model;
+
+/**
+ * The transformation applied by the PersonPipeline to each record it consumes
+ * before producing the result to the output topic.
+ *
+ * @author kali
+ *
+ * @param <T> the type of message
+ */
+@FunctionalInterface
+public interface ModelTransformer<T extends Model> {
+
+	/**
+	 * @return the message to produce, or null to drop the record
+	 */
+	T transform(T message);
+
+}
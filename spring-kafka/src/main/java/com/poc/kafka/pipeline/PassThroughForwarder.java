@@ -0,0 +1,88 @@
+package com.poc.kafka.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Predicate;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Service;
+import org.springframework.util.concurrent.ListenableFuture;
+
+import com.poc.kafka.metrics.KafkaMetrics;
+
+/**
+ * Routing stage forwarding the records of the input topic that pass the
+ * filter to the output topic, without deserializing them: the value bytes
+ * received by the consumer are handed as they are to the producer, with the
+ * key, the headers and the timestamp of the record. Nothing is bound to an
+ * object, nothing is re-serialized.
+ *
+ * The producer is flushed before the listener returns, and the listener fails
+ * if a record of the batch was not acknowledged, so the offsets of a batch are
+ * only committed once its records are (at least once): the container then
+ * seeks back to the batch and forwards it again.
+ *
+ * @author kali
+ *
+ */
+@Service
+@ConditionalOnProperty(name = "kafka.passthrough.enabled")
+public class PassThroughForwarder {
+
+	public static final String PASS_THROUGH_LISTENER_ID = "passThrough";
+
+	@Autowired
+	@Qualifier("passThroughKafkaTemplate")
+	private KafkaTemplate<String, byte[]> passThroughKafkaTemplate;
+
+	@Autowired
+	@Qualifier("passThroughFilter")
+	private Predicate<ConsumerRecord<String, byte[]>> passThroughFilter;
+
+	@Autowired
+	private KafkaMetrics kafkaMetrics;
+
+	@Value("${kafka.passthrough.output:personRouted}")
+	private String outputTopic;
+
+	@KafkaListener(id = PASS_THROUGH_LISTENER_ID, topics = "${kafka.passthrough.input:${kafka.topic.json}}", containerFactory = "passThroughKafkaListenerContainerFactory")
+	public void forward(List<ConsumerRecord<String, byte[]>> records) throws InterruptedException {
+		List<ListenableFuture<SendResult<String, byte[]>>> futures = new ArrayList<>();
+		for (ConsumerRecord<String, byte[]> record : records) {
+			kafkaMetrics.recordReceive(record.topic(), record.timestamp());
+			if (passThroughFilter.test(record)) {
+				long start = System.nanoTime();
+				Long timestamp = record.timestamp() >= 0 ? record.timestamp() : null;
+				ListenableFuture<SendResult<String, byte[]>> future = passThroughKafkaTemplate.send(new ProducerRecord<>(
+						outputTopic, null, timestamp, record.key(), record.value(), record.headers()));
+				future.addCallback(result -> kafkaMetrics.recordSend(outputTopic, System.nanoTime() - start),
+						ex -> kafkaMetrics.recordSendError(outputTopic));
+				futures.add(future);
+			}
+		}
+		if (futures.isEmpty()) {
+			return;
+		}
+		passThroughKafkaTemplate.flush();
+		// Complete once flushed.
+		for (ListenableFuture<SendResult<String, byte[]>> future : futures) {
+			try {
+				future.get();
+			} catch (ExecutionException e) {
+				throw new KafkaException("Failed to forward a batch of " + records.size() + " records to topic "
+						+ outputTopic, e.getCause());
+			}
+		}
+	}
+
+}
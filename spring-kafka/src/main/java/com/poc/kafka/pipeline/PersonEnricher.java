@@ -0,0 +1,36 @@
+package com.poc.kafka.pipeline;
+
+import java.util.Date;
+
+import com.poc.kafka.model.PersonModel;
+
+/**
+ * Normalizes a PersonModel: trims the name and lastname and stamps the date
+ * when the producer did not set one. A person without any name is dropped.
+ *
+ * @author kali
+ *
+ */
+public class PersonEnricher implements ModelTransformer<PersonModel> {
+
+	@Override
+	public PersonModel transform(PersonModel message) {
+		if (message == null || (isBlank(message.getName()) && isBlank(message.getLastname()))) {
+			return null;
+		}
+		PersonModel enriched = new PersonModel();
+		enriched.setName(trim(message.getName()));
+		enriched.setLastname(trim(message.getLastname()));
+		enriched.setDate(message.getDate() != null ? message.getDate() : new Date());
+		return enriched;
+	}
+
+	private static boolean isBlank(String value) {
+		return value == null || value.trim().isEmpty();
+	}
+
+	private static String trim(String value) {
+		return value == null ? null : value.trim();
+	}
+
+}
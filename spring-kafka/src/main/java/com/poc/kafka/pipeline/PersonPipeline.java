@@ -0,0 +1,87 @@
+package com.poc.kafka.pipeline;
+
+import java.util.List;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.errors.SerializationException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import com.poc.kafka.model.PersonModel;
+import com.poc.kafka.retry.RetryForwarder;
+import com.poc.kafka.serializer.FailSafeDeserializer;
+
+/**
+ * Exactly-once consume-transform-produce stage: reads PersonModel records from
+ * the input topic, transforms them and produces the results to the output
+ * topic.
+ *
+ * The listener container runs each poll in a Kafka transaction (see the
+ * pipelineKafkaListenerContainerFactory of ReceiverConfig): the records
+ * produced here and the consumed offsets are committed together, or not at
+ * all, so a crash neither loses nor duplicates output records for the
+ * read_committed consumers. A poll is one transaction, which is why the batch
+ * size and the commit interval are the max.poll.records and the fetch wait of
+ * the pipeline consumer.
+ *
+ * A record that cannot be deserialized or transformed is forwarded to the dead
+ * letter topic of the input topic and its offset committed with the others.
+ * The retry tiers are skipped since the retry listener hands their records to
+ * the Receiver, not to this stage. The dead letter topic is not part of the
+ * transaction: a transaction rolled back after the forward forwards the record
+ * again. Without the retry topics the listener fails instead.
+ *
+ * @author kali
+ *
+ */
+@Service
+public class PersonPipeline {
+
+	public static final String PIPELINE_LISTENER_ID = "pipeline";
+
+	@Autowired
+	@Qualifier("transactionalKafkaTemplate")
+	private KafkaTemplate<String, PersonModel> transactionalKafkaTemplate;
+
+	@Autowired
+	private ModelTransformer<PersonModel> personTransformer;
+
+	/*
+	 * Forwards the failed records to the dead letter topic, unless the retry
+	 * topics are disabled.
+	 */
+	@Autowired(required = false)
+	private RetryForwarder retryForwarder;
+
+	@Value("${kafka.pipeline.output:personEnriched}")
+	private String outputTopic;
+
+	@KafkaListener(id = PIPELINE_LISTENER_ID, topics = "${kafka.pipeline.input:${kafka.topic.json}}", containerFactory = "pipelineKafkaListenerContainerFactory")
+	public void process(List<ConsumerRecord<String, PersonModel>> records) {
+		for (ConsumerRecord<String, PersonModel> record : records) {
+			try {
+				transform(record);
+			} catch (RuntimeException e) {
+				if (retryForwarder == null) {
+					throw e;
+				}
+				retryForwarder.deadLetter(record, e);
+			}
+		}
+	}
+
+	private void transform(ConsumerRecord<String, PersonModel> record) {
+		if (FailSafeDeserializer.isFailed(record)) {
+			throw new SerializationException("Undeserializable value in topic " + record.topic());
+		}
+		PersonModel transformed = personTransformer.transform(record.value());
+		if (transformed != null) {
+			transactionalKafkaTemplate.send(outputTopic, record.key(), transformed);
+		}
+	}
+
+}
@@ -0,0 +1,65 @@
+package com.poc.kafka.pipeline;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+
+/**
+ * Filters of the pass-through stage, looking at the key, the headers or the raw
+ * value bytes of a record without binding the value to an object.
+ *
+ * @author kali
+ *
+ */
+public final class RecordPredicates {
+
+	private RecordPredicates() {
+	}
+
+	/**
+	 * Records whose key starts with the given prefix. PersonModel records are
+	 * keyed by name:lastname, so this selects persons by name.
+	 */
+	public static Predicate<ConsumerRecord<String, byte[]>> keyPrefix(String prefix) {
+		return record -> record.key() != null && record.key().startsWith(prefix);
+	}
+
+	/**
+	 * Records whose last header of the given name has the given UTF-8 value.
+	 */
+	public static Predicate<ConsumerRecord<String, byte[]>> header(String name, String value) {
+		byte[] expected = value.getBytes(StandardCharsets.UTF_8);
+		return record -> {
+			Header header = record.headers().lastHeader(name);
+			return header != null && Arrays.equals(header.value(), expected);
+		};
+	}
+
+	/**
+	 * Records whose JSON value holds the string field {@code "field":"value"}, as
+	 * written by Jackson (no whitespace, the value without escaped characters).
+	 * The bytes are scanned for the pair, nothing is parsed: a field of a nested
+	 * object matches as well.
+	 */
+	public static Predicate<ConsumerRecord<String, byte[]>> jsonField(String field, String value) {
+		byte[] pattern = ('"' + field + "\":\"" + value + '"').getBytes(StandardCharsets.UTF_8);
+		return record -> record.value() != null && indexOf(record.value(), pattern) >= 0;
+	}
+
+	static int indexOf(byte[] data, byte[] pattern) {
+		int last = data.length - pattern.length;
+		outer: for (int i = 0; i <= last; i++) {
+			for (int j = 0; j < pattern.length; j++) {
+				if (data[i + j] != pattern[j]) {
+					continue outer;
+				}
+			}
+			return i;
+		}
+		return -1;
+	}
+
+}
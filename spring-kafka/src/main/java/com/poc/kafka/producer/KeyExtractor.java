@@ -0,0 +1,20 @@
+package com.poc.kafka.producer;
+
+import com.poc.kafka.model.Model;
+
+/**
+ * Strategy used by the Sender to derive the record key of a message.
+ *
+ * All the records sharing a key land on the same partition, so the key decides
+ * which messages keep their relative order when the consumers scale out.
+ *
+ * @author kali
+ *
+ * @param <T> the type of message
+ */
+@FunctionalInterface
+public interface KeyExtractor<T extends Model> {
+
+	String extractKey(T message);
+
+}
@@ -0,0 +1,32 @@
+package com.poc.kafka.producer;
+
+import com.poc.kafka.model.PersonModel;
+
+/**
+ * Keys a PersonModel by name and lastname, so that every message about the same
+ * person goes to the same partition and is consumed in order.
+ *
+ * @author kali
+ *
+ */
+public class PersonKeyExtractor implements KeyExtractor<PersonModel> {
+
+	private static final char SEPARATOR = ':';
+
+	@Override
+	public String extractKey(PersonModel message) {
+		String name = message.getName();
+		String lastname = message.getLastname();
+		StringBuilder key = new StringBuilder((name == null ? 0 : name.length())
+				+ (lastname == null ? 0 : lastname.length()) + 1);
+		if (name != null) {
+			key.append(name);
+		}
+		key.append(SEPARATOR);
+		if (lastname != null) {
+			key.append(lastname);
+		}
+		return key.toString();
+	}
+
+}
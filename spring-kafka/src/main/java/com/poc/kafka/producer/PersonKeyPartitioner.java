@@ -0,0 +1,88 @@
+package com.poc.kafka.producer;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kafka.clients.producer.Partitioner;
+import org.apache.kafka.clients.producer.internals.DefaultPartitioner;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.utils.Utils;
+
+/**
+ * Key based partitioner that keeps known hot keys apart.
+ *
+ * The keys listed in the {@link #HOT_KEYS_CONFIG} producer property are pinned
+ * round-robin on the first partitions of the topic, one hot key per partition
+ * while there are enough partitions. When the topic has more partitions than
+ * hot keys, every other key is hashed (murmur2, like the default partitioner)
+ * over the remaining partitions only, so a hot key never shares its partition
+ * with the regular traffic.
+ *
+ * The mapping only depends on the key, the hot key list and the partition
+ * count, so every producer sends a given key to the same partition and the
+ * per-key ordering is kept. Changing the hot key list or the partition count
+ * moves keys to other partitions, exactly like adding partitions does with the
+ * default partitioner. Records without key are delegated to the default
+ * partitioner.
+ *
+ * @author kali
+ *
+ */
+public class PersonKeyPartitioner implements Partitioner {
+
+	/**
+	 * Comma separated list of the hot keys, in the order they are pinned.
+	 */
+	public static final String HOT_KEYS_CONFIG = "person.partitioner.hot.keys";
+
+	private final Partitioner unkeyedPartitioner = new DefaultPartitioner();
+
+	private final Map<String, Integer> hotKeys = new HashMap<>();
+
+	@Override
+	public void configure(Map<String, ?> configs) {
+		unkeyedPartitioner.configure(configs);
+		Object value = configs.get(HOT_KEYS_CONFIG);
+		if (value instanceof String) {
+			for (String hotKey : ((String) value).split(",")) {
+				addHotKey(hotKey.trim());
+			}
+		} else if (value instanceof List) {
+			for (Object hotKey : (List<?>) value) {
+				addHotKey(hotKey.toString().trim());
+			}
+		}
+	}
+
+	private void addHotKey(String hotKey) {
+		if (!hotKey.isEmpty() && !hotKeys.containsKey(hotKey)) {
+			hotKeys.put(hotKey, hotKeys.size());
+		}
+	}
+
+	@Override
+	public int partition(String topic, Object key, byte[] keyBytes, Object value, byte[] valueBytes,
+			Cluster cluster) {
+		if (keyBytes == null) {
+			return unkeyedPartitioner.partition(topic, key, keyBytes, value, valueBytes, cluster);
+		}
+		int numPartitions = cluster.partitionsForTopic(topic).size();
+		Integer hotIndex = hotKeys.get(key.toString());
+		if (hotIndex != null) {
+			return hotIndex % numPartitions;
+		}
+		int hash = Utils.toPositive(Utils.murmur2(keyBytes));
+		int reserved = hotKeys.size();
+		if (reserved < numPartitions) {
+			return reserved + hash % (numPartitions - reserved);
+		}
+		return hash % numPartitions;
+	}
+
+	@Override
+	public void close() {
+		unkeyedPartitioner.close();
+	}
+
+}
@@ -0,0 +1,272 @@
+package com.poc.kafka.producer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.concurrent.ListenableFuture;
+
+/**
+ * Producers of the Sender, one per isolation group, so that a slow or
+ * throttled topic only fills the buffer of its own producer instead of holding
+ * back the sends to every other topic.
+ *
+ * A topic belongs to the group it is mapped to (a tenant, say), otherwise to a
+ * group of its own with the topic isolation, or to the single shared group.
+ * The producer of a group is created on the first send to one of its topics,
+ * with its own buffer.memory and client.id, and closed once it has not sent
+ * anything for the idle timeout; the next send creates it again. Closing
+ * flushes the records still buffered, and a send never uses a producer being
+ * closed.
+ *
+ * The open producers are exported over JMX as com.poc.kafka:type=ProducerPool.
+ *
+ * @author kali
+ *
+ */
+@ManagedResource(objectName = "com.poc.kafka:type=ProducerPool", description = "Producers per isolation group")
+public class ProducerPool<V> {
+
+	private static final Logger logger = LoggerFactory.getLogger(ProducerPool.class);
+
+	public enum Isolation {
+		/**
+		 * A single producer for the topics not mapped to a group.
+		 */
+		SHARED,
+		/**
+		 * A producer per topic not mapped to a group.
+		 */
+		TOPIC;
+
+		public static Isolation fromName(String name) {
+			for (Isolation isolation : values()) {
+				if (isolation.name().equalsIgnoreCase(name)) {
+					return isolation;
+				}
+			}
+			throw new IllegalArgumentException("Unknown producer isolation " + name);
+		}
+	}
+
+	static final String SHARED_GROUP = "shared";
+
+	private final Map<String, Object> configs;
+
+	private final Serializer<V> valueSerializer;
+
+	private final Isolation isolation;
+
+	private final Map<String, String> topicGroups;
+
+	private final long idleTimeoutMs;
+
+	private final ConcurrentMap<String, PooledProducer> producers = new ConcurrentHashMap<>();
+
+	private final ScheduledExecutorService reaper;
+
+	private final AtomicLong created = new AtomicLong();
+
+	private final AtomicLong closed = new AtomicLong();
+
+	/**
+	 * @param configs       the producer configuration shared by every group
+	 * @param topicGroups   group of the topics that do not follow the isolation,
+	 *                      by topic
+	 * @param bufferMemory  buffer.memory of each producer
+	 * @param idleTimeoutMs time without a send after which a producer is closed, 0
+	 *                      to keep the producers open
+	 */
+	public ProducerPool(Map<String, Object> configs, Serializer<V> valueSerializer, Isolation isolation,
+			Map<String, String> topicGroups, long bufferMemory, long idleTimeoutMs) {
+		this.configs = new HashMap<>(configs);
+		this.configs.put(ProducerConfig.BUFFER_MEMORY_CONFIG, bufferMemory);
+		this.valueSerializer = valueSerializer;
+		this.isolation = isolation;
+		this.topicGroups = new HashMap<>(topicGroups);
+		this.idleTimeoutMs = idleTimeoutMs;
+		if (idleTimeoutMs > 0) {
+			CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("producer-pool-");
+			threadFactory.setDaemon(true);
+			reaper = Executors.newSingleThreadScheduledExecutor(threadFactory);
+			long period = Math.max(100, idleTimeoutMs / 2);
+			reaper.scheduleWithFixedDelay(this::closeIdle, period, period, TimeUnit.MILLISECONDS);
+		} else {
+			reaper = null;
+		}
+	}
+
+	/**
+	 * Send a record with the producer of the group of its topic, created if
+	 * needed.
+	 */
+	public ListenableFuture<SendResult<String, V>> send(ProducerRecord<String, V> record) {
+		String group = groupOf(record.topic());
+		while (true) {
+			PooledProducer producer = producers.computeIfAbsent(group, this::create);
+			if (producer.acquire()) {
+				try {
+					return producer.template.send(record);
+				} finally {
+					producer.release();
+				}
+			}
+			// Closed by the reaper since the lookup: leave the room for a new one.
+			producers.remove(group, producer);
+		}
+	}
+
+	public String groupOf(String topic) {
+		String group = topicGroups.get(topic);
+		if (group != null) {
+			return group;
+		}
+		return isolation == Isolation.TOPIC ? topic : SHARED_GROUP;
+	}
+
+	/**
+	 * Templates of the open producers, to read their metrics.
+	 */
+	public Collection<KafkaTemplate<String, V>> activeTemplates() {
+		List<KafkaTemplate<String, V>> templates = new ArrayList<>(producers.size());
+		for (PooledProducer producer : producers.values()) {
+			templates.add(producer.template);
+		}
+		return templates;
+	}
+
+	@ManagedAttribute(description = "Milliseconds since the last send of each open producer, per group")
+	public Map<String, Long> getProducers() {
+		long now = System.currentTimeMillis();
+		Map<String, Long> idle = new TreeMap<>();
+		producers.forEach((group, producer) -> idle.put(group, now - producer.lastUsed));
+		return idle;
+	}
+
+	@ManagedAttribute(description = "Producers created since the start")
+	public long getCreated() {
+		return created.get();
+	}
+
+	@ManagedAttribute(description = "Producers closed after their idle timeout")
+	public long getClosed() {
+		return closed.get();
+	}
+
+	@ManagedAttribute(description = "Idle time after which a producer is closed, in milliseconds")
+	public long getIdleTimeoutMs() {
+		return idleTimeoutMs;
+	}
+
+	/**
+	 * Close every producer, flushing the buffered records.
+	 */
+	public void close() {
+		if (reaper != null) {
+			reaper.shutdownNow();
+		}
+		for (Map.Entry<String, PooledProducer> entry : producers.entrySet()) {
+			PooledProducer producer = entry.getValue();
+			producer.users.set(PooledProducer.CLOSED);
+			producers.remove(entry.getKey(), producer);
+			destroy(entry.getKey(), producer);
+		}
+	}
+
+	void closeIdle() {
+		long idleSince = System.currentTimeMillis() - idleTimeoutMs;
+		for (Map.Entry<String, PooledProducer> entry : producers.entrySet()) {
+			PooledProducer producer = entry.getValue();
+			if (producer.tryClose(idleSince)) {
+				// Counted once it no longer takes sends, before the close blocks.
+				closed.incrementAndGet();
+				producers.remove(entry.getKey(), producer);
+				logger.info("closing the producer of group {}, idle for more than {}ms", entry.getKey(), idleTimeoutMs);
+				destroy(entry.getKey(), producer);
+			}
+		}
+	}
+
+	private PooledProducer create(String group) {
+		Map<String, Object> props = new HashMap<>(configs);
+		props.put(ProducerConfig.CLIENT_ID_CONFIG, "producer-" + group);
+		created.incrementAndGet();
+		logger.info("creating the producer of group {}", group);
+		return new PooledProducer(new DefaultKafkaProducerFactory<>(props, new StringSerializer(), valueSerializer));
+	}
+
+	private void destroy(String group, PooledProducer producer) {
+		try {
+			producer.factory.destroy();
+		} catch (Exception e) {
+			logger.warn("failed to close the producer of group {}", group, e);
+		}
+	}
+
+	/**
+	 * A producer and the number of sends using it, or CLOSED once the reaper took
+	 * it: a send and the reaper cannot both win.
+	 */
+	private final class PooledProducer {
+
+		static final int CLOSED = -1;
+
+		final DefaultKafkaProducerFactory<String, V> factory;
+
+		final KafkaTemplate<String, V> template;
+
+		final AtomicInteger users = new AtomicInteger();
+
+		volatile long lastUsed = System.currentTimeMillis();
+
+		PooledProducer(DefaultKafkaProducerFactory<String, V> factory) {
+			this.factory = factory;
+			this.template = new KafkaTemplate<>(factory);
+		}
+
+		boolean acquire() {
+			while (true) {
+				int current = users.get();
+				if (current == CLOSED) {
+					return false;
+				}
+				if (users.compareAndSet(current, current + 1)) {
+					return true;
+				}
+			}
+		}
+
+		void release() {
+			lastUsed = System.currentTimeMillis();
+			users.decrementAndGet();
+		}
+
+		boolean tryClose(long idleSince) {
+			return lastUsed < idleSince && users.compareAndSet(0, CLOSED);
+		}
+
+	}
+
+}
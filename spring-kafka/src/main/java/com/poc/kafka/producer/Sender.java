@@ -1,13 +1,35 @@
 package com.poc.kafka.producer;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.errors.TimeoutException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.KafkaException;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureCallback;
+import org.springframework.util.concurrent.SettableListenableFuture;
 
+import com.poc.kafka.logging.MessageLogger;
+import com.poc.kafka.metrics.KafkaMetrics;
 import com.poc.kafka.model.PersonModel;
+import com.poc.kafka.serializer.PersonModelBinarySerializer;
+import com.poc.kafka.tracing.RecordTracer;
 
 /**
  * Spring Kafka Sending Messages to Topic
@@ -27,17 +49,268 @@ public class Sender {
 	@Autowired
 	private KafkaTemplate<String, PersonModel> kafkaTemplate;
 
+	@Autowired
+	private KeyExtractor<PersonModel> keyExtractor;
+
+	@Autowired
+	private KafkaMetrics kafkaMetrics;
+
+	/*
+	 * Per-message logging is sampled and off by default (see LoggingConfig).
+	 */
+	@Autowired
+	@Qualifier("senderMessageLogger")
+	private MessageLogger messageLogger;
+
+	/*
+	 * Present when kafka.producer.spill.enabled is true (see SpillConfig).
+	 */
+	@Autowired(required = false)
+	private SpillBuffer spillBuffer;
+
+	/*
+	 * Present when kafka.producer.pool.enabled is true (see SenderConfig): the
+	 * sends then go through the producer of the isolation group of the topic.
+	 */
+	@Autowired(required = false)
+	private ProducerPool<PersonModel> producerPool;
+
+	/*
+	 * Present when kafka.tracing.enabled is true (see TracingConfig).
+	 */
+	@Autowired(required = false)
+	private RecordTracer recordTracer;
+
+	private final PersonModelBinarySerializer spillSerializer = new PersonModelBinarySerializer();
+
 	@Value("${kafka.topic.json}")
 	private String topic;
 
+	/*
+	 * Upper bound of the sends that have been handed to the producer but not yet
+	 * acknowledged by the broker. Once reached, sendAsync blocks the caller until
+	 * an acknowledgement (or a failure) frees a slot.
+	 */
+	@Value("${kafka.producer.max-in-flight-sends:1000}")
+	private int maxInFlightSends;
+
+	private Semaphore inFlight;
+
+	/*
+	 * With the spill buffer, also the longest wait for the in-flight window once
+	 * the buffer is full.
+	 */
+	@Value("${kafka.producer.spill.max-block-ms:1000}")
+	private long spillMaxBlockMs;
+
+	@PostConstruct
+	public void init() {
+		inFlight = new Semaphore(maxInFlightSends);
+	}
+
 	public void send(String topic, PersonModel message) {
-		logger.info("sending message='{}' to topic='{}'", message.toString(), topic);
-		kafkaTemplate.send(topic, message);
+		messageLogger.log("sending message='{}' to topic='{}'", message, topic);
+		fireAndForget(topic, message);
 	}
 
 	public void send(PersonModel message) {
-		logger.info("###### sending message='{}' to topic='{}'", message.toString(), topic);
-		kafkaTemplate.send(topic, message);
+		messageLogger.log("###### sending message='{}' to topic='{}'", message, topic);
+		fireAndForget(topic, message);
+	}
+
+	private void fireAndForget(String topic, PersonModel message) {
+		if (spillBuffer == null) {
+			doSend(topic, message);
+			return;
+		}
+		try {
+			sendOrSpill(topic, message, false);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new KafkaException("Interrupted while waiting for the in-flight window", e);
+		}
+	}
+
+	/**
+	 * Send a message without waiting for the broker. The returned future completes
+	 * once the record is acknowledged, or exceptionally if the send failed.
+	 *
+	 * The call blocks while the in-flight window is full, which propagates a slow
+	 * broker back to the caller instead of growing the producer buffer. With the
+	 * spill buffer, the record is spilled instead, and its future completes once
+	 * the SpillDrainer has replayed it.
+	 */
+	public ListenableFuture<SendResult<String, PersonModel>> sendAsync(String topic, PersonModel message)
+			throws InterruptedException {
+		if (spillBuffer != null) {
+			return sendOrSpill(topic, message, true);
+		}
+		inFlight.acquire();
+		ListenableFuture<SendResult<String, PersonModel>> future;
+		try {
+			future = doSend(topic, message);
+		} catch (RuntimeException e) {
+			inFlight.release();
+			throw e;
+		}
+		future.addCallback(new ListenableFutureCallback<SendResult<String, PersonModel>>() {
+
+			@Override
+			public void onSuccess(SendResult<String, PersonModel> result) {
+				inFlight.release();
+				if (logger.isDebugEnabled()) {
+					logger.debug("sent message to topic='{}' partition={} offset={}", topic,
+							result.getRecordMetadata().partition(), result.getRecordMetadata().offset());
+				}
+			}
+
+			@Override
+			public void onFailure(Throwable ex) {
+				inFlight.release();
+				logger.error("failed to send message to topic='{}'", topic, ex);
+			}
+		});
+		return future;
+	}
+
+	public ListenableFuture<SendResult<String, PersonModel>> sendAsync(PersonModel message)
+			throws InterruptedException {
+		return sendAsync(topic, message);
+	}
+
+	/**
+	 * Pipeline a whole collection of messages through the in-flight window. The
+	 * returned future completes with the send results, in the order of the
+	 * collection, once every message is acknowledged; it completes exceptionally
+	 * as soon as one of them fails.
+	 */
+	public CompletableFuture<List<SendResult<String, PersonModel>>> sendAll(String topic,
+			Collection<PersonModel> messages) throws InterruptedException {
+		List<CompletableFuture<SendResult<String, PersonModel>>> futures = new ArrayList<>(messages.size());
+		for (PersonModel message : messages) {
+			futures.add(sendAsync(topic, message).completable());
+		}
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()])).thenApply(v -> {
+			List<SendResult<String, PersonModel>> results = new ArrayList<>(futures.size());
+			for (CompletableFuture<SendResult<String, PersonModel>> future : futures) {
+				results.add(future.join());
+			}
+			return results;
+		});
+	}
+
+	public CompletableFuture<List<SendResult<String, PersonModel>>> sendAll(Collection<PersonModel> messages)
+			throws InterruptedException {
+		return sendAll(topic, messages);
+	}
+
+	/**
+	 * Send path with the spill buffer. While the in-flight window is full, or as
+	 * long as spilled records remain to be replayed, the record is appended to the
+	 * spill buffer instead of being sent, so the records of a key keep their
+	 * order. A send expiring in the producer (broker unreachable) is spilled as
+	 * well; the records sent after it may then reach the broker first.
+	 *
+	 * The call is bounded rather than non-blocking: the producer may still block
+	 * up to its max.block.ms (kafka.producer.spill.max-block-ms) for metadata or
+	 * buffer space, and when the spill buffer is full too the call waits as long
+	 * for the in-flight window, then fails with a KafkaException.
+	 *
+	 * The future of a spilled record completes once the SpillDrainer has replayed
+	 * it and the broker acknowledged it, or exceptionally if the retention drops
+	 * it. The records spilled by a previous run have no future.
+	 *
+	 * @param tracked whether the caller gets the future: the spilled records of
+	 *                fire-and-forget sends are not tracked
+	 */
+	private ListenableFuture<SendResult<String, PersonModel>> sendOrSpill(String topic, PersonModel message,
+			boolean tracked) throws InterruptedException {
+		String key = keyExtractor.extractKey(message);
+		SettableListenableFuture<SendResult<String, PersonModel>> future = new SettableListenableFuture<>();
+		SpillBuffer.Acknowledgement acknowledgement = tracked ? acknowledgement(future, topic, key, message) : null;
+		if (spillBuffer.appendIfPending(topic, key, spillSerializer.serialize(topic, message), acknowledgement)) {
+			return future;
+		}
+		if (!inFlight.tryAcquire()) {
+			if (spillBuffer.append(topic, key, spillSerializer.serialize(topic, message), acknowledgement)) {
+				return future;
+			}
+			if (!inFlight.tryAcquire(spillMaxBlockMs, TimeUnit.MILLISECONDS)) {
+				kafkaMetrics.recordSendError(topic);
+				throw new KafkaException("In-flight window and spill buffer full, message to topic " + topic
+						+ " not sent within " + spillMaxBlockMs + " ms");
+			}
+		}
+		ListenableFuture<SendResult<String, PersonModel>> sent;
+		try {
+			sent = doSend(topic, message);
+		} catch (RuntimeException e) {
+			inFlight.release();
+			throw e;
+		}
+		sent.addCallback(result -> {
+			inFlight.release();
+			future.set(result);
+		}, ex -> {
+			inFlight.release();
+			// A timed out send is spilled: its future then completes on replay.
+			if (!(ex.getCause() instanceof TimeoutException
+					&& spillBuffer.append(topic, key, spillSerializer.serialize(topic, message), acknowledgement))) {
+				logger.error("failed to send message to topic='{}'", topic, ex);
+				future.setException(ex);
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Complete the future of a spilled record once it is replayed.
+	 */
+	private SpillBuffer.Acknowledgement acknowledgement(SettableListenableFuture<SendResult<String, PersonModel>> future,
+			String topic, String key, PersonModel message) {
+		return new SpillBuffer.Acknowledgement() {
+
+			@Override
+			public void replayed(RecordMetadata metadata) {
+				future.set(new SendResult<>(new ProducerRecord<>(topic, key, message), metadata));
+			}
+
+			@Override
+			public void expired() {
+				future.setException(
+						new KafkaException("Spilled message to topic " + topic + " expired before being replayed"));
+			}
+		};
+	}
+
+	/**
+	 * Send a keyed record, stamped with the trace headers when sampled, and
+	 * record its ack latency, or the failure, in the KafkaMetrics of the topic.
+	 */
+	private ListenableFuture<SendResult<String, PersonModel>> doSend(String topic, PersonModel message) {
+		long start = System.nanoTime();
+		ListenableFuture<SendResult<String, PersonModel>> future;
+		try {
+			ProducerRecord<String, PersonModel> record = new ProducerRecord<>(topic,
+					keyExtractor.extractKey(message), message);
+			if (recordTracer != null) {
+				recordTracer.stamp(record.headers());
+			}
+			future = producerPool != null ? producerPool.send(record) : kafkaTemplate.send(record);
+		} catch (RuntimeException e) {
+			kafkaMetrics.recordSendError(topic);
+			throw e;
+		}
+		future.addCallback(result -> kafkaMetrics.recordSend(topic, System.nanoTime() - start),
+				ex -> kafkaMetrics.recordSendError(topic));
+		return future;
+	}
+
+	/**
+	 * Number of sends that are waiting for a broker acknowledgement.
+	 */
+	public int getInFlightCount() {
+		return maxInFlightSends - inFlight.availablePermits();
 	}
 
 }
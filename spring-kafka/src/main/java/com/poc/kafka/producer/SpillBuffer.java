@@ -0,0 +1,549 @@
+package com.poc.kafka.producer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Append-only log on local disk of the records the Sender could not hand to
+ * the producer, replayed in order by the {@link SpillDrainer} once the broker
+ * keeps up again.
+ *
+ * The log is a sequence of memory-mapped segment files of a fixed size,
+ * spill-&lt;n&gt;.log. A segment starts with a header (the position up to which
+ * it was drained and the time of its last append) followed by frames:
+ *
+ * <pre>
+ * length    int32, of the rest of the frame
+ * topic     int16 length + UTF-8 bytes
+ * key       int32 length (-1 for null) + UTF-8 bytes
+ * value     int32 length (-1 for null) + bytes
+ * </pre>
+ *
+ * The length is written last, so a frame torn by a crash reads as the end of
+ * the segment. The pages belong to the operating system once written: the
+ * records survive a crash of the process, and a crash of the host after
+ * {@link #flush()}.
+ *
+ * Drained segments are deleted. The retention bounds the number of segments
+ * (appends are refused beyond it) and the age of the records (segments not
+ * appended to for longer are dropped and counted as expired).
+ *
+ * A record appended with an {@link Acknowledgement} is told when the drainer
+ * has replayed it, or when the retention dropped it. The records leave the log
+ * in the order they were appended, drained or expired, which numbers them: the
+ * acknowledgements are kept in memory only, those of a previous run are lost.
+ *
+ * Appends may come from any thread; peek, commit and expire are meant for a
+ * single drainer thread.
+ *
+ * @author kali
+ *
+ */
+@ManagedResource(objectName = "com.poc.kafka:type=SpillBuffer", description = "Sender spill buffer")
+public class SpillBuffer implements Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(SpillBuffer.class);
+
+	private static final Pattern SEGMENT_NAME = Pattern.compile("spill-(\\d+)\\.log");
+
+	// Segment header: int read position, int unused, long time of the last append.
+	private static final int HEADER_SIZE = 16;
+
+	private static final int READ_POSITION_OFFSET = 0;
+
+	private static final int LAST_APPEND_OFFSET = 8;
+
+	private static final int NULL_LENGTH = -1;
+
+	private final File directory;
+
+	private final int segmentBytes;
+
+	private final int maxSegments;
+
+	private final long retentionMs;
+
+	// Oldest first, the last one is appended to.
+	private final Deque<Segment> segments = new ArrayDeque<>();
+
+	private long nextSegmentId;
+
+	// Written under the lock, read without it by appendIfPending.
+	private volatile long pending;
+
+	private long appended;
+
+	private long drained;
+
+	private long expired;
+
+	private long refused;
+
+	// Number of the oldest pending record: records drained or expired since the
+	// buffer was opened.
+	private long head;
+
+	// Acknowledgements of the pending records, by increasing record number.
+	private final Deque<Waiter> waiters = new ArrayDeque<>();
+
+	/**
+	 * Open the spill buffer of the given directory, resuming after the last
+	 * drained record of the segments left by a previous run.
+	 */
+	public SpillBuffer(File directory, int segmentBytes, int maxSegments, long retentionMs) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create the spill directory " + directory);
+		}
+		this.directory = directory;
+		this.segmentBytes = segmentBytes;
+		this.maxSegments = maxSegments;
+		this.retentionMs = retentionMs;
+
+		File[] files = directory.listFiles((dir, name) -> SEGMENT_NAME.matcher(name).matches());
+		Arrays.sort(files, Comparator.comparingLong(SpillBuffer::segmentId));
+		long remaining = 0;
+		for (File file : files) {
+			Segment segment = new Segment(file);
+			segments.add(segment);
+			remaining += segment.pending;
+			nextSegmentId = segmentId(file) + 1;
+		}
+		pending = remaining;
+		if (remaining > 0) {
+			logger.info("{} spilled records to replay from {}", remaining, directory);
+		}
+	}
+
+	/**
+	 * Append a record at the end of the log.
+	 *
+	 * @return false if the record was refused, because it is larger than a
+	 *         segment or because the log already has its maximum number of
+	 *         segments
+	 */
+	public boolean append(String topic, String key, byte[] value) {
+		return append(topic, key, value, null);
+	}
+
+	/**
+	 * Append a record at the end of the log, telling the acknowledgement once it
+	 * is replayed or expired.
+	 *
+	 * @return false if the record was refused, in which case the acknowledgement
+	 *         is not called
+	 */
+	public synchronized boolean append(String topic, String key, byte[] value, Acknowledgement acknowledgement) {
+		byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+		byte[] keyBytes = key == null ? null : key.getBytes(StandardCharsets.UTF_8);
+		int length = 2 + topicBytes.length + 4 + length(keyBytes) + 4 + length(value);
+		if (HEADER_SIZE + 4 + length > segmentBytes) {
+			refused++;
+			return false;
+		}
+		Segment segment = segments.peekLast();
+		if (segment == null || segment.writePosition + 4 + length > segment.buffer.capacity()) {
+			if (segments.size() >= maxSegments) {
+				refused++;
+				return false;
+			}
+			try {
+				segment = new Segment(new File(directory, String.format("spill-%020d.log", nextSegmentId)),
+						segmentBytes);
+			} catch (IOException e) {
+				logger.error("failed to create a spill segment in {}", directory, e);
+				refused++;
+				return false;
+			}
+			nextSegmentId++;
+			segments.add(segment);
+		}
+		segment.write(topicBytes, keyBytes, value, length);
+		if (acknowledgement != null) {
+			waiters.add(new Waiter(head + pending, acknowledgement));
+		}
+		pending++;
+		appended++;
+		return true;
+	}
+
+	/**
+	 * Append the record only if the log still has records to drain, so that it
+	 * is replayed after them rather than sent ahead of them.
+	 *
+	 * @return false if the record was not appended
+	 */
+	public boolean appendIfPending(String topic, String key, byte[] value, Acknowledgement acknowledgement) {
+		if (pending == 0) {
+			return false;
+		}
+		synchronized (this) {
+			return pending > 0 && append(topic, key, value, acknowledgement);
+		}
+	}
+
+	/**
+	 * The oldest records not drained yet, at most max of them. The records stay
+	 * in the log until they are committed.
+	 */
+	public synchronized List<SpilledRecord> peek(int max) {
+		List<SpilledRecord> records = new ArrayList<>((int) Math.min(max, pending));
+		Iterator<Waiter> waiting = waiters.iterator();
+		Waiter waiter = waiting.hasNext() ? waiting.next() : null;
+		for (Segment segment : segments) {
+			int position = segment.readPosition;
+			while (records.size() < max && position < segment.writePosition) {
+				SpilledRecord record = segment.read(position);
+				if (waiter != null && waiter.number == head + records.size()) {
+					record.acknowledgement = waiter.acknowledgement;
+					waiter = waiting.hasNext() ? waiting.next() : null;
+				}
+				records.add(record);
+				position = record.end;
+			}
+			if (records.size() == max) {
+				break;
+			}
+		}
+		return records;
+	}
+
+	/**
+	 * Mark the given records, returned by {@link #peek(int)} in this order, as
+	 * drained, and delete the segments left without records to drain. Their
+	 * acknowledgements are left to the caller, which knows how they were
+	 * replayed.
+	 */
+	public synchronized void commit(List<SpilledRecord> records) {
+		long committed = 0;
+		for (SpilledRecord record : records) {
+			Segment segment = record.segment;
+			if (!segment.deleted && record.end > segment.readPosition) {
+				segment.drained(record.end);
+				committed++;
+			}
+		}
+		pending -= committed;
+		drained += committed;
+		head += committed;
+		while (!waiters.isEmpty() && waiters.peekFirst().number < head) {
+			waiters.pollFirst();
+		}
+		while (segments.size() > 1 && segments.peekFirst().pending == 0) {
+			segments.pollFirst().delete();
+		}
+	}
+
+	/**
+	 * Drop the segments whose last append is older than the retention, and tell
+	 * the acknowledgements of their records.
+	 *
+	 * @return the number of records dropped
+	 */
+	public int expire() {
+		List<Acknowledgement> dropped = new ArrayList<>();
+		int count;
+		synchronized (this) {
+			long now = System.currentTimeMillis();
+			count = 0;
+			Iterator<Segment> iterator = segments.iterator();
+			// Segments are appended to in order, so the expired ones are the oldest.
+			while (iterator.hasNext()) {
+				Segment segment = iterator.next();
+				if (segment.pending > 0 && now - segment.lastAppend() > retentionMs) {
+					count += segment.pending;
+					iterator.remove();
+					segment.delete();
+				}
+			}
+			if (count == 0) {
+				return 0;
+			}
+			pending -= count;
+			expired += count;
+			head += count;
+			while (!waiters.isEmpty() && waiters.peekFirst().number < head) {
+				dropped.add(waiters.pollFirst().acknowledgement);
+			}
+		}
+		logger.warn("dropped {} spilled records not replayed within {} ms", count, retentionMs);
+		// Outside the lock: the acknowledgements may run callbacks of the callers.
+		for (Acknowledgement acknowledgement : dropped) {
+			acknowledgement.expired();
+		}
+		return count;
+	}
+
+	public boolean isEmpty() {
+		return pending == 0;
+	}
+
+	/**
+	 * Write the appended records to the disk.
+	 */
+	public synchronized void flush() {
+		for (Segment segment : segments) {
+			segment.buffer.force();
+		}
+	}
+
+	@Override
+	public synchronized void close() {
+		flush();
+		segments.clear();
+	}
+
+	@ManagedAttribute(description = "Records waiting to be replayed")
+	public long getPending() {
+		return pending;
+	}
+
+	@ManagedAttribute(description = "Records appended")
+	public synchronized long getAppended() {
+		return appended;
+	}
+
+	@ManagedAttribute(description = "Records replayed to the broker")
+	public synchronized long getDrained() {
+		return drained;
+	}
+
+	@ManagedAttribute(description = "Records dropped by the retention before being replayed")
+	public synchronized long getExpired() {
+		return expired;
+	}
+
+	@ManagedAttribute(description = "Records refused because the buffer was full")
+	public synchronized long getRefused() {
+		return refused;
+	}
+
+	@ManagedAttribute(description = "Segment files on disk")
+	public synchronized int getSegmentCount() {
+		return segments.size();
+	}
+
+	private static long segmentId(File file) {
+		Matcher matcher = SEGMENT_NAME.matcher(file.getName());
+		return matcher.matches() ? Long.parseLong(matcher.group(1)) : -1;
+	}
+
+	private static int length(byte[] bytes) {
+		return bytes == null ? 0 : bytes.length;
+	}
+
+	/**
+	 * Outcome of an appended record, for the caller waiting on it.
+	 */
+	public interface Acknowledgement {
+
+		/**
+		 * The record was replayed and acknowledged by the broker.
+		 */
+		void replayed(RecordMetadata metadata);
+
+		/**
+		 * The record was dropped by the retention before being replayed.
+		 */
+		void expired();
+
+	}
+
+	private static final class Waiter {
+
+		private final long number;
+
+		private final Acknowledgement acknowledgement;
+
+		Waiter(long number, Acknowledgement acknowledgement) {
+			this.number = number;
+			this.acknowledgement = acknowledgement;
+		}
+
+	}
+
+	/**
+	 * A record read from the log.
+	 */
+	public static final class SpilledRecord {
+
+		private final Segment segment;
+
+		private final String topic;
+
+		private final String key;
+
+		private final byte[] value;
+
+		private final int end;
+
+		private Acknowledgement acknowledgement;
+
+		SpilledRecord(Segment segment, String topic, String key, byte[] value, int end) {
+			this.segment = segment;
+			this.topic = topic;
+			this.key = key;
+			this.value = value;
+			this.end = end;
+		}
+
+		public String getTopic() {
+			return topic;
+		}
+
+		public String getKey() {
+			return key;
+		}
+
+		public byte[] getValue() {
+			return value;
+		}
+
+		/**
+		 * The acknowledgement the record was appended with, null if none.
+		 */
+		public Acknowledgement getAcknowledgement() {
+			return acknowledgement;
+		}
+
+	}
+
+	/**
+	 * A segment file, mapped whole. Only accessed under the lock of the buffer.
+	 */
+	private static final class Segment {
+
+		private final File file;
+
+		private final MappedByteBuffer buffer;
+
+		private int readPosition;
+
+		private int writePosition;
+
+		// Records between the read and the write positions.
+		private int pending;
+
+		private boolean deleted;
+
+		/**
+		 * Create an empty segment of the given size.
+		 */
+		Segment(File file, int size) throws IOException {
+			this.file = file;
+			try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+					FileChannel channel = randomAccessFile.getChannel()) {
+				randomAccessFile.setLength(size);
+				this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			}
+			this.readPosition = HEADER_SIZE;
+			this.writePosition = HEADER_SIZE;
+			buffer.putInt(READ_POSITION_OFFSET, HEADER_SIZE);
+		}
+
+		/**
+		 * Open an existing segment, finding its end by walking its frames.
+		 */
+		Segment(File file) throws IOException {
+			this.file = file;
+			try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+					FileChannel channel = randomAccessFile.getChannel()) {
+				this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+			}
+			this.readPosition = Math.max(buffer.getInt(READ_POSITION_OFFSET), HEADER_SIZE);
+			int position = HEADER_SIZE;
+			while (position + 4 <= buffer.capacity()) {
+				int length = buffer.getInt(position);
+				if (length <= 0 || position + 4 + length > buffer.capacity()) {
+					break;
+				}
+				if (position >= readPosition) {
+					pending++;
+				}
+				position += 4 + length;
+			}
+			this.writePosition = position;
+		}
+
+		void write(byte[] topic, byte[] key, byte[] value, int length) {
+			buffer.position(writePosition + 4);
+			buffer.putShort((short) topic.length).put(topic);
+			putBytes(key);
+			putBytes(value);
+			buffer.putInt(writePosition, length);
+			buffer.putLong(LAST_APPEND_OFFSET, System.currentTimeMillis());
+			writePosition += 4 + length;
+			pending++;
+		}
+
+		SpilledRecord read(int position) {
+			buffer.position(position);
+			int length = buffer.getInt();
+			byte[] topic = new byte[buffer.getShort()];
+			buffer.get(topic);
+			byte[] key = getBytes();
+			byte[] value = getBytes();
+			return new SpilledRecord(this, new String(topic, StandardCharsets.UTF_8),
+					key == null ? null : new String(key, StandardCharsets.UTF_8), value, position + 4 + length);
+		}
+
+		void drained(int end) {
+			readPosition = end;
+			buffer.putInt(READ_POSITION_OFFSET, end);
+			pending--;
+		}
+
+		long lastAppend() {
+			return buffer.getLong(LAST_APPEND_OFFSET);
+		}
+
+		/**
+		 * The mapping itself is released when the buffer is garbage collected.
+		 */
+		void delete() {
+			deleted = true;
+			if (!file.delete()) {
+				logger.warn("failed to delete the spill segment {}", file);
+			}
+		}
+
+		private void putBytes(byte[] bytes) {
+			if (bytes == null) {
+				buffer.putInt(NULL_LENGTH);
+			} else {
+				buffer.putInt(bytes.length).put(bytes);
+			}
+		}
+
+		private byte[] getBytes() {
+			int length = buffer.getInt();
+			if (length == NULL_LENGTH) {
+				return null;
+			}
+			byte[] bytes = new byte[length];
+			buffer.get(bytes);
+			return bytes;
+		}
+
+	}
+
+}
@@ -0,0 +1,156 @@
+package com.poc.kafka.producer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.kafka.common.serialization.Deserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.util.concurrent.ListenableFuture;
+
+import com.poc.kafka.model.PersonModel;
+
+/**
+ * Background thread replaying the records of the {@link SpillBuffer} to the
+ * broker, oldest first.
+ *
+ * The records are sent by batches and a batch is committed in the buffer once
+ * every record of it is acknowledged. A failed batch is sent again after a
+ * backoff, from its first record: replay is at least once, the records of a
+ * batch acknowledged before the failure are sent twice. The acknowledgements
+ * of the records are told once their batch is committed.
+ *
+ * @author kali
+ *
+ */
+public class SpillDrainer implements Runnable {
+
+	private static final Logger logger = LoggerFactory.getLogger(SpillDrainer.class);
+
+	private static final long IDLE_MS = 100;
+
+	private static final long MAX_BACKOFF_MS = 30000;
+
+	private final SpillBuffer spillBuffer;
+
+	private final KafkaTemplate<String, PersonModel> kafkaTemplate;
+
+	private final Deserializer<PersonModel> deserializer;
+
+	private final int batchSize;
+
+	private final long ackTimeoutMs;
+
+	private final long backoffMs;
+
+	private volatile boolean running;
+
+	private Thread thread;
+
+	/**
+	 * @param deserializer reads the values appended by the Sender
+	 */
+	public SpillDrainer(SpillBuffer spillBuffer, KafkaTemplate<String, PersonModel> kafkaTemplate,
+			Deserializer<PersonModel> deserializer, int batchSize, long ackTimeoutMs, long backoffMs) {
+		this.spillBuffer = spillBuffer;
+		this.kafkaTemplate = kafkaTemplate;
+		this.deserializer = deserializer;
+		this.batchSize = batchSize;
+		this.ackTimeoutMs = ackTimeoutMs;
+		this.backoffMs = backoffMs;
+	}
+
+	public synchronized void start() {
+		if (thread == null) {
+			running = true;
+			thread = new Thread(this, "spill-drainer");
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	public synchronized void stop() throws InterruptedException {
+		if (thread != null) {
+			running = false;
+			thread.interrupt();
+			thread.join(TimeUnit.SECONDS.toMillis(10));
+			thread = null;
+		}
+	}
+
+	@Override
+	public void run() {
+		long backoff = backoffMs;
+		while (running) {
+			try {
+				spillBuffer.expire();
+				List<SpillBuffer.SpilledRecord> records = spillBuffer.peek(batchSize);
+				if (records.isEmpty()) {
+					Thread.sleep(IDLE_MS);
+				} else {
+					List<SendResult<String, PersonModel>> results = replay(records);
+					if (results != null) {
+						spillBuffer.commit(records);
+						acknowledge(records, results);
+						backoff = backoffMs;
+					} else {
+						Thread.sleep(backoff);
+						backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (RuntimeException e) {
+				logger.error("failed to replay spilled records", e);
+			}
+		}
+	}
+
+	/**
+	 * Send the records and wait for their acknowledgements.
+	 *
+	 * @return the send results, in the order of the records, or null if a record
+	 *         could not be sent
+	 */
+	private List<SendResult<String, PersonModel>> replay(List<SpillBuffer.SpilledRecord> records)
+			throws InterruptedException {
+		List<ListenableFuture<SendResult<String, PersonModel>>> futures = new ArrayList<>(records.size());
+		for (SpillBuffer.SpilledRecord record : records) {
+			futures.add(kafkaTemplate.send(record.getTopic(), record.getKey(),
+					deserializer.deserialize(record.getTopic(), record.getValue())));
+		}
+		kafkaTemplate.flush();
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ackTimeoutMs);
+		List<SendResult<String, PersonModel>> results = new ArrayList<>(futures.size());
+		for (ListenableFuture<SendResult<String, PersonModel>> future : futures) {
+			try {
+				results.add(future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+			} catch (ExecutionException | TimeoutException e) {
+				logger.warn("failed to replay {} spilled records, {} still pending: {}", records.size(),
+						spillBuffer.getPending(), e.getCause() == null ? e : e.getCause().getMessage());
+				return null;
+			}
+		}
+		return results;
+	}
+
+	private void acknowledge(List<SpillBuffer.SpilledRecord> records, List<SendResult<String, PersonModel>> results) {
+		for (int i = 0; i < records.size(); i++) {
+			SpillBuffer.Acknowledgement acknowledgement = records.get(i).getAcknowledgement();
+			if (acknowledgement != null) {
+				try {
+					acknowledgement.replayed(results.get(i).getRecordMetadata());
+				} catch (RuntimeException e) {
+					logger.error("failed to acknowledge a replayed record", e);
+				}
+			}
+		}
+	}
+
+}
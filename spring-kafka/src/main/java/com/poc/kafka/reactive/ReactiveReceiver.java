@@ -0,0 +1,78 @@
+package com.poc.kafka.reactive;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.KafkaMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListener;
+import org.springframework.kafka.listener.config.ContainerProperties;
+
+import com.poc.kafka.model.PersonModel;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+/**
+ * Inbound side of the reactive facade: the records of a topic as a Flux whose
+ * consumption follows the downstream demand.
+ *
+ * Each subscription runs its own listener container. When the records handed
+ * to the subscriber reach what it requested, the container pauses its
+ * partitions, the consumer keeps polling (and its group membership) without
+ * fetching anything, and it resumes as soon as the subscriber requests more.
+ * Only the rest of the current poll, at most max.poll.records, is buffered
+ * meanwhile, so a slow subscriber no longer fills the heap.
+ *
+ * The offsets are committed by the container once the records are handed to
+ * the subscriber, not once the subscriber is done with them.
+ *
+ * @author kali
+ *
+ */
+public class ReactiveReceiver {
+
+	private final ConsumerFactory<String, PersonModel> consumerFactory;
+
+	public ReactiveReceiver(ConsumerFactory<String, PersonModel> consumerFactory) {
+		this.consumerFactory = consumerFactory;
+	}
+
+	public Flux<PersonModel> receive(String groupId, String... topics) {
+		return receiveRecords(groupId, topics).map(ConsumerRecord::value);
+	}
+
+	public Flux<ConsumerRecord<String, PersonModel>> receiveRecords(String groupId, String... topics) {
+		return Flux.create(sink -> {
+			ContainerProperties containerProperties = new ContainerProperties(topics);
+			containerProperties.setGroupId(groupId);
+			KafkaMessageListenerContainer<String, PersonModel> container = new KafkaMessageListenerContainer<>(
+					consumerFactory, containerProperties);
+			AtomicLong demand = new AtomicLong();
+			container.setupMessageListener(new MessageListener<String, PersonModel>() {
+
+				@Override
+				public void onMessage(ConsumerRecord<String, PersonModel> record) {
+					sink.next(record);
+					if (demand.get() != Long.MAX_VALUE && demand.decrementAndGet() <= 0) {
+						container.pause();
+						// The subscriber may have requested more in the meantime.
+						if (demand.get() > 0) {
+							container.resume();
+						}
+					}
+				}
+
+			});
+			sink.onRequest(requested -> {
+				demand.accumulateAndGet(requested, (current, n) -> current + n < 0 ? Long.MAX_VALUE : current + n);
+				if (container.isPauseRequested()) {
+					container.resume();
+				}
+			});
+			sink.onDispose(container::stop);
+			container.start();
+		}, FluxSink.OverflowStrategy.BUFFER);
+	}
+
+}
@@ -0,0 +1,55 @@
+package com.poc.kafka.reactive;
+
+import org.reactivestreams.Publisher;
+import org.springframework.kafka.support.SendResult;
+
+import com.poc.kafka.model.PersonModel;
+import com.poc.kafka.producer.Sender;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Outbound side of the reactive facade: sends the messages of a Publisher
+ * through the Sender and emits their send results, in order.
+ *
+ * At most maxInFlight messages are waiting for their broker acknowledgement:
+ * the upstream is only asked for a new message when one of them is
+ * acknowledged, so a slow broker slows the producing stream down instead of
+ * growing the producer buffer.
+ *
+ * The acknowledgements complete on the producer I/O thread, which must never
+ * block on the next send: the in-flight window of the Sender may be full of
+ * other sends, and only that thread releases it. The messages are therefore
+ * sent from a dedicated thread, which is the one waiting for the window.
+ *
+ * @author kali
+ *
+ */
+public class ReactiveSender {
+
+	private final Sender sender;
+
+	private final int maxInFlight;
+
+	private final Scheduler scheduler = Schedulers.newSingle("reactive-sender", true);
+
+	public ReactiveSender(Sender sender, int maxInFlight) {
+		this.sender = sender;
+		this.maxInFlight = maxInFlight;
+	}
+
+	public Flux<SendResult<String, PersonModel>> send(String topic, Publisher<PersonModel> messages) {
+		return Flux.from(messages).publishOn(scheduler, maxInFlight).flatMapSequential(
+				message -> Mono.fromCallable(() -> sender.sendAsync(topic, message).completable())
+						.flatMap(Mono::fromFuture),
+				maxInFlight);
+	}
+
+	public void close() {
+		scheduler.dispose();
+	}
+
+}
@@ -0,0 +1,83 @@
+package com.poc.kafka.retry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+
+/**
+ * Holds back the records of the retry topics until they are due, without
+ * blocking the consumer thread.
+ *
+ * The records of a tier are due in offset order, since they all wait the same
+ * delay. When a record is not due yet, its partition is rewound to it and
+ * paused until its due date; the other partitions keep being consumed. Every
+ * method must be called from the consumer thread.
+ *
+ * @author kali
+ *
+ */
+public class RetryDelayGate {
+
+	private final Map<TopicPartition, Long> pausedUntil = new HashMap<>();
+
+	/**
+	 * The records of the poll that are due, in order. The partitions of the other
+	 * records are rewound and paused.
+	 */
+	public <K, V> List<ConsumerRecord<K, V>> due(List<ConsumerRecord<K, V>> records, Consumer<?, ?> consumer) {
+		long now = System.currentTimeMillis();
+		List<ConsumerRecord<K, V>> due = new ArrayList<>(records.size());
+		Set<TopicPartition> held = new HashSet<>();
+		for (ConsumerRecord<K, V> record : records) {
+			TopicPartition topicPartition = new TopicPartition(record.topic(), record.partition());
+			if (held.contains(topicPartition)) {
+				continue;
+			}
+			long dueAt = RetryForwarder.due(record);
+			if (dueAt > now) {
+				held.add(topicPartition);
+				consumer.seek(topicPartition, record.offset());
+				pausedUntil.put(topicPartition, dueAt);
+			} else {
+				due.add(record);
+			}
+		}
+		if (!held.isEmpty()) {
+			consumer.pause(held);
+		}
+		return due;
+	}
+
+	/**
+	 * Resume the paused partitions whose first record is now due.
+	 */
+	public void resumeDue(Consumer<?, ?> consumer) {
+		if (pausedUntil.isEmpty()) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		Set<TopicPartition> assignment = consumer.assignment();
+		List<TopicPartition> resumed = new ArrayList<>();
+		for (Iterator<Map.Entry<TopicPartition, Long>> it = pausedUntil.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<TopicPartition, Long> entry = it.next();
+			if (!assignment.contains(entry.getKey())) {
+				it.remove();
+			} else if (entry.getValue() <= now) {
+				resumed.add(entry.getKey());
+				it.remove();
+			}
+		}
+		if (!resumed.isEmpty()) {
+			consumer.resume(resumed);
+		}
+	}
+
+}
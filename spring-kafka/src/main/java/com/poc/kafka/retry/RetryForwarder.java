@@ -0,0 +1,180 @@
+package com.poc.kafka.retry;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import com.poc.kafka.metrics.KafkaMetrics;
+import com.poc.kafka.model.PersonModel;
+import com.poc.kafka.serializer.FailSafeDeserializer;
+
+/**
+ * Forwards a record whose processing failed to the next retry tier of its
+ * original topic, or to the dead letter topic once every tier failed or when
+ * the record could not even be deserialized, so that the consumer of the
+ * failing topic moves on to the next record immediately.
+ *
+ * The value is serialized again with the codec of the destination topic; the
+ * raw bytes of an undeserializable record are forwarded as they are. The send
+ * is acknowledged before the call returns, so the failed record offset is only
+ * committed once the record is safely in its next topic. The listener thread
+ * waits for the acknowledgement up to the send timeout, which must therefore
+ * stay well under max.poll.interval.ms; past it the record fails like any
+ * other error of its container.
+ *
+ * @author kali
+ *
+ */
+public class RetryForwarder {
+
+	private static final Logger logger = LoggerFactory.getLogger(RetryForwarder.class);
+
+	private static final int MAX_EXCEPTION_LENGTH = 1000;
+
+	private final RetryTopics retryTopics;
+
+	private final KafkaTemplate<String, byte[]> template;
+
+	private final Serializer<PersonModel> serializer;
+
+	private final KafkaMetrics kafkaMetrics;
+
+	private final long sendTimeoutMs;
+
+	/**
+	 * @param sendTimeoutMs longest wait of the listener thread for the
+	 *                      acknowledgement of a forwarded record
+	 */
+	public RetryForwarder(RetryTopics retryTopics, KafkaTemplate<String, byte[]> template,
+			Serializer<PersonModel> serializer, KafkaMetrics kafkaMetrics, long sendTimeoutMs) {
+		if (sendTimeoutMs <= 0) {
+			throw new IllegalArgumentException("Invalid send timeout " + sendTimeoutMs + "ms");
+		}
+		this.retryTopics = retryTopics;
+		this.template = template;
+		this.serializer = serializer;
+		this.kafkaMetrics = kafkaMetrics;
+		this.sendTimeoutMs = sendTimeoutMs;
+	}
+
+	public void forward(ConsumerRecord<?, ?> record, Exception exception) {
+		forward(record, exception, true);
+	}
+
+	/**
+	 * Forward the record straight to the dead letter topic of its original
+	 * topic, skipping the retry tiers, for the stages whose failed records the
+	 * retry listener cannot process again.
+	 */
+	public void deadLetter(ConsumerRecord<?, ?> record, Exception exception) {
+		forward(record, exception, false);
+	}
+
+	/**
+	 * Forward the record to the dead letter topic like
+	 * {@link #deadLetter(ConsumerRecord, Exception)}, its value serialized with
+	 * the given serializer rather than as a PersonModel.
+	 */
+	public <T> void deadLetter(ConsumerRecord<?, T> record, Exception exception, Serializer<? super T> valueSerializer) {
+		forward(record, exception, false, valueSerializer);
+	}
+
+	private void forward(ConsumerRecord<?, ?> record, Exception exception, boolean retry) {
+		forward(record, exception, retry, serializer);
+	}
+
+	private void forward(ConsumerRecord<?, ?> record, Exception exception, boolean retry,
+			Serializer<?> valueSerializer) {
+		kafkaMetrics.recordReceiveError(record.topic());
+		Header originalTopicHeader = record.headers().lastHeader(RetryHeaders.ORIGINAL_TOPIC);
+		String originalTopic = originalTopicHeader == null ? record.topic()
+				: new String(originalTopicHeader.value(), StandardCharsets.UTF_8);
+		Header attemptsHeader = record.headers().lastHeader(RetryHeaders.ATTEMPTS);
+		int attempts = attemptsHeader == null ? 0 : ByteBuffer.wrap(attemptsHeader.value()).getInt();
+
+		boolean poison = FailSafeDeserializer.isFailed(record);
+		String destination;
+		long due = 0;
+		if (retry && !poison && attempts < retryTopics.getTiers()) {
+			destination = retryTopics.retryTopic(originalTopic, attempts);
+			due = System.currentTimeMillis() + retryTopics.getDelay(attempts);
+		} else {
+			destination = retryTopics.deadLetterTopic(originalTopic);
+		}
+		byte[] value = poison ? FailSafeDeserializer.failedValue(record)
+				: serialize(valueSerializer, destination, record.value());
+
+		ProducerRecord<String, byte[]> forwarded = new ProducerRecord<>(destination, null,
+				record.key() == null ? null : record.key().toString(), value);
+		Headers headers = forwarded.headers();
+		for (Header header : record.headers()) {
+			if (!header.key().equals(RetryHeaders.ATTEMPTS) && !header.key().equals(RetryHeaders.DUE)
+					&& !header.key().equals(RetryHeaders.EXCEPTION)
+					&& !header.key().equals(FailSafeDeserializer.VALUE_HEADER)) {
+				headers.add(header);
+			}
+		}
+		if (originalTopicHeader == null) {
+			headers.add(RetryHeaders.ORIGINAL_TOPIC, record.topic().getBytes(StandardCharsets.UTF_8));
+			headers.add(RetryHeaders.ORIGINAL_PARTITION, ByteBuffer.allocate(4).putInt(record.partition()).array());
+			headers.add(RetryHeaders.ORIGINAL_OFFSET, ByteBuffer.allocate(8).putLong(record.offset()).array());
+		}
+		headers.add(RetryHeaders.ATTEMPTS, ByteBuffer.allocate(4).putInt(attempts + 1).array());
+		if (due > 0) {
+			headers.add(RetryHeaders.DUE, ByteBuffer.allocate(8).putLong(due).array());
+		}
+		String exceptionText = exceptionText(exception);
+		headers.add(RetryHeaders.EXCEPTION, exceptionText.getBytes(StandardCharsets.UTF_8));
+
+		logger.warn("forwarding record topic='{}' partition={} offset={} to topic='{}' after {}", record.topic(),
+				record.partition(), record.offset(), destination, exceptionText);
+		try {
+			template.send(forwarded).get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new KafkaException("Interrupted while forwarding to " + destination, e);
+		} catch (ExecutionException | TimeoutException e) {
+			throw new KafkaException("Failed to forward a record to " + destination, e);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static byte[] serialize(Serializer<?> serializer, String topic, Object value) {
+		return ((Serializer<Object>) serializer).serialize(topic, value);
+	}
+
+	/**
+	 * Epoch millis before which a record of a retry topic must not be processed,
+	 * 0 when it has no due date.
+	 */
+	public static long due(ConsumerRecord<?, ?> record) {
+		Header header = record.headers().lastHeader(RetryHeaders.DUE);
+		return header == null ? 0 : ByteBuffer.wrap(header.value()).getLong();
+	}
+
+	/**
+	 * The root cause, which is the meaningful part of the listener failures
+	 * wrapped by the container.
+	 */
+	private static String exceptionText(Exception exception) {
+		Throwable cause = exception;
+		while (cause.getCause() != null && cause.getCause() != cause) {
+			cause = cause.getCause();
+		}
+		String text = cause.toString();
+		return text.length() > MAX_EXCEPTION_LENGTH ? text.substring(0, MAX_EXCEPTION_LENGTH) : text;
+	}
+
+}
@@ -0,0 +1,40 @@
+package com.poc.kafka.retry;
+
+/**
+ * Headers set by the RetryForwarder on the records it forwards to the retry
+ * and dead letter topics.
+ *
+ * @author kali
+ *
+ */
+public final class RetryHeaders {
+
+	/**
+	 * Number of failed processing attempts, as a 4 bytes int.
+	 */
+	public static final String ATTEMPTS = "retry-attempts";
+
+	/**
+	 * Epoch millis before which the record must not be processed again, as an 8
+	 * bytes long.
+	 */
+	public static final String DUE = "retry-due";
+
+	/**
+	 * The topic, partition and offset of the record when it first failed.
+	 */
+	public static final String ORIGINAL_TOPIC = "retry-original-topic";
+
+	public static final String ORIGINAL_PARTITION = "retry-original-partition";
+
+	public static final String ORIGINAL_OFFSET = "retry-original-offset";
+
+	/**
+	 * The last failure, as UTF-8 text.
+	 */
+	public static final String EXCEPTION = "retry-exception";
+
+	private RetryHeaders() {
+	}
+
+}
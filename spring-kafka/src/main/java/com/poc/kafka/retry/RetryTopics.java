@@ -0,0 +1,79 @@
+package com.poc.kafka.retry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Names of the retry tiers and of the dead letter topic of each main topic.
+ *
+ * A record failing on a main topic goes to the first tier, e.g.
+ * jsonKafka-retry-1s, then to the next one each time it fails again (e.g.
+ * jsonKafka-retry-30s), and finally to the dead letter topic jsonKafka-dlt.
+ * The records of a tier are processed again once the delay of the tier
+ * elapsed.
+ *
+ * @author kali
+ *
+ */
+public class RetryTopics {
+
+	private static final String RETRY_SUFFIX = "-retry-";
+
+	private static final String DEAD_LETTER_SUFFIX = "-dlt";
+
+	private final List<String> mainTopics;
+
+	private final long[] delays;
+
+	/**
+	 * @param mainTopics the topics of the listeners
+	 * @param delays     the delay of each tier, in milliseconds
+	 */
+	public RetryTopics(List<String> mainTopics, long[] delays) {
+		this.mainTopics = new ArrayList<>(mainTopics);
+		this.delays = delays.clone();
+	}
+
+	public int getTiers() {
+		return delays.length;
+	}
+
+	public long getDelay(int tier) {
+		return delays[tier];
+	}
+
+	public String retryTopic(String mainTopic, int tier) {
+		long delay = delays[tier];
+		return mainTopic + RETRY_SUFFIX + (delay % 1000 == 0 ? delay / 1000 + "s" : delay + "ms");
+	}
+
+	public String deadLetterTopic(String mainTopic) {
+		return mainTopic + DEAD_LETTER_SUFFIX;
+	}
+
+	/**
+	 * The tiers of every main topic, i.e. the topics of the retry listener.
+	 */
+	public String[] getRetryTopicNames() {
+		List<String> topics = new ArrayList<>();
+		for (String mainTopic : mainTopics) {
+			for (int tier = 0; tier < delays.length; tier++) {
+				topics.add(retryTopic(mainTopic, tier));
+			}
+		}
+		return topics.toArray(new String[topics.size()]);
+	}
+
+	/**
+	 * The tiers and the dead letter topic of every main topic.
+	 */
+	public List<String> getAllTopicNames() {
+		List<String> topics = new ArrayList<>(Arrays.asList(getRetryTopicNames()));
+		for (String mainTopic : mainTopics) {
+			topics.add(deadLetterTopic(mainTopic));
+		}
+		return topics;
+	}
+
+}
@@ -0,0 +1,95 @@
+package com.poc.kafka.serializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.ExtendedDeserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Deserializer that never throws: when the delegate fails, the record is
+ * delivered with a null value, its raw value and the failure in headers, so
+ * that a poison record reaches the listener error handling (and the dead
+ * letter topic) instead of failing the poll of the whole partition over and
+ * over.
+ *
+ * @author kali
+ *
+ * @param <T> the type of the value
+ */
+public class FailSafeDeserializer<T> implements ExtendedDeserializer<T> {
+
+	private static final Logger logger = LoggerFactory.getLogger(FailSafeDeserializer.class);
+
+	/**
+	 * The failure of the delegate deserializer.
+	 */
+	public static final String EXCEPTION_HEADER = "deserialization-exception";
+
+	/**
+	 * The value bytes the delegate failed to deserialize.
+	 */
+	public static final String VALUE_HEADER = "deserialization-value";
+
+	private final Deserializer<T> delegate;
+
+	public FailSafeDeserializer(Deserializer<T> delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public void configure(Map<String, ?> configs, boolean isKey) {
+		delegate.configure(configs, isKey);
+	}
+
+	@Override
+	public T deserialize(String topic, byte[] data) {
+		try {
+			return delegate.deserialize(topic, data);
+		} catch (RuntimeException e) {
+			logger.error("failed to deserialize a record of topic='{}'", topic, e);
+			return null;
+		}
+	}
+
+	@Override
+	public T deserialize(String topic, Headers headers, byte[] data) {
+		try {
+			if (delegate instanceof ExtendedDeserializer) {
+				return ((ExtendedDeserializer<T>) delegate).deserialize(topic, headers, data);
+			}
+			return delegate.deserialize(topic, data);
+		} catch (RuntimeException e) {
+			logger.warn("failed to deserialize a record of topic='{}': {}", topic, e.toString());
+			headers.add(EXCEPTION_HEADER, e.toString().getBytes(StandardCharsets.UTF_8));
+			headers.add(VALUE_HEADER, data);
+			return null;
+		}
+	}
+
+	@Override
+	public void close() {
+		delegate.close();
+	}
+
+	/**
+	 * Whether the value of the record could not be deserialized.
+	 */
+	public static boolean isFailed(ConsumerRecord<?, ?> record) {
+		return record.headers().lastHeader(EXCEPTION_HEADER) != null;
+	}
+
+	/**
+	 * The raw value of a record that could not be deserialized, null otherwise.
+	 */
+	public static byte[] failedValue(ConsumerRecord<?, ?> record) {
+		Header header = record.headers().lastHeader(VALUE_HEADER);
+		return header == null ? null : header.value();
+	}
+
+}
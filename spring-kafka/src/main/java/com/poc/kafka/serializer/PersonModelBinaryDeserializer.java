@@ -0,0 +1,87 @@
+package com.poc.kafka.serializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Map;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import com.poc.kafka.model.PersonModel;
+
+/**
+ * Reads the binary layout written by {@link PersonModelBinarySerializer}
+ * directly from the record bytes, without intermediate buffers.
+ *
+ * @author kali
+ *
+ */
+public class PersonModelBinaryDeserializer implements Deserializer<PersonModel> {
+
+	@Override
+	public void configure(Map<String, ?> configs, boolean isKey) {
+		// nothing to configure
+	}
+
+	@Override
+	public PersonModel deserialize(String topic, byte[] data) {
+		if (data == null) {
+			return null;
+		}
+		return deserialize(topic, data, 0);
+	}
+
+	/**
+	 * Read a payload starting at the given offset of the record bytes, behind an
+	 * envelope header for instance.
+	 */
+	public PersonModel deserialize(String topic, byte[] data, int offset) {
+		try {
+			byte version = data[offset];
+			if (version != PersonModelBinarySerializer.VERSION) {
+				throw new SerializationException("Unsupported PersonModel binary version " + version);
+			}
+			int position = offset + 1;
+			int nameLength = readInt(data, position);
+			position += 4;
+			String name = readString(data, position, nameLength);
+			position += Math.max(nameLength, 0);
+			int lastnameLength = readInt(data, position);
+			position += 4;
+			String lastname = readString(data, position, lastnameLength);
+			position += Math.max(lastnameLength, 0);
+			long date = ((long) readInt(data, position) << 32) | (readInt(data, position + 4) & 0xFFFFFFFFL);
+
+			PersonModel person = new PersonModel();
+			person.setName(name);
+			person.setLastname(lastname);
+			person.setDate(date == PersonModelBinarySerializer.NULL_DATE ? null : new Date(date));
+			return person;
+		} catch (ArrayIndexOutOfBoundsException e) {
+			throw new SerializationException("Truncated PersonModel binary payload on topic " + topic, e);
+		}
+	}
+
+	@Override
+	public void close() {
+		// nothing to close
+	}
+
+	private static String readString(byte[] data, int position, int length) {
+		if (length == PersonModelBinarySerializer.NULL_LENGTH) {
+			return null;
+		}
+		// Compared without adding to the position, which a huge length overflows.
+		if (length < PersonModelBinarySerializer.NULL_LENGTH || length > data.length - position) {
+			throw new SerializationException("Invalid PersonModel binary string length " + length + " at "
+					+ position + " of a " + data.length + " bytes payload");
+		}
+		return new String(data, position, length, StandardCharsets.UTF_8);
+	}
+
+	private static int readInt(byte[] data, int position) {
+		return (data[position] & 0xFF) << 24 | (data[position + 1] & 0xFF) << 16 | (data[position + 2] & 0xFF) << 8
+				| (data[position + 3] & 0xFF);
+	}
+
+}
@@ -0,0 +1,139 @@
+package com.poc.kafka.serializer;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.apache.kafka.common.serialization.Serializer;
+
+import com.poc.kafka.model.PersonModel;
+
+/**
+ * Compact binary serializer for PersonModel, the counterpart of
+ * {@link PersonModelBinaryDeserializer}.
+ *
+ * Layout (big endian):
+ *
+ * <pre>
+ * version   1 byte  ({@link #VERSION})
+ * name      int32 length (-1 for null) + UTF-8 bytes
+ * lastname  int32 length (-1 for null) + UTF-8 bytes
+ * date      int64 epoch millis ({@link Long#MIN_VALUE} for null)
+ * </pre>
+ *
+ * The strings are encoded straight into a per-thread scratch buffer, so the
+ * only allocation per record is the returned array.
+ *
+ * @author kali
+ *
+ */
+public class PersonModelBinarySerializer implements Serializer<PersonModel> {
+
+	/**
+	 * Current version of the layout, written as the first byte of every payload.
+	 * Bump it when the layout changes and keep reading the previous versions in
+	 * the deserializer.
+	 */
+	public static final byte VERSION = 1;
+
+	static final int NULL_LENGTH = -1;
+
+	static final long NULL_DATE = Long.MIN_VALUE;
+
+	private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[256]);
+
+	@Override
+	public void configure(Map<String, ?> configs, boolean isKey) {
+		// nothing to configure
+	}
+
+	@Override
+	public byte[] serialize(String topic, PersonModel data) {
+		if (data == null) {
+			return null;
+		}
+		return serialize(data, 0);
+	}
+
+	/**
+	 * Serialize after the given number of leading bytes, left for the caller to
+	 * fill (an envelope header for instance), so that the payload needs no
+	 * further copy.
+	 */
+	public byte[] serialize(PersonModel data, int offset) {
+		String name = data.getName();
+		String lastname = data.getLastname();
+		// A char takes at most 3 bytes in UTF-8 (a surrogate pair takes 4 for 2 chars).
+		int maxSize = offset + 1 + 4 + 3 * length(name) + 4 + 3 * length(lastname) + 8;
+		byte[] buffer = SCRATCH.get();
+		if (buffer.length < maxSize) {
+			buffer = new byte[Math.max(maxSize, buffer.length * 2)];
+			SCRATCH.set(buffer);
+		}
+		int position = offset;
+		buffer[position++] = VERSION;
+		position = writeString(name, buffer, position);
+		position = writeString(lastname, buffer, position);
+		position = writeLong(data.getDate() == null ? NULL_DATE : data.getDate().getTime(), buffer, position);
+		return Arrays.copyOf(buffer, position);
+	}
+
+	@Override
+	public void close() {
+		// nothing to close
+	}
+
+	private static int length(String value) {
+		return value == null ? 0 : value.length();
+	}
+
+	private static int writeString(String value, byte[] buffer, int position) {
+		if (value == null) {
+			return writeInt(NULL_LENGTH, buffer, position);
+		}
+		int start = position + 4;
+		int end = writeUtf8(value, buffer, start);
+		writeInt(end - start, buffer, position);
+		return end;
+	}
+
+	private static int writeUtf8(String value, byte[] buffer, int position) {
+		int length = value.length();
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				buffer[position++] = (byte) c;
+			} else if (c < 0x800) {
+				buffer[position++] = (byte) (0xC0 | (c >> 6));
+				buffer[position++] = (byte) (0x80 | (c & 0x3F));
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, value.charAt(++i));
+				buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+				buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+				buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+				buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+			} else if (Character.isSurrogate(c)) {
+				// Unpaired surrogate: same replacement as String.getBytes(UTF_8).
+				buffer[position++] = (byte) '?';
+			} else {
+				buffer[position++] = (byte) (0xE0 | (c >> 12));
+				buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				buffer[position++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+		return position;
+	}
+
+	private static int writeInt(int value, byte[] buffer, int position) {
+		buffer[position] = (byte) (value >>> 24);
+		buffer[position + 1] = (byte) (value >>> 16);
+		buffer[position + 2] = (byte) (value >>> 8);
+		buffer[position + 3] = (byte) value;
+		return position + 4;
+	}
+
+	private static int writeLong(long value, byte[] buffer, int position) {
+		writeInt((int) (value >>> 32), buffer, position);
+		return writeInt((int) value, buffer, position + 4);
+	}
+
+}
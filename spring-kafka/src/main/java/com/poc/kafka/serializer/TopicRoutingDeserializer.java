@@ -0,0 +1,68 @@
+package com.poc.kafka.serializer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.ExtendedDeserializer;
+
+/**
+ * Deserializer choosing the delegate deserializer from the record topic, the
+ * consumer side counterpart of {@link TopicRoutingSerializer}.
+ *
+ * @author kali
+ *
+ * @param <T> the type of the value
+ */
+public class TopicRoutingDeserializer<T> implements ExtendedDeserializer<T> {
+
+	private final Deserializer<T> defaultDeserializer;
+
+	private final Map<String, Deserializer<T>> topicDeserializers = new HashMap<>();
+
+	public TopicRoutingDeserializer(Deserializer<T> defaultDeserializer) {
+		this.defaultDeserializer = defaultDeserializer;
+	}
+
+	public TopicRoutingDeserializer<T> route(String topic, Deserializer<T> deserializer) {
+		topicDeserializers.put(topic, deserializer);
+		return this;
+	}
+
+	@Override
+	public void configure(Map<String, ?> configs, boolean isKey) {
+		defaultDeserializer.configure(configs, isKey);
+		for (Deserializer<T> deserializer : topicDeserializers.values()) {
+			deserializer.configure(configs, isKey);
+		}
+	}
+
+	@Override
+	public T deserialize(String topic, byte[] data) {
+		return deserializer(topic).deserialize(topic, data);
+	}
+
+	@Override
+	public T deserialize(String topic, Headers headers, byte[] data) {
+		Deserializer<T> deserializer = deserializer(topic);
+		if (deserializer instanceof ExtendedDeserializer) {
+			return ((ExtendedDeserializer<T>) deserializer).deserialize(topic, headers, data);
+		}
+		return deserializer.deserialize(topic, data);
+	}
+
+	@Override
+	public void close() {
+		defaultDeserializer.close();
+		for (Deserializer<T> deserializer : topicDeserializers.values()) {
+			deserializer.close();
+		}
+	}
+
+	private Deserializer<T> deserializer(String topic) {
+		Deserializer<T> deserializer = topicDeserializers.get(topic);
+		return deserializer == null ? defaultDeserializer : deserializer;
+	}
+
+}
@@ -0,0 +1,68 @@
+package com.poc.kafka.serializer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.ExtendedSerializer;
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * Serializer choosing the delegate serializer from the record topic, so that
+ * the payload format can be selected per topic with one producer.
+ *
+ * @author kali
+ *
+ * @param <T> the type of the value
+ */
+public class TopicRoutingSerializer<T> implements ExtendedSerializer<T> {
+
+	private final Serializer<T> defaultSerializer;
+
+	private final Map<String, Serializer<T>> topicSerializers = new HashMap<>();
+
+	public TopicRoutingSerializer(Serializer<T> defaultSerializer) {
+		this.defaultSerializer = defaultSerializer;
+	}
+
+	public TopicRoutingSerializer<T> route(String topic, Serializer<T> serializer) {
+		topicSerializers.put(topic, serializer);
+		return this;
+	}
+
+	@Override
+	public void configure(Map<String, ?> configs, boolean isKey) {
+		defaultSerializer.configure(configs, isKey);
+		for (Serializer<T> serializer : topicSerializers.values()) {
+			serializer.configure(configs, isKey);
+		}
+	}
+
+	@Override
+	public byte[] serialize(String topic, T data) {
+		return serializer(topic).serialize(topic, data);
+	}
+
+	@Override
+	public byte[] serialize(String topic, Headers headers, T data) {
+		Serializer<T> serializer = serializer(topic);
+		if (serializer instanceof ExtendedSerializer) {
+			return ((ExtendedSerializer<T>) serializer).serialize(topic, headers, data);
+		}
+		return serializer.serialize(topic, data);
+	}
+
+	@Override
+	public void close() {
+		defaultSerializer.close();
+		for (Serializer<T> serializer : topicSerializers.values()) {
+			serializer.close();
+		}
+	}
+
+	private Serializer<T> serializer(String topic) {
+		Serializer<T> serializer = topicSerializers.get(topic);
+		return serializer == null ? defaultSerializer : serializer;
+	}
+
+}
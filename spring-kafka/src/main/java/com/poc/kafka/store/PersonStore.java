@@ -0,0 +1,271 @@
+package com.poc.kafka.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.kafka.core.ConsumerFactory;
+
+import com.poc.kafka.model.PersonModel;
+import com.poc.kafka.serializer.FailSafeDeserializer;
+import com.poc.kafka.serializer.PersonModelBinaryDeserializer;
+import com.poc.kafka.serializer.PersonModelBinarySerializer;
+
+/**
+ * Local view of the latest PersonModel of each key of a compacted topic, for
+ * lookups without a network hop.
+ *
+ * A dedicated thread reads every partition of the topic (no consumer group
+ * coordination, no committed offsets) into a sorted in-memory index: a record
+ * replaces the entry of its key and a tombstone (null value) removes it.
+ *
+ * With a snapshot file, the index and the offsets it covers are saved
+ * periodically and on close. A restart loads the snapshot and replays only the
+ * records appended since; without one, the whole topic is replayed. A topic
+ * that does not exist is an empty store.
+ *
+ * @author kali
+ *
+ */
+@ManagedResource(objectName = "com.poc.kafka:type=PersonStore", description = "Compacted topic backed PersonModel store")
+public class PersonStore implements Runnable {
+
+	private static final Logger logger = LoggerFactory.getLogger(PersonStore.class);
+
+	private static final String GROUP_ID = "person-store";
+
+	private static final long POLL_TIMEOUT_MS = 100;
+
+	private final ConsumerFactory<String, PersonModel> consumerFactory;
+
+	private final String topic;
+
+	private final File snapshotFile;
+
+	private final long snapshotIntervalMs;
+
+	private final NavigableMap<String, PersonModel> index = new ConcurrentSkipListMap<>();
+
+	// Next offset to apply per partition, only accessed by the store thread.
+	private final Map<Integer, Long> offsets = new HashMap<>();
+
+	private final CountDownLatch restored = new CountDownLatch(1);
+
+	private volatile boolean running;
+
+	private volatile Consumer<String, PersonModel> consumer;
+
+	private volatile long restoreMillis;
+
+	private volatile long replayedRecords;
+
+	private Thread thread;
+
+	/**
+	 * @param snapshotFile null to keep the store in memory only
+	 */
+	public PersonStore(ConsumerFactory<String, PersonModel> consumerFactory, String topic, File snapshotFile,
+			long snapshotIntervalMs) {
+		this.consumerFactory = consumerFactory;
+		this.topic = topic;
+		this.snapshotFile = snapshotFile;
+		this.snapshotIntervalMs = snapshotIntervalMs;
+	}
+
+	public synchronized void start() {
+		if (thread == null) {
+			running = true;
+			thread = new Thread(this, "person-store-" + topic);
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Stop following the topic, saving a last snapshot.
+	 */
+	public synchronized void close() throws InterruptedException {
+		if (thread != null) {
+			running = false;
+			Consumer<String, PersonModel> current = consumer;
+			if (current != null) {
+				current.wakeup();
+			}
+			thread.join(TimeUnit.SECONDS.toMillis(30));
+			thread = null;
+		}
+	}
+
+	/**
+	 * The latest value of the key, null if the key is unknown or deleted.
+	 */
+	public PersonModel get(String key) {
+		return index.get(key);
+	}
+
+	/**
+	 * The entries whose key is in the given range, in key order. The view
+	 * follows the updates of the store.
+	 */
+	public NavigableMap<String, PersonModel> range(String fromInclusive, String toExclusive) {
+		return Collections.unmodifiableNavigableMap(index.subMap(fromInclusive, true, toExclusive, false));
+	}
+
+	/**
+	 * Wait until the store caught up with the end of the topic as of its start.
+	 *
+	 * @return false if the timeout elapsed first
+	 */
+	public boolean awaitRestored(long timeout, TimeUnit unit) throws InterruptedException {
+		return restored.await(timeout, unit);
+	}
+
+	@ManagedAttribute(description = "Number of keys")
+	public int getSize() {
+		return index.size();
+	}
+
+	@ManagedAttribute(description = "Whether the store caught up with the topic")
+	public boolean isRestored() {
+		return restored.getCount() == 0;
+	}
+
+	@ManagedAttribute(description = "Time taken by the restore, snapshot load included")
+	public long getRestoreMillis() {
+		return restoreMillis;
+	}
+
+	@ManagedAttribute(description = "Records replayed from the topic by the restore")
+	public long getReplayedRecords() {
+		return replayedRecords;
+	}
+
+	@Override
+	public void run() {
+		long start = System.currentTimeMillis();
+		try (Consumer<String, PersonModel> kafkaConsumer = consumerFactory.createConsumer(GROUP_ID, "-store")) {
+			consumer = kafkaConsumer;
+			List<PartitionInfo> partitionInfos = kafkaConsumer.partitionsFor(topic);
+			if (partitionInfos == null) {
+				// No such topic: the store is restored empty, and has nothing to follow.
+				restoreMillis = System.currentTimeMillis() - start;
+				restored.countDown();
+				logger.warn("store topic='{}' does not exist, the store stays empty", topic);
+				return;
+			}
+			List<TopicPartition> partitions = new ArrayList<>();
+			for (PartitionInfo partition : partitionInfos) {
+				partitions.add(new TopicPartition(topic, partition.partition()));
+			}
+			kafkaConsumer.assign(partitions);
+			loadSnapshot();
+			for (TopicPartition partition : partitions) {
+				Long offset = offsets.get(partition.partition());
+				if (offset != null) {
+					kafkaConsumer.seek(partition, offset);
+				} else {
+					kafkaConsumer.seekToBeginning(Collections.singletonList(partition));
+				}
+			}
+			Map<TopicPartition, Long> endOffsets = kafkaConsumer.endOffsets(partitions);
+			long replayed = 0;
+			long lastSnapshot = System.currentTimeMillis();
+			while (running) {
+				ConsumerRecords<String, PersonModel> records = kafkaConsumer.poll(POLL_TIMEOUT_MS);
+				for (ConsumerRecord<String, PersonModel> record : records) {
+					apply(record);
+				}
+				if (!isRestored()) {
+					replayed += records.count();
+					if (caughtUp(kafkaConsumer, endOffsets)) {
+						restoreMillis = System.currentTimeMillis() - start;
+						replayedRecords = replayed;
+						restored.countDown();
+						logger.info("store of topic='{}' restored with {} keys in {} ms, {} records replayed", topic,
+								index.size(), restoreMillis, replayed);
+					}
+				}
+				if (snapshotFile != null && isRestored()
+						&& System.currentTimeMillis() - lastSnapshot >= snapshotIntervalMs) {
+					saveSnapshot();
+					lastSnapshot = System.currentTimeMillis();
+				}
+			}
+		} catch (WakeupException e) {
+			// closing
+		} catch (RuntimeException e) {
+			logger.error("store of topic='{}' stopped", topic, e);
+		} finally {
+			consumer = null;
+		}
+		if (snapshotFile != null && isRestored()) {
+			saveSnapshot();
+		}
+	}
+
+	private void apply(ConsumerRecord<String, PersonModel> record) {
+		offsets.put(record.partition(), record.offset() + 1);
+		if (record.key() == null) {
+			return;
+		}
+		if (FailSafeDeserializer.isFailed(record)) {
+			logger.warn("skipping undeserializable record topic='{}' partition={} offset={}", record.topic(),
+					record.partition(), record.offset());
+		} else if (record.value() == null) {
+			index.remove(record.key());
+		} else {
+			index.put(record.key(), record.value());
+		}
+	}
+
+	private static boolean caughtUp(Consumer<?, ?> consumer, Map<TopicPartition, Long> endOffsets) {
+		for (Map.Entry<TopicPartition, Long> endOffset : endOffsets.entrySet()) {
+			if (consumer.position(endOffset.getKey()) < endOffset.getValue()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void loadSnapshot() {
+		if (snapshotFile == null) {
+			return;
+		}
+		try {
+			if (StoreSnapshot.read(snapshotFile, topic, offsets, index, new PersonModelBinaryDeserializer())) {
+				logger.info("loaded {} keys of topic='{}' from {}", index.size(), topic, snapshotFile);
+			}
+		} catch (IOException | RuntimeException e) {
+			logger.warn("ignoring unreadable snapshot {}, replaying the whole topic", snapshotFile, e);
+			offsets.clear();
+			index.clear();
+		}
+	}
+
+	private void saveSnapshot() {
+		try {
+			StoreSnapshot.write(snapshotFile, topic, offsets, index, new PersonModelBinarySerializer());
+		} catch (IOException e) {
+			logger.error("failed to write the snapshot {}", snapshotFile, e);
+		}
+	}
+
+}
@@ -0,0 +1,124 @@
+package com.poc.kafka.store;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serializer;
+
+import com.poc.kafka.model.PersonModel;
+
+/**
+ * On-disk image of a {@link PersonStore}: the entries of the index and, per
+ * partition of the topic, the offset of the next record to apply on top of
+ * them.
+ *
+ * Layout (big endian):
+ *
+ * <pre>
+ * magic       int32 ({@link #MAGIC})
+ * topic       int16 length + UTF-8 bytes
+ * partitions  int32 count, then per partition: int32 partition, int64 next offset
+ * entries     int32 count, then per entry: int32 length + UTF-8 key,
+ *             int32 length + value in the binary PersonModel codec
+ * </pre>
+ *
+ * A snapshot is written to a temporary file, synced, then renamed over the
+ * previous one, so a crash never leaves a partial snapshot behind. It is read
+ * back through a memory mapping of the whole file.
+ *
+ * @author kali
+ *
+ */
+final class StoreSnapshot {
+
+	static final int MAGIC = 0x50534e31;
+
+	private StoreSnapshot() {
+	}
+
+	static void write(File file, String topic, Map<Integer, Long> offsets, Map<String, PersonModel> entries,
+			Serializer<PersonModel> serializer) throws IOException {
+		File directory = file.getAbsoluteFile().getParentFile();
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create the snapshot directory " + directory);
+		}
+		File temporary = new File(file.getPath() + ".tmp");
+		try (FileOutputStream fileStream = new FileOutputStream(temporary);
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileStream, 65536))) {
+			out.writeInt(MAGIC);
+			byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+			out.writeShort(topicBytes.length);
+			out.write(topicBytes);
+			out.writeInt(offsets.size());
+			for (Map.Entry<Integer, Long> offset : offsets.entrySet()) {
+				out.writeInt(offset.getKey());
+				out.writeLong(offset.getValue());
+			}
+			out.writeInt(entries.size());
+			for (Map.Entry<String, PersonModel> entry : entries.entrySet()) {
+				byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+				byte[] value = serializer.serialize(topic, entry.getValue());
+				out.writeInt(key.length);
+				out.write(key);
+				out.writeInt(value.length);
+				out.write(value);
+			}
+			out.flush();
+			fileStream.getFD().sync();
+		}
+		Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Load the snapshot of the given topic into the index and the offsets.
+	 *
+	 * @return false if the file is missing or holds the snapshot of another
+	 *         topic, in which case nothing is loaded
+	 */
+	static boolean read(File file, String topic, Map<Integer, Long> offsets, Map<String, PersonModel> entries,
+			Deserializer<PersonModel> deserializer) throws IOException {
+		if (!file.isFile()) {
+			return false;
+		}
+		MappedByteBuffer buffer;
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+				FileChannel channel = randomAccessFile.getChannel()) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		if (buffer.getInt() != MAGIC) {
+			throw new IOException("Not a store snapshot: " + file);
+		}
+		if (!topic.equals(new String(bytes(buffer, buffer.getShort()), StandardCharsets.UTF_8))) {
+			return false;
+		}
+		int partitions = buffer.getInt();
+		for (int i = 0; i < partitions; i++) {
+			offsets.put(buffer.getInt(), buffer.getLong());
+		}
+		int count = buffer.getInt();
+		for (int i = 0; i < count; i++) {
+			String key = new String(bytes(buffer, buffer.getInt()), StandardCharsets.UTF_8);
+			entries.put(key, deserializer.deserialize(topic, bytes(buffer, buffer.getInt())));
+		}
+		return true;
+	}
+
+	private static byte[] bytes(MappedByteBuffer buffer, int length) {
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return bytes;
+	}
+
+}
@@ -0,0 +1,130 @@
+package com.poc.kafka.tracing;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.record.TimestampType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.poc.kafka.consumer.ParallelRecordProcessor;
+import com.poc.kafka.metrics.KafkaMetrics;
+
+/**
+ * Follows a sample of the records from the send call to the end of their
+ * processing, to tell whether a latency spike comes from the way to the
+ * handler or from the handler itself.
+ *
+ * On the producer side, a sampled record is stamped with a trace id and the
+ * time of the send call (see {@link TraceHeaders}); the others carry no header
+ * and cost a random draw. On the consumer side, the latency of a stamped record
+ * is recorded in the KafkaMetrics of its topic, split into:
+ * <ul>
+ * <li>queue time, from the send call to the start of the handler: producer
+ * batching, broker, consumer lag and local hand-off;</li>
+ * <li>processing time, spent in the handler;</li>
+ * <li>append time, from the send call to the append to the log, only for the
+ * topics with message.timestamp.type=LogAppendTime, whose record timestamp is
+ * set by the broker.</li>
+ * </ul>
+ * A traced record taking longer than the slow threshold end to end is logged
+ * with its trace id and this breakdown.
+ *
+ * The producer and consumer clocks are compared, so the queue time is only as
+ * accurate as their synchronization.
+ *
+ * @author kali
+ *
+ */
+public class RecordTracer {
+
+	private static final Logger logger = LoggerFactory.getLogger(RecordTracer.class);
+
+	private final KafkaMetrics kafkaMetrics;
+
+	private final double sampleRate;
+
+	private final long slowThresholdMs;
+
+	/**
+	 * @param sampleRate      share of the records stamped, from 0 to 1
+	 * @param slowThresholdMs end-to-end latency above which a traced record is
+	 *                        logged, 0 to log none
+	 */
+	public RecordTracer(KafkaMetrics kafkaMetrics, double sampleRate, long slowThresholdMs) {
+		if (sampleRate < 0 || sampleRate > 1) {
+			throw new IllegalArgumentException("Invalid sample rate " + sampleRate);
+		}
+		this.kafkaMetrics = kafkaMetrics;
+		this.sampleRate = sampleRate;
+		this.slowThresholdMs = slowThresholdMs;
+	}
+
+	/**
+	 * Stamp the headers of a record about to be sent, if it is sampled.
+	 *
+	 * @return whether the record is traced
+	 */
+	public boolean stamp(Headers headers) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		if (sampleRate < 1 && random.nextDouble() >= sampleRate) {
+			return false;
+		}
+		headers.add(TraceHeaders.TRACE_ID, ByteBuffer.allocate(8).putLong(random.nextLong()).array());
+		headers.add(TraceHeaders.PRODUCED_AT,
+				ByteBuffer.allocate(8).putLong(System.currentTimeMillis()).array());
+		return true;
+	}
+
+	/**
+	 * Run the handler on a received record and, when it was stamped, record its
+	 * queue, processing and append times, whether the handler succeeds or not.
+	 */
+	public <K, V> void trace(ConsumerRecord<K, V> record, ParallelRecordProcessor.RecordHandler<K, V> handler)
+			throws Exception {
+		long producedAt = getLong(record.headers(), TraceHeaders.PRODUCED_AT);
+		if (producedAt < 0) {
+			handler.handle(record);
+			return;
+		}
+		long startMillis = System.currentTimeMillis();
+		long start = System.nanoTime();
+		try {
+			handler.handle(record);
+		} finally {
+			long processingNanos = System.nanoTime() - start;
+			long queueMillis = Math.max(0, startMillis - producedAt);
+			long appendMillis = record.timestampType() == TimestampType.LOG_APPEND_TIME
+					? Math.max(0, record.timestamp() - producedAt)
+					: -1;
+			kafkaMetrics.recordTrace(record.topic(), queueMillis, appendMillis, processingNanos);
+			if (slowThresholdMs > 0
+					&& queueMillis + TimeUnit.NANOSECONDS.toMillis(processingNanos) > slowThresholdMs) {
+				logger.warn("slow record trace={} topic={} partition={} offset={}: queue {}ms (append {}ms), processing {}us",
+						Long.toHexString(getLong(record.headers(), TraceHeaders.TRACE_ID)), record.topic(),
+						record.partition(), record.offset(), queueMillis, appendMillis,
+						TimeUnit.NANOSECONDS.toMicros(processingNanos));
+			}
+		}
+	}
+
+	public double getSampleRate() {
+		return sampleRate;
+	}
+
+	/**
+	 * The last value of an 8 bytes long header, -1 when absent or malformed.
+	 */
+	static long getLong(Headers headers, String key) {
+		Header header = headers.lastHeader(key);
+		if (header == null || header.value() == null || header.value().length != 8) {
+			return -1;
+		}
+		return ByteBuffer.wrap(header.value()).getLong();
+	}
+
+}
@@ -0,0 +1,24 @@
+package com.poc.kafka.tracing;
+
+/**
+ * Headers stamped by the RecordTracer on the sampled records of the Sender.
+ *
+ * @author kali
+ *
+ */
+public final class TraceHeaders {
+
+	/**
+	 * Random id of the trace, as an 8 bytes long.
+	 */
+	public static final String TRACE_ID = "trace-id";
+
+	/**
+	 * Epoch millis of the send call, as an 8 bytes long.
+	 */
+	public static final String PRODUCED_AT = "trace-produced-at";
+
+	private TraceHeaders() {
+	}
+
+}
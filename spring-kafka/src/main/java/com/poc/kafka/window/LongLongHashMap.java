@@ -0,0 +1,130 @@
+package com.poc.kafka.window;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from long to long, with linear probing, so that
+ * counting per key allocates nothing but the two arrays, which double when
+ * three quarters full.
+ *
+ * Not thread safe.
+ *
+ * @author kali
+ *
+ */
+public class LongLongHashMap {
+
+	// Key 0 marks an empty slot, its value is kept aside.
+	private static final long EMPTY = 0;
+
+	private long[] keys;
+
+	private long[] values;
+
+	private int size;
+
+	private boolean hasZeroKey;
+
+	private long zeroValue;
+
+	public LongLongHashMap(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(expectedSize * 4 / 3, 8) - 1) << 1;
+		keys = new long[capacity];
+		values = new long[capacity];
+	}
+
+	/**
+	 * Add the delta to the value of the key, a missing key counting as 0.
+	 *
+	 * @return the new value
+	 */
+	public long add(long key, long delta) {
+		if (key == EMPTY) {
+			if (!hasZeroKey) {
+				hasZeroKey = true;
+				size++;
+			}
+			return zeroValue += delta;
+		}
+		int mask = keys.length - 1;
+		int slot = slot(key, mask);
+		while (keys[slot] != EMPTY) {
+			if (keys[slot] == key) {
+				return values[slot] += delta;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		values[slot] = delta;
+		if (++size > keys.length * 3 / 4) {
+			grow();
+		}
+		return delta;
+	}
+
+	/**
+	 * The value of the key, 0 when missing.
+	 */
+	public long get(long key) {
+		if (key == EMPTY) {
+			return zeroValue;
+		}
+		int mask = keys.length - 1;
+		int slot = slot(key, mask);
+		while (keys[slot] != EMPTY) {
+			if (keys[slot] == key) {
+				return values[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		return 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * The largest value of the map, 0 when empty.
+	 */
+	public long max() {
+		long max = hasZeroKey ? zeroValue : 0;
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != EMPTY && values[i] > max) {
+				max = values[i];
+			}
+		}
+		return max;
+	}
+
+	public void clear() {
+		Arrays.fill(keys, EMPTY);
+		size = 0;
+		hasZeroKey = false;
+		zeroValue = 0;
+	}
+
+	private void grow() {
+		long[] oldKeys = keys;
+		long[] oldValues = values;
+		keys = new long[oldKeys.length * 2];
+		values = new long[oldValues.length * 2];
+		int mask = keys.length - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY) {
+				int slot = slot(oldKeys[i], mask);
+				while (keys[slot] != EMPTY) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	private static int slot(long key, int mask) {
+		long h = key * 0x9e3779b97f4a7c15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+
+}
@@ -0,0 +1,87 @@
+package com.poc.kafka.window;
+
+/**
+ * Aggregates of a closed window, as published to the output topic.
+ *
+ * @author kali
+ *
+ */
+public class WindowResult {
+
+	private long windowStart;
+
+	private long windowEnd;
+
+	private long count;
+
+	private long distinctPersons;
+
+	private long maxPerPerson;
+
+	public WindowResult() {
+	}
+
+	public WindowResult(long windowStart, long windowEnd, long count, long distinctPersons, long maxPerPerson) {
+		this.windowStart = windowStart;
+		this.windowEnd = windowEnd;
+		this.count = count;
+		this.distinctPersons = distinctPersons;
+		this.maxPerPerson = maxPerPerson;
+	}
+
+	public long getWindowStart() {
+		return windowStart;
+	}
+
+	public void setWindowStart(long windowStart) {
+		this.windowStart = windowStart;
+	}
+
+	public long getWindowEnd() {
+		return windowEnd;
+	}
+
+	public void setWindowEnd(long windowEnd) {
+		this.windowEnd = windowEnd;
+	}
+
+	/**
+	 * Number of records of the window.
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	public void setCount(long count) {
+		this.count = count;
+	}
+
+	/**
+	 * Number of distinct name and lastname pairs of the window.
+	 */
+	public long getDistinctPersons() {
+		return distinctPersons;
+	}
+
+	public void setDistinctPersons(long distinctPersons) {
+		this.distinctPersons = distinctPersons;
+	}
+
+	/**
+	 * Number of records of the most frequent person of the window.
+	 */
+	public long getMaxPerPerson() {
+		return maxPerPerson;
+	}
+
+	public void setMaxPerPerson(long maxPerPerson) {
+		this.maxPerPerson = maxPerPerson;
+	}
+
+	@Override
+	public String toString() {
+		return "WindowResult[start=" + windowStart + ", end=" + windowEnd + ", count=" + count + ", distinctPersons="
+				+ distinctPersons + ", maxPerPerson=" + maxPerPerson + "]";
+	}
+
+}
@@ -0,0 +1,75 @@
+package com.poc.kafka.window;
+
+/**
+ * Shape of the windows of a {@link WindowedAggregator}: windows of size ms
+ * starting every advance ms (tumbling when both are equal, hopping when the
+ * advance is smaller), kept open for allowed lateness ms after their end.
+ *
+ * @author kali
+ *
+ */
+public final class WindowSpec {
+
+	private final long sizeMs;
+
+	private final long advanceMs;
+
+	private final long allowedLatenessMs;
+
+	private WindowSpec(long sizeMs, long advanceMs, long allowedLatenessMs) {
+		if (sizeMs <= 0 || advanceMs <= 0 || advanceMs > sizeMs || allowedLatenessMs < 0) {
+			throw new IllegalArgumentException("Invalid window size=" + sizeMs + " advance=" + advanceMs
+					+ " allowed lateness=" + allowedLatenessMs);
+		}
+		this.sizeMs = sizeMs;
+		this.advanceMs = advanceMs;
+		this.allowedLatenessMs = allowedLatenessMs;
+	}
+
+	public static WindowSpec tumbling(long sizeMs) {
+		return new WindowSpec(sizeMs, sizeMs, 0);
+	}
+
+	public static WindowSpec hopping(long sizeMs, long advanceMs) {
+		return new WindowSpec(sizeMs, advanceMs, 0);
+	}
+
+	public WindowSpec withAllowedLateness(long allowedLatenessMs) {
+		return new WindowSpec(sizeMs, advanceMs, allowedLatenessMs);
+	}
+
+	public long getSizeMs() {
+		return sizeMs;
+	}
+
+	public long getAdvanceMs() {
+		return advanceMs;
+	}
+
+	public long getAllowedLatenessMs() {
+		return allowedLatenessMs;
+	}
+
+	/**
+	 * Start of the last window containing the timestamp; the others start every
+	 * advance ms before it, down to timestamp - size excluded.
+	 */
+	long lastStart(long timestamp) {
+		return timestamp - Math.floorMod(timestamp, advanceMs);
+	}
+
+	/**
+	 * Whether the window starting at the given time is closed once the watermark
+	 * reached the given time.
+	 */
+	boolean isClosed(long start, long watermark) {
+		return start + sizeMs + allowedLatenessMs <= watermark;
+	}
+
+	@Override
+	public String toString() {
+		return "WindowSpec[size=" + sizeMs + "ms, advance=" + advanceMs + "ms, allowedLateness=" + allowedLatenessMs
+				+ "ms]";
+	}
+
+}
@@ -0,0 +1,343 @@
+package com.poc.kafka.window;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import com.poc.kafka.consumer.DeduplicationCache;
+import com.poc.kafka.consumer.PartitionHandoffListener.PartitionWarmer;
+import com.poc.kafka.model.PersonModel;
+import com.poc.kafka.retry.RetryHeaders;
+
+/**
+ * Counts the PersonModel received per time window, and the distinct persons
+ * (name and lastname pairs) per window, next to the consumption rather than
+ * in a downstream system.
+ *
+ * The time of a record is the date of the PersonModel (event time), or the
+ * record timestamp when the model has no date or when configured so. The
+ * aggregates are updated incrementally: each window holds a count and a
+ * primitive map of the 64-bit hashes of the persons to their count.
+ *
+ * Each partition has its own watermark, the highest time seen in it, and the
+ * watermark of the aggregator is the lowest of them, so that a partition
+ * consumed ahead of the others does not close the windows the others still
+ * fill. A partition counts once it delivered a record, or an empty partition
+ * would keep every window open, and no longer once it is revoked (see
+ * {@link PartitionWarmer}) or once it delivered nothing for the idle timeout,
+ * until its next record. When every partition is idle, the watermark moves to
+ * the highest time seen. The records of the retry tiers are counted but do not
+ * move any watermark: a tier only receives the failed records, late by
+ * design, and is idle most of the time. A window is closed, emitted to the
+ * result consumer
+ * and forgotten once the watermark passed its end plus the allowed lateness; a
+ * record arriving for windows that are all closed is dropped and counted as
+ * late.
+ *
+ * Thread safe: the listener threads of all the containers share one instance.
+ * The closed windows are handed to the result consumer outside of the lock of
+ * the aggregator, in order, so a slow send does not hold the other listener
+ * threads back.
+ *
+ * @author kali
+ *
+ */
+@ManagedResource(objectName = "com.poc.kafka:type=WindowedAggregator", description = "Windowed PersonModel aggregation")
+public class WindowedAggregator implements PartitionWarmer {
+
+	private final WindowSpec spec;
+
+	private final boolean eventTime;
+
+	private final Consumer<WindowResult> emitter;
+
+	// Open windows by start time.
+	private final TreeMap<Long, Window> windows = new TreeMap<>();
+
+	private final long idleTimeoutMs;
+
+	private final LongSupplier clock;
+
+	private final Map<TopicPartition, PartitionWatermark> partitionWatermarks = new HashMap<>();
+
+	private long watermark = Long.MIN_VALUE;
+
+	// Results of the closed windows not handed to the emitter yet.
+	private final Queue<WindowResult> closed = new ArrayDeque<>();
+
+	private final Lock emitLock = new ReentrantLock();
+
+	private long emitted;
+
+	private long late;
+
+	private long expired;
+
+	/**
+	 * An aggregator whose partitions never expire.
+	 */
+	public WindowedAggregator(WindowSpec spec, boolean eventTime, Consumer<WindowResult> emitter) {
+		this(spec, eventTime, 0, emitter);
+	}
+
+	/**
+	 * @param eventTime     whether to use the date of the PersonModel rather
+	 *                      than the record timestamp
+	 * @param idleTimeoutMs how long a partition delivering nothing still holds
+	 *                      the watermark back, 0 for ever
+	 * @param emitter       receives the results of the closed windows, in order
+	 */
+	public WindowedAggregator(WindowSpec spec, boolean eventTime, long idleTimeoutMs,
+			Consumer<WindowResult> emitter) {
+		this(spec, eventTime, idleTimeoutMs, emitter, System::currentTimeMillis);
+	}
+
+	WindowedAggregator(WindowSpec spec, boolean eventTime, long idleTimeoutMs, Consumer<WindowResult> emitter,
+			LongSupplier clock) {
+		if (idleTimeoutMs < 0) {
+			throw new IllegalArgumentException("Invalid idle timeout " + idleTimeoutMs + "ms");
+		}
+		this.spec = spec;
+		this.eventTime = eventTime;
+		this.idleTimeoutMs = idleTimeoutMs;
+		this.emitter = emitter;
+		this.clock = clock;
+	}
+
+	/**
+	 * Add a record of a listener; the records forwarded to a retry tier keep the
+	 * watermarks where they are.
+	 */
+	public void add(ConsumerRecord<?, PersonModel> record) {
+		TopicPartition partition = record.headers().lastHeader(RetryHeaders.ORIGINAL_TOPIC) == null
+				? new TopicPartition(record.topic(), record.partition())
+				: null;
+		add(partition, record.value(), record.timestamp());
+	}
+
+	/**
+	 * @param partition the partition of the record, null for a record that does
+	 *                  not move any watermark
+	 */
+	public void add(TopicPartition partition, PersonModel person, long recordTimestamp) {
+		long time = eventTime && person.getDate() != null ? person.getDate().getTime() : recordTimestamp;
+		long personHash = DeduplicationCache.hash(DeduplicationCache.hash(DeduplicationCache.initialHash(),
+				person.getName()), person.getLastname());
+		add(partition, time, personHash);
+		emitClosed();
+	}
+
+	private synchronized void add(TopicPartition partition, long time, long personHash) {
+		boolean counted = false;
+		for (long start = spec.lastStart(time); start > time - spec.getSizeMs(); start -= spec.getAdvanceMs()) {
+			if (spec.isClosed(start, watermark)) {
+				// The earlier windows are closed as well.
+				break;
+			}
+			Window window = windows.get(start);
+			if (window == null) {
+				window = new Window();
+				windows.put(start, window);
+			}
+			window.count++;
+			window.persons.add(personHash, 1);
+			counted = true;
+		}
+		if (!counted) {
+			late++;
+		}
+		if (partition == null) {
+			return;
+		}
+		PartitionWatermark partitionWatermark = partitionWatermarks.get(partition);
+		boolean advanced = partitionWatermark == null || time > partitionWatermark.time;
+		if (partitionWatermark == null) {
+			partitionWatermark = new PartitionWatermark(time);
+			partitionWatermarks.put(partition, partitionWatermark);
+		} else if (advanced) {
+			partitionWatermark.time = time;
+		}
+		if (idleTimeoutMs > 0) {
+			partitionWatermark.lastRecordMs = clock.getAsLong();
+		}
+		if (advanced) {
+			advanceWatermark();
+		}
+	}
+
+	@Override
+	public void warm(org.apache.kafka.clients.consumer.Consumer<?, ?> consumer,
+			Collection<TopicPartition> partitions) {
+		// A partition counts from its first record.
+	}
+
+	/**
+	 * The revoked partitions no longer hold the watermark back; they count again
+	 * from their next record if assigned back.
+	 */
+	@Override
+	public void release(Collection<TopicPartition> partitions) {
+		synchronized (this) {
+			partitionWatermarks.keySet().removeAll(partitions);
+			advanceWatermark();
+		}
+		emitClosed();
+	}
+
+	/**
+	 * Stop waiting for the partitions idle for the idle timeout, which the
+	 * records of the other partitions otherwise do, e.g. while every listener is
+	 * idle.
+	 */
+	public void expireIdlePartitions() {
+		synchronized (this) {
+			advanceWatermark();
+		}
+		emitClosed();
+	}
+
+	/**
+	 * Emit and forget every open window, whatever the watermark, e.g. on
+	 * shutdown.
+	 */
+	public void flush() {
+		synchronized (this) {
+			while (!windows.isEmpty()) {
+				close(windows.pollFirstEntry());
+			}
+		}
+		emitClosed();
+	}
+
+	@ManagedAttribute(description = "Windows not closed yet")
+	public synchronized int getOpenWindows() {
+		return windows.size();
+	}
+
+	@ManagedAttribute(description = "Windows closed and emitted")
+	public synchronized long getEmitted() {
+		return emitted;
+	}
+
+	@ManagedAttribute(description = "Records dropped because all their windows were closed")
+	public synchronized long getLate() {
+		return late;
+	}
+
+	@ManagedAttribute(description = "Partitions no longer holding the watermark back after their idle timeout")
+	public synchronized long getExpiredPartitions() {
+		return expired;
+	}
+
+	@ManagedAttribute(description = "Lowest of the highest record times seen per partition, in epoch millis")
+	public synchronized long getWatermark() {
+		return watermark;
+	}
+
+	@ManagedAttribute(description = "Highest record time seen per partition, in epoch millis")
+	public synchronized Map<String, Long> getPartitionWatermarks() {
+		Map<String, Long> watermarks = new TreeMap<>();
+		partitionWatermarks.forEach(
+				(partition, partitionWatermark) -> watermarks.put(partition.toString(), partitionWatermark.time));
+		return watermarks;
+	}
+
+	/**
+	 * Forget the idle partitions, move the watermark to the lowest of the others,
+	 * or to the highest of the idle ones when all are, never back, and close the
+	 * windows it passed.
+	 */
+	private void advanceWatermark() {
+		long now = idleTimeoutMs > 0 ? clock.getAsLong() : 0;
+		long lowest = Long.MAX_VALUE;
+		long highestIdle = Long.MIN_VALUE;
+		Iterator<PartitionWatermark> iterator = partitionWatermarks.values().iterator();
+		while (iterator.hasNext()) {
+			PartitionWatermark partitionWatermark = iterator.next();
+			if (idleTimeoutMs > 0 && now - partitionWatermark.lastRecordMs >= idleTimeoutMs) {
+				iterator.remove();
+				expired++;
+				highestIdle = Math.max(highestIdle, partitionWatermark.time);
+			} else {
+				lowest = Math.min(lowest, partitionWatermark.time);
+			}
+		}
+		if (lowest == Long.MAX_VALUE) {
+			lowest = highestIdle;
+		}
+		if (lowest <= watermark) {
+			return;
+		}
+		watermark = lowest;
+		while (!windows.isEmpty() && spec.isClosed(windows.firstKey(), watermark)) {
+			close(windows.pollFirstEntry());
+		}
+	}
+
+	private void close(Map.Entry<Long, Window> entry) {
+		long start = entry.getKey();
+		Window window = entry.getValue();
+		emitted++;
+		closed.add(new WindowResult(start, start + spec.getSizeMs(), window.count, window.persons.size(),
+				window.persons.max()));
+	}
+
+	private synchronized WindowResult pollClosed() {
+		return closed.poll();
+	}
+
+	private synchronized boolean hasClosed() {
+		return !closed.isEmpty();
+	}
+
+	/**
+	 * Hand the closed windows to the emitter, one thread at a time to keep their
+	 * order. A thread finding another one emitting leaves its results to it.
+	 */
+	private void emitClosed() {
+		while (hasClosed() && emitLock.tryLock()) {
+			try {
+				WindowResult result;
+				while ((result = pollClosed()) != null) {
+					emitter.accept(result);
+				}
+			} finally {
+				emitLock.unlock();
+			}
+		}
+	}
+
+	private static final class PartitionWatermark {
+
+		private long time;
+
+		private long lastRecordMs;
+
+		private PartitionWatermark(long time) {
+			this.time = time;
+		}
+
+	}
+
+	private static final class Window {
+
+		private long count;
+
+		private final LongLongHashMap persons = new LongLongHashMap(64);
+
+	}
+
+}
@@ -0,0 +1,171 @@
+package com.poc.kafka;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.AbstractMessageListenerContainer.AckMode;
+import org.springframework.kafka.listener.BatchMessageListener;
+import org.springframework.kafka.listener.KafkaMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListener;
+import org.springframework.kafka.listener.config.ContainerProperties;
+import org.springframework.kafka.test.rule.KafkaEmbedded;
+import org.springframework.kafka.transaction.KafkaTransactionManager;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.poc.kafka.config.ReceiverConfig;
+import com.poc.kafka.model.PersonModel;
+import com.poc.kafka.pipeline.PersonPipeline;
+
+/**
+ * Runs the PersonPipeline over the same input with several batch sizes, i.e.
+ * several numbers of records per transaction, and reports the records/sec
+ * measured between the pipeline start and the moment the last output record is
+ * visible to a read_committed consumer.
+ *
+ * Each run must produce exactly one output record per input record.
+ *
+ * @author kali
+ *
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@DirtiesContext
+public class PipelineThroughputTest {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PipelineThroughputTest.class);
+	private static final String INPUT_TOPIC = "pipeline.in.t";
+	private static final String OUTPUT_TOPIC = "personEnriched";
+	private static final int RECORD_COUNT = 5000;
+	private static final int[] BATCH_SIZES = { 10, 100, 500 };
+
+	/*
+	 * The broker default replication of the transaction state log is 3.
+	 */
+	@ClassRule
+	public static KafkaEmbedded embeddedKafka = new KafkaEmbedded(1, true, INPUT_TOPIC, OUTPUT_TOPIC)
+			.brokerProperty("transaction.state.log.replication.factor", "1")
+			.brokerProperty("transaction.state.log.min.isr", "1");
+
+	@Autowired
+	private KafkaTemplate<String, PersonModel> kafkaTemplate;
+
+	@Autowired
+	private ReceiverConfig receiverConfig;
+
+	@Autowired
+	private Deserializer<PersonModel> personModelDeserializer;
+
+	@Autowired
+	private KafkaTransactionManager<String, PersonModel> kafkaTransactionManager;
+
+	@Autowired
+	private PersonPipeline personPipeline;
+
+	@Value("${kafka.pipeline.output:personEnriched}")
+	private String outputTopic;
+
+	private KafkaMessageListenerContainer<String, PersonModel> outputContainer;
+
+	private final AtomicInteger output = new AtomicInteger();
+
+	@Before
+	public void setUp() {
+		assertThat(outputTopic).isEqualTo(OUTPUT_TOPIC);
+
+		// Counts the committed output records.
+		ContainerProperties properties = new ContainerProperties(OUTPUT_TOPIC);
+		properties.setGroupId("pipeline-output");
+		properties.setMessageListener(new MessageListener<String, PersonModel>() {
+			@Override
+			public void onMessage(ConsumerRecord<String, PersonModel> record) {
+				output.incrementAndGet();
+			}
+		});
+		Map<String, Object> props = new HashMap<>(receiverConfig.pipelineConsumerConfigs());
+		props.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, 1);
+		outputContainer = new KafkaMessageListenerContainer<>(
+				new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(), personModelDeserializer),
+				properties);
+		outputContainer.start();
+	}
+
+	@After
+	public void tearDown() {
+		outputContainer.stop();
+	}
+
+	@Test
+	public void testBatchSizes() throws Exception {
+		for (int i = 0; i < RECORD_COUNT; i++) {
+			kafkaTemplate.send(INPUT_TOPIC, new PersonModel(" name" + i, "lastname" + i + " "));
+		}
+		kafkaTemplate.flush();
+
+		int expected = 0;
+		for (int batchSize : BATCH_SIZES) {
+			expected += RECORD_COUNT;
+			double rate = run(batchSize, expected);
+			LOGGER.info("batch size={} records/sec={}", batchSize, String.format("%.0f", rate));
+		}
+		// No duplicate shows up late.
+		Thread.sleep(1000);
+		assertThat(output.get()).isEqualTo(expected);
+	}
+
+	private double run(int batchSize, int expected) throws InterruptedException {
+		Map<String, Object> props = new HashMap<>(receiverConfig.pipelineConsumerConfigs());
+		props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, batchSize);
+		props.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, batchSize * 100);
+
+		ContainerProperties properties = new ContainerProperties(INPUT_TOPIC);
+		properties.setGroupId("pipeline-" + batchSize);
+		properties.setAckMode(AckMode.BATCH);
+		properties.setTransactionManager(kafkaTransactionManager);
+		properties.setMessageListener(new BatchMessageListener<String, PersonModel>() {
+			@Override
+			public void onMessage(List<ConsumerRecord<String, PersonModel>> records) {
+				personPipeline.process(records);
+			}
+		});
+		KafkaMessageListenerContainer<String, PersonModel> container = new KafkaMessageListenerContainer<>(
+				new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(), personModelDeserializer),
+				properties);
+
+		long start = System.nanoTime();
+		container.start();
+		try {
+			long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(120);
+			while (output.get() < expected && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			assertThat(output.get()).isEqualTo(expected);
+		} finally {
+			container.stop();
+		}
+		double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+		return RECORD_COUNT / seconds;
+	}
+
+}
@@ -0,0 +1,103 @@
+package com.poc.kafka;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.kafka.test.rule.KafkaEmbedded;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.util.concurrent.ListenableFutureCallback;
+
+import com.poc.kafka.config.ProducerProfile;
+import com.poc.kafka.config.SenderConfig;
+import com.poc.kafka.model.PersonModel;
+
+/**
+ * Pushes the same number of PersonModel messages through the embedded broker
+ * with each producer profile and reports msgs/sec, bytes/sec and the p99 send
+ * latency (time between the send call and the broker acknowledgement).
+ *
+ * @author kali
+ *
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@DirtiesContext
+public class ProducerProfileThroughputTest {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ProducerProfileThroughputTest.class);
+	private static final String PROFILE_TOPIC = "profile.t";
+	private static final int MESSAGE_COUNT = 20000;
+
+	@ClassRule
+	public static KafkaEmbedded embeddedKafka = new KafkaEmbedded(1, true, PROFILE_TOPIC);
+
+	@Autowired
+	private SenderConfig senderConfig;
+
+	@Test
+	public void testProfiles() throws Exception {
+		for (ProducerProfile profile : ProducerProfile.values()) {
+			run(profile);
+		}
+	}
+
+	private void run(ProducerProfile profile) throws Exception {
+		DefaultKafkaProducerFactory<String, PersonModel> producerFactory = new DefaultKafkaProducerFactory<>(
+				profile.applyTo(new HashMap<>(senderConfig.producerConfigs())));
+		KafkaTemplate<String, PersonModel> template = new KafkaTemplate<>(producerFactory);
+
+		long[] latencies = new long[MESSAGE_COUNT];
+		AtomicLong bytes = new AtomicLong();
+		AtomicInteger errors = new AtomicInteger();
+		CountDownLatch acked = new CountDownLatch(MESSAGE_COUNT);
+
+		long start = System.nanoTime();
+		for (int i = 0; i < MESSAGE_COUNT; i++) {
+			final int index = i;
+			final long sentAt = System.nanoTime();
+			template.send(PROFILE_TOPIC, new PersonModel("name" + i, "lastname" + i))
+					.addCallback(new ListenableFutureCallback<SendResult<String, PersonModel>>() {
+
+						@Override
+						public void onSuccess(SendResult<String, PersonModel> result) {
+							latencies[index] = System.nanoTime() - sentAt;
+							bytes.addAndGet(result.getRecordMetadata().serializedValueSize());
+							acked.countDown();
+						}
+
+						@Override
+						public void onFailure(Throwable ex) {
+							errors.incrementAndGet();
+							acked.countDown();
+						}
+					});
+		}
+		assertThat(acked.await(60, TimeUnit.SECONDS)).isTrue();
+		double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+		producerFactory.destroy();
+
+		Arrays.sort(latencies);
+		LOGGER.info("profile={} msgs/sec={} bytes/sec={} p99={}ms errors={}", profile.getProfileName(),
+				String.format("%.0f", MESSAGE_COUNT / seconds), String.format("%.0f", bytes.get() / seconds),
+				String.format("%.2f", latencies[(int) (MESSAGE_COUNT * 0.99) - 1] / 1_000_000.0), errors.get());
+		assertThat(errors.get()).isEqualTo(0);
+	}
+
+}
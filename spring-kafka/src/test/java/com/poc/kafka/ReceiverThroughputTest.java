@@ -0,0 +1,124 @@
+package com.poc.kafka;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.AbstractMessageListenerContainer.AckMode;
+import org.springframework.kafka.listener.BatchMessageListener;
+import org.springframework.kafka.listener.KafkaMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListener;
+import org.springframework.kafka.listener.config.ContainerProperties;
+import org.springframework.kafka.test.rule.KafkaEmbedded;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.poc.kafka.model.PersonModel;
+
+/**
+ * Compares the consumption rate of the single record listener configuration
+ * with the batch listener configuration of ReceiverConfig.
+ *
+ * The same number of records is written to two topics up front, then a
+ * container built on each consumer factory drains its topic. The elapsed time
+ * between the container start and the last record gives the records/sec of
+ * each mode.
+ *
+ * @author kali
+ *
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@DirtiesContext
+public class ReceiverThroughputTest {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ReceiverThroughputTest.class);
+	private static final String SINGLE_TOPIC = "throughput.single.t";
+	private static final String BATCH_TOPIC = "throughput.batch.t";
+	private static final int RECORD_COUNT = 20000;
+
+	@ClassRule
+	public static KafkaEmbedded embeddedKafka = new KafkaEmbedded(1, true, SINGLE_TOPIC, BATCH_TOPIC);
+
+	@Autowired
+	private KafkaTemplate<String, PersonModel> kafkaTemplate;
+
+	@Autowired
+	private ConsumerFactory<String, PersonModel> consumerFactory;
+
+	@Autowired
+	private ConsumerFactory<String, PersonModel> batchConsumerFactory;
+
+	@Test
+	public void testSingleVersusBatchThroughput() throws Exception {
+		fill(SINGLE_TOPIC);
+		fill(BATCH_TOPIC);
+
+		// Single mode: one listener invocation per record.
+		CountDownLatch singleLatch = new CountDownLatch(RECORD_COUNT);
+		ContainerProperties singleProperties = new ContainerProperties(SINGLE_TOPIC);
+		singleProperties.setGroupId("throughput-single");
+		singleProperties.setMessageListener(new MessageListener<String, PersonModel>() {
+			@Override
+			public void onMessage(ConsumerRecord<String, PersonModel> record) {
+				singleLatch.countDown();
+			}
+		});
+		double singleRate = drain(new KafkaMessageListenerContainer<>(consumerFactory, singleProperties),
+				singleLatch);
+
+		// Batch mode: one listener invocation and one commit per poll.
+		CountDownLatch batchLatch = new CountDownLatch(RECORD_COUNT);
+		ContainerProperties batchProperties = new ContainerProperties(BATCH_TOPIC);
+		batchProperties.setGroupId("throughput-batch");
+		batchProperties.setAckMode(AckMode.BATCH);
+		batchProperties.setMessageListener(new BatchMessageListener<String, PersonModel>() {
+			@Override
+			public void onMessage(List<ConsumerRecord<String, PersonModel>> records) {
+				for (int i = 0; i < records.size(); i++) {
+					batchLatch.countDown();
+				}
+			}
+		});
+		double batchRate = drain(new KafkaMessageListenerContainer<>(batchConsumerFactory, batchProperties),
+				batchLatch);
+
+		LOGGER.info("single mode: {} records/sec, batch mode: {} records/sec", String.format("%.0f", singleRate),
+				String.format("%.0f", batchRate));
+		assertThat(singleRate).isPositive();
+		assertThat(batchRate).isPositive();
+	}
+
+	private void fill(String topic) {
+		for (int i = 0; i < RECORD_COUNT; i++) {
+			kafkaTemplate.send(topic, new PersonModel("name" + i, "lastname" + i));
+		}
+		kafkaTemplate.flush();
+	}
+
+	private double drain(KafkaMessageListenerContainer<String, PersonModel> container, CountDownLatch latch)
+			throws InterruptedException {
+		long start = System.nanoTime();
+		container.start();
+		try {
+			assertThat(latch.await(60, TimeUnit.SECONDS)).isTrue();
+		} finally {
+			container.stop();
+		}
+		double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+		return RECORD_COUNT / seconds;
+	}
+
+}
@@ -0,0 +1,62 @@
+package com.poc.kafka;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.test.rule.KafkaEmbedded;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Runs the load generator mode for a few seconds against the embedded broker,
+ * the records being consumed by the batch listener, and checks its report.
+ *
+ * @author kali
+ *
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = { "kafka.load.enabled=true", "kafka.load.exit-on-completion=false",
+		"kafka.topic.batch=" + SpringKafkaLoadTest.LOAD_TOPIC, "kafka.load.rate=200",
+		"kafka.load.producer-threads=2", "kafka.load.keys.distribution=zipfian", "kafka.load.duration-seconds=3",
+		"kafka.load.report-interval-seconds=1", "kafka.load.report-file=" + SpringKafkaLoadTest.REPORT_FILE })
+@DirtiesContext
+public class SpringKafkaLoadTest {
+
+	static final String LOAD_TOPIC = "load.t";
+
+	static final String REPORT_FILE = "target/load-report-test.json";
+
+	@ClassRule
+	public static KafkaEmbedded embeddedKafka = new KafkaEmbedded(1, true, 2, LOAD_TOPIC);
+
+	@Test
+	public void testReport() throws Exception {
+		// The load ran while the application started.
+		ObjectMapper mapper = new ObjectMapper();
+		JsonNode report = mapper.readTree(new File(REPORT_FILE));
+		List<Map<String, Object>> timeline = mapper.convertValue(report.get("timeline"),
+				new TypeReference<List<Map<String, Object>>>() {
+				});
+
+		assertThat(report.get("topic").asText()).isEqualTo(LOAD_TOPIC);
+		long sent = report.get("sent").asLong();
+		assertThat(sent).isBetween(300L, 700L);
+		assertThat(report.get("received").asLong()).isEqualTo(sent);
+		assertThat(report.get("sendErrors").asLong()).isZero();
+		assertThat(report.get("endToEndLatency").get("count").asLong()).isNotZero();
+		// AssertJ 3.11 has no size comparison on lists.
+		assertThat(timeline.size()).isGreaterThan(2);
+	}
+
+}
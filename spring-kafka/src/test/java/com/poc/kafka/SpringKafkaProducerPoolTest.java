@@ -0,0 +1,85 @@
+package com.poc.kafka;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.test.rule.KafkaEmbedded;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.poc.kafka.model.PersonModel;
+import com.poc.kafka.producer.ProducerPool;
+import com.poc.kafka.producer.Sender;
+
+/**
+ * Checks that the Sender creates a producer per isolation group on the first
+ * send, and that the idle producers are closed and created again on demand.
+ *
+ * @author kali
+ *
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = { "kafka.producer.pool.enabled=true", "kafka.producer.pool.isolation=topic",
+		"kafka.producer.pool.groups=" + SpringKafkaProducerPoolTest.TENANT_TOPIC_A + ":tenant,"
+				+ SpringKafkaProducerPoolTest.TENANT_TOPIC_B + ":tenant",
+		"kafka.producer.pool.buffer-memory=1048576", "kafka.producer.pool.idle-timeout-ms=3000" })
+@DirtiesContext
+public class SpringKafkaProducerPoolTest {
+
+	static final String OWN_TOPIC = "pool.own.t";
+
+	static final String TENANT_TOPIC_A = "pool.tenant.a.t";
+
+	static final String TENANT_TOPIC_B = "pool.tenant.b.t";
+
+	@ClassRule
+	public static KafkaEmbedded embeddedKafka = new KafkaEmbedded(1, true, OWN_TOPIC, TENANT_TOPIC_A,
+			TENANT_TOPIC_B);
+
+	@Autowired
+	private Sender sender;
+
+	@Autowired
+	private ProducerPool<PersonModel> producerPool;
+
+	@Test
+	public void testProducersPerGroupAreCreatedLazilyAndClosedWhenIdle() throws Exception {
+		// The demo record of the application, sent on startup to kafka.topic.json,
+		// opened the producer of that topic only.
+		awaitClosed(1);
+		assertThat(producerPool.getProducers()).isEmpty();
+		assertThat(producerPool.getCreated()).isEqualTo(1);
+		assertThat(producerPool.getClosed()).isEqualTo(1);
+
+		sender.sendAsync(OWN_TOPIC, new PersonModel("own", "one")).get(10, TimeUnit.SECONDS);
+		assertThat(producerPool.getProducers()).containsOnlyKeys(OWN_TOPIC);
+		assertThat(producerPool.getCreated()).isEqualTo(2);
+		sender.sendAsync(TENANT_TOPIC_A, new PersonModel("a", "two")).get(10, TimeUnit.SECONDS);
+		sender.sendAsync(TENANT_TOPIC_B, new PersonModel("b", "three")).get(10, TimeUnit.SECONDS);
+
+		assertThat(producerPool.getProducers()).containsOnlyKeys(OWN_TOPIC, "tenant");
+		assertThat(producerPool.getCreated()).isEqualTo(3);
+
+		awaitClosed(3);
+		assertThat(producerPool.getProducers()).isEmpty();
+		assertThat(producerPool.getClosed()).isEqualTo(3);
+
+		sender.sendAsync(TENANT_TOPIC_B, new PersonModel("b", "four")).get(10, TimeUnit.SECONDS);
+		assertThat(producerPool.getProducers()).containsOnlyKeys("tenant");
+		assertThat(producerPool.getCreated()).isEqualTo(4);
+	}
+
+	private void awaitClosed(long count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 15000;
+		while (producerPool.getClosed() < count && System.currentTimeMillis() < deadline) {
+			Thread.sleep(100);
+		}
+	}
+
+}
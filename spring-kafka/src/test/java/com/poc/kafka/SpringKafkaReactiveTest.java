@@ -0,0 +1,137 @@
+package com.poc.kafka;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.reactivestreams.Subscription;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.kafka.test.rule.KafkaEmbedded;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.poc.kafka.model.PersonModel;
+import com.poc.kafka.producer.Sender;
+import com.poc.kafka.reactive.ReactiveReceiver;
+import com.poc.kafka.reactive.ReactiveSender;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+
+/**
+ * Streams PersonModel messages through the ReactiveSender and back through the
+ * ReactiveReceiver, and checks that the receiver only delivers what its
+ * subscriber requested. The in-flight window of the Sender is small so that the
+ * reactive sends compete with the direct ones for it.
+ *
+ * @author kali
+ *
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "kafka.producer.max-in-flight-sends=4")
+@DirtiesContext
+public class SpringKafkaReactiveTest {
+
+	private static final String REACTIVE_TOPIC = "reactive.t";
+	private static final int MESSAGE_COUNT = 200;
+
+	@ClassRule
+	public static KafkaEmbedded embeddedKafka = new KafkaEmbedded(1, true, REACTIVE_TOPIC);
+
+	@Autowired
+	private Sender sender;
+
+	@Autowired
+	private ReactiveSender reactiveSender;
+
+	@Autowired
+	private ReactiveReceiver reactiveReceiver;
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		List<SendResult<String, PersonModel>> results = reactiveSender
+				.send(REACTIVE_TOPIC,
+						Flux.range(0, MESSAGE_COUNT).map(i -> new PersonModel("name" + i, "lastname" + i)))
+				.collectList().block(Duration.ofSeconds(30));
+		assertThat(results).hasSize(MESSAGE_COUNT);
+		// Results come in the order of the messages.
+		assertThat(results.get(0).getProducerRecord().value().getName()).isEqualTo("name0");
+		assertThat(results.get(MESSAGE_COUNT - 1).getProducerRecord().value().getName())
+				.isEqualTo("name" + (MESSAGE_COUNT - 1));
+
+		List<PersonModel> received = reactiveReceiver.receive("reactive-all", REACTIVE_TOPIC).limitRate(10)
+				.take(MESSAGE_COUNT).collectList().block(Duration.ofSeconds(30));
+		assertThat(received).hasSize(MESSAGE_COUNT);
+
+		// A subscriber asking for 5 messages only gets 5, the rest stays in Kafka.
+		List<PersonModel> requested = new CopyOnWriteArrayList<>();
+		BaseSubscriber<PersonModel> subscriber = new BaseSubscriber<PersonModel>() {
+
+			@Override
+			protected void hookOnSubscribe(Subscription subscription) {
+				subscription.request(5);
+			}
+
+			@Override
+			protected void hookOnNext(PersonModel value) {
+				requested.add(value);
+			}
+
+		};
+		Disposable subscription = reactiveReceiver.receive("reactive-slow", REACTIVE_TOPIC).subscribeWith(subscriber);
+		try {
+			long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+			while (requested.size() < 5 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(20);
+			}
+			Thread.sleep(1000);
+			assertThat(requested).hasSize(5);
+			subscriber.request(MESSAGE_COUNT - 5);
+			while (requested.size() < MESSAGE_COUNT && System.currentTimeMillis() < deadline) {
+				Thread.sleep(20);
+			}
+			assertThat(requested).hasSize(MESSAGE_COUNT);
+		} finally {
+			subscription.dispose();
+		}
+	}
+
+	/**
+	 * The acknowledgements of the reactive sends arrive on the producer I/O
+	 * thread while another thread keeps the in-flight window of the Sender full:
+	 * the next reactive send must not wait for the window on that thread.
+	 */
+	@Test
+	public void testSendsConcurrentlyWithTheSender() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<?> direct = executor.submit(() -> {
+				for (int i = 0; i < MESSAGE_COUNT; i++) {
+					sender.sendAsync(REACTIVE_TOPIC, new PersonModel("direct" + i, "lastname" + i));
+				}
+				return null;
+			});
+			List<SendResult<String, PersonModel>> results = reactiveSender
+					.send(REACTIVE_TOPIC,
+							Flux.range(0, MESSAGE_COUNT).map(i -> new PersonModel("name" + i, "lastname" + i)))
+					.collectList().block(Duration.ofSeconds(30));
+			assertThat(results).hasSize(MESSAGE_COUNT);
+			direct.get(30, TimeUnit.SECONDS);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+}
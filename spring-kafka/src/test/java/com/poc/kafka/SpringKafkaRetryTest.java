@@ -0,0 +1,171 @@
+package com.poc.kafka;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.KafkaMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListener;
+import org.springframework.kafka.listener.config.ContainerProperties;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.kafka.test.rule.KafkaEmbedded;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.poc.kafka.metrics.KafkaMetrics;
+import com.poc.kafka.model.PersonModel;
+import com.poc.kafka.retry.RetryHeaders;
+import com.poc.kafka.serializer.FailSafeDeserializer;
+
+/**
+ * Sends undeserializable records to the topics of both listeners and checks
+ * that they land in the dead letter topics without being counted as received,
+ * then checks that a record of a retry tier is processed once it is due.
+ *
+ * @author kali
+ *
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "kafka.consumer.retry.delays-ms=500,1000")
+@DirtiesContext
+public class SpringKafkaRetryTest {
+
+	private static final String JSON_TOPIC = "jsonKafka";
+	private static final String BATCH_TOPIC = "jsonKafkaBatch";
+
+	@ClassRule
+	public static KafkaEmbedded embeddedKafka = new KafkaEmbedded(1, true, 2, JSON_TOPIC, BATCH_TOPIC);
+
+	@Autowired
+	private KafkaTemplate<String, byte[]> retryKafkaTemplate;
+
+	@Autowired
+	private KafkaMetrics kafkaMetrics;
+
+	@Autowired
+	private ApplicationContext applicationContext;
+
+	private KafkaMessageListenerContainer<String, byte[]> container;
+
+	private BlockingQueue<ConsumerRecord<String, byte[]>> deadLetters;
+
+	@Before
+	public void setUp() throws Exception {
+		Map<String, Object> consumerProperties = KafkaTestUtils.consumerProps("retry-test", "false", embeddedKafka);
+		consumerProperties.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+		DefaultKafkaConsumerFactory<String, byte[]> consumerFactory = new DefaultKafkaConsumerFactory<>(
+				consumerProperties, new StringDeserializer(), new ByteArrayDeserializer());
+		container = new KafkaMessageListenerContainer<>(consumerFactory,
+				new ContainerProperties(JSON_TOPIC + "-dlt", BATCH_TOPIC + "-dlt"));
+		deadLetters = new LinkedBlockingQueue<>();
+		container.setupMessageListener(new MessageListener<String, byte[]>() {
+			@Override
+			public void onMessage(ConsumerRecord<String, byte[]> record) {
+				deadLetters.add(record);
+			}
+		});
+		container.start();
+		ContainerTestUtils.waitForAssignment(container, 2 * embeddedKafka.getPartitionsPerTopic());
+	}
+
+	@After
+	public void tearDown() {
+		container.stop();
+	}
+
+	@Test
+	public void testRetryTopicsAreDeclaredAsBeans() {
+		assertThat(applicationContext.getBeansOfType(NewTopic.class)).containsKeys(
+				JSON_TOPIC + "-retry-500ms.topic", JSON_TOPIC + "-retry-1s.topic", JSON_TOPIC + "-dlt.topic",
+				BATCH_TOPIC + "-retry-500ms.topic", BATCH_TOPIC + "-retry-1s.topic", BATCH_TOPIC + "-dlt.topic");
+	}
+
+	@Test
+	public void testPoisonRecordsGoToDeadLetterTopics() throws Exception {
+		byte[] poison = "{not json".getBytes(StandardCharsets.UTF_8);
+		retryKafkaTemplate.send(JSON_TOPIC, "poison", poison).get(10, TimeUnit.SECONDS);
+		retryKafkaTemplate.send(BATCH_TOPIC, "poison", poison).get(10, TimeUnit.SECONDS);
+
+		Map<String, ConsumerRecord<String, byte[]>> received = new HashMap<>();
+		for (int i = 0; i < 2; i++) {
+			ConsumerRecord<String, byte[]> record = deadLetters.poll(30, TimeUnit.SECONDS);
+			assertThat(record).isNotNull();
+			received.put(record.topic(), record);
+		}
+		assertThat(received).containsOnlyKeys(JSON_TOPIC + "-dlt", BATCH_TOPIC + "-dlt");
+		for (ConsumerRecord<String, byte[]> record : received.values()) {
+			assertThat(record.key()).isEqualTo("poison");
+			assertThat(record.value()).isEqualTo(poison);
+			assertThat(record.headers().lastHeader(FailSafeDeserializer.EXCEPTION_HEADER)).isNotNull();
+			assertThat(record.headers().lastHeader(RetryHeaders.ORIGINAL_TOPIC)).isNotNull();
+		}
+	}
+
+	@Test
+	public void testUndeserializableRecordIsNotReceived() throws Exception {
+		// The record sent by the application on startup.
+		awaitReceived(JSON_TOPIC, 1);
+		long received = kafkaMetrics.topic(JSON_TOPIC).getReceiveRate().getCount();
+		long errors = kafkaMetrics.topic(JSON_TOPIC).getReceiveErrors().sum();
+
+		byte[] undecodable = { 0, 1, 2, 3 };
+		retryKafkaTemplate.send(JSON_TOPIC, "undecodable", undecodable).get(10, TimeUnit.SECONDS);
+
+		ConsumerRecord<String, byte[]> deadLetter;
+		do {
+			deadLetter = deadLetters.poll(30, TimeUnit.SECONDS);
+			assertThat(deadLetter).isNotNull();
+		} while (!"undecodable".equals(deadLetter.key()));
+		assertThat(deadLetter.value()).isEqualTo(undecodable);
+		assertThat(kafkaMetrics.topic(JSON_TOPIC).getReceiveRate().getCount()).isEqualTo(received);
+		assertThat(kafkaMetrics.topic(JSON_TOPIC).getReceiveErrors().sum()).isGreaterThan(errors);
+	}
+
+	@Test
+	public void testRetryTierIsProcessedWhenDue() throws Exception {
+		String retryTopic = JSON_TOPIC + "-retry-500ms";
+		long due = System.currentTimeMillis() + 500;
+		ProducerRecord<String, byte[]> retry = new ProducerRecord<>(retryTopic, "key",
+				new JsonSerializer<PersonModel>().serialize(retryTopic, new PersonModel("Roignant", "Cédric")));
+		retry.headers().add(RetryHeaders.ATTEMPTS, ByteBuffer.allocate(4).putInt(1).array());
+		retry.headers().add(RetryHeaders.DUE, ByteBuffer.allocate(8).putLong(due).array());
+		retryKafkaTemplate.send(retry).get(10, TimeUnit.SECONDS);
+
+		awaitReceived(retryTopic, 1);
+		assertThat(kafkaMetrics.topic(retryTopic).getReceiveRate().getCount()).isEqualTo(1);
+		assertThat(System.currentTimeMillis()).isGreaterThanOrEqualTo(due);
+	}
+
+	private void awaitReceived(String topic, long count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 30000;
+		while (kafkaMetrics.topic(topic).getReceiveRate().getCount() < count
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+		}
+	}
+
+}
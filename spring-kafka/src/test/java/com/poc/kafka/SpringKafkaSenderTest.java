@@ -5,12 +5,16 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.kafka.test.assertj.KafkaConditions.key;
 // import static org.springframework.kafka.test.hamcrest.KafkaMatchers.hasValue;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.serialization.StringDeserializer;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.ClassRule;
@@ -24,12 +28,14 @@ import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 import org.springframework.kafka.listener.KafkaMessageListenerContainer;
 import org.springframework.kafka.listener.MessageListener;
 import org.springframework.kafka.listener.config.ContainerProperties;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.kafka.test.rule.KafkaEmbedded;
 import org.springframework.kafka.test.utils.ContainerTestUtils;
 import org.springframework.kafka.test.utils.KafkaTestUtils;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import com.poc.kafka.metrics.KafkaMetrics;
 import com.poc.kafka.model.PersonModel;
 import com.poc.kafka.producer.Sender;
 
@@ -60,6 +66,9 @@ public class SpringKafkaSenderTest {
 	@Autowired
 	private Sender sender;
 
+	@Autowired
+	private KafkaMetrics kafkaMetrics;
+
 	/**
 	 * For creating the needed consumer properties a static consumerProps() method
 	 * provided by KafkaUtils is used. We then create a DefaultKafkaConsumerFactory
@@ -98,6 +107,8 @@ public class SpringKafkaSenderTest {
 
 		// Set up the Kafka consumer properties.
 		Map<String, Object> consumerProperties = KafkaTestUtils.consumerProps("sender", "false", embeddedKafka);
+		// The Sender keys every message with a String.
+		consumerProperties.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
 
 		// Create a Kafka consumer factory.
 		DefaultKafkaConsumerFactory<String, PersonModel> consumerFactory = new DefaultKafkaConsumerFactory<String, PersonModel>(
@@ -149,6 +160,25 @@ public class SpringKafkaSenderTest {
 		//assertThat(received, hasValue(person));
 
 		// AssertJ Condition to check the key
-		assertThat(received).has(key(null));
+		assertThat(received).has(key("Roignant_:Cédric_"));
+	}
+
+	@Test
+	public void testSendAll() throws Exception {
+		// Pipeline several messages and wait for all the acknowledgements.
+		List<PersonModel> persons = Arrays.asList(new PersonModel("Roignant_1", "Cédric_1"),
+				new PersonModel("Roignant_2", "Cédric_2"), new PersonModel("Roignant_3", "Cédric_3"));
+		List<SendResult<String, PersonModel>> results = sender.sendAll(SENDER_TOPIC, persons).get(10,
+				TimeUnit.SECONDS);
+
+		assertThat(results).hasSize(persons.size());
+		assertThat(sender.getInFlightCount()).isEqualTo(0);
+		assertThat(kafkaMetrics.topic(SENDER_TOPIC).getAckLatency().getCount()).isGreaterThanOrEqualTo(persons.size());
+		assertThat(kafkaMetrics.getProducerClientMetrics()).isNotEmpty();
+
+		// check that every message was received
+		for (int i = 0; i < persons.size(); i++) {
+			assertThat(records.poll(10, TimeUnit.SECONDS)).isNotNull();
+		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,112 @@
+package com.poc.kafka;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.listener.KafkaMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListener;
+import org.springframework.kafka.listener.config.ContainerProperties;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.kafka.test.rule.KafkaEmbedded;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.poc.kafka.model.PersonModel;
+import com.poc.kafka.producer.Sender;
+import com.poc.kafka.producer.SpillBuffer;
+import com.poc.kafka.serializer.PersonModelBinarySerializer;
+
+/**
+ * Checks that, while spilled records remain, the Sender appends to the spill
+ * buffer and that the drainer replays everything to the broker in order.
+ *
+ * @author kali
+ *
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = { "kafka.producer.spill.enabled=true",
+		"kafka.producer.spill.directory=target/spill-test", "kafka.producer.spill.segment-bytes=4096" })
+@DirtiesContext
+public class SpringKafkaSpillTest {
+
+	private static final String SPILL_TOPIC = "spill.t";
+
+	@ClassRule
+	public static KafkaEmbedded embeddedKafka = new KafkaEmbedded(1, true, SPILL_TOPIC);
+
+	@Autowired
+	private Sender sender;
+
+	@Autowired
+	private SpillBuffer spillBuffer;
+
+	@Autowired
+	private Deserializer<PersonModel> personModelDeserializer;
+
+	private KafkaMessageListenerContainer<String, PersonModel> container;
+
+	private BlockingQueue<ConsumerRecord<String, PersonModel>> records;
+
+	@Before
+	public void setUp() throws Exception {
+		Map<String, Object> consumerProperties = KafkaTestUtils.consumerProps("spill", "false", embeddedKafka);
+		consumerProperties.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+		container = new KafkaMessageListenerContainer<>(
+				new DefaultKafkaConsumerFactory<>(consumerProperties, new StringDeserializer(), personModelDeserializer),
+				new ContainerProperties(SPILL_TOPIC));
+		records = new LinkedBlockingQueue<>();
+		container.setupMessageListener((MessageListener<String, PersonModel>) records::add);
+		container.start();
+		ContainerTestUtils.waitForAssignment(container, embeddedKafka.getPartitionsPerTopic());
+	}
+
+	@After
+	public void tearDown() {
+		container.stop();
+	}
+
+	@Test
+	public void testSpilledRecordsAreReplayedInOrder() throws Exception {
+		// Records left by a broker incident.
+		PersonModelBinarySerializer serializer = new PersonModelBinarySerializer();
+		for (int i = 0; i < 3; i++) {
+			PersonModel person = new PersonModel("Roignant_" + i, "Cédric");
+			assertThat(spillBuffer.append(SPILL_TOPIC, "key", serializer.serialize(SPILL_TOPIC, person))).isTrue();
+		}
+
+		// Queued behind them unless the drainer was faster; either way the future
+		// completes once the broker has the record.
+		SendResult<String, PersonModel> result = sender.sendAsync(SPILL_TOPIC, new PersonModel("Roignant_3", "Cédric"))
+				.get(10, TimeUnit.SECONDS);
+		assertThat(result.getProducerRecord().topic()).isEqualTo(SPILL_TOPIC);
+		assertThat(result.getRecordMetadata()).isNotNull();
+		assertThat(result.getRecordMetadata().hasOffset()).isTrue();
+
+		for (int i = 0; i < 4; i++) {
+			ConsumerRecord<String, PersonModel> received = records.poll(10, TimeUnit.SECONDS);
+			assertThat(received).isNotNull();
+			assertThat(received.value().getName()).isEqualTo("Roignant_" + i);
+		}
+		assertThat(spillBuffer.isEmpty()).isTrue();
+		assertThat(spillBuffer.getDrained()).isGreaterThanOrEqualTo(3);
+	}
+
+}
@@ -0,0 +1,109 @@
+package com.poc.kafka;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.config.TopicConfig;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.rule.KafkaEmbedded;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.poc.kafka.model.PersonModel;
+import com.poc.kafka.store.PersonStore;
+
+/**
+ * Fills a PersonStore from the embedded broker, then checks that a second
+ * store restores from the snapshot of the first one and only replays the
+ * records sent since.
+ *
+ * @author kali
+ *
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@DirtiesContext
+public class SpringKafkaStoreTest {
+
+	private static final String STORE_TOPIC = "store.t";
+
+	@ClassRule
+	public static KafkaEmbedded embeddedKafka = new KafkaEmbedded(1, true, 2);
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Autowired
+	private ConsumerFactory<String, PersonModel> consumerFactory;
+
+	@Autowired
+	private KafkaTemplate<String, PersonModel> kafkaTemplate;
+
+	/**
+	 * The store topic is compacted, as StoreConfig declares it.
+	 */
+	@BeforeClass
+	public static void createStoreTopic() throws Exception {
+		try (AdminClient adminClient = AdminClient.create(Collections
+				.singletonMap(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, embeddedKafka.getBrokersAsString()))) {
+			adminClient.createTopics(Collections.singletonList(new NewTopic(STORE_TOPIC, 2, (short) 1).configs(
+					Collections.singletonMap(TopicConfig.CLEANUP_POLICY_CONFIG, TopicConfig.CLEANUP_POLICY_COMPACT))))
+					.all().get(30, TimeUnit.SECONDS);
+		}
+	}
+
+	@Test
+	public void testRestoreFromSnapshot() throws Exception {
+		File snapshot = new File(folder.getRoot(), "store.snapshot");
+		for (int i = 0; i < 10; i++) {
+			kafkaTemplate.send(STORE_TOPIC, "key" + i, new PersonModel("Roignant", "Cédric_" + i));
+		}
+		kafkaTemplate.send(STORE_TOPIC, "key3", new PersonModel("Roignant", "Cédric_33"));
+		kafkaTemplate.send(STORE_TOPIC, "key4", null);
+		kafkaTemplate.flush();
+
+		PersonStore store = new PersonStore(consumerFactory, STORE_TOPIC, snapshot, 60000);
+		store.start();
+		assertThat(store.awaitRestored(30, TimeUnit.SECONDS)).isTrue();
+		assertThat(store.getReplayedRecords()).isEqualTo(12);
+		assertThat(store.getSize()).isEqualTo(9);
+		assertThat(store.get("key3").getLastname()).isEqualTo("Cédric_33");
+		assertThat(store.get("key4")).isNull();
+		assertThat(store.range("key2", "key6").keySet()).containsExactly("key2", "key3", "key5");
+		store.close();
+		assertThat(snapshot).exists();
+
+		kafkaTemplate.send(STORE_TOPIC, "key10", new PersonModel("Roignant", "Cédric_10"));
+		kafkaTemplate.send(STORE_TOPIC, "key0", null);
+		kafkaTemplate.flush();
+
+		PersonStore restored = new PersonStore(consumerFactory, STORE_TOPIC, snapshot, 60000);
+		restored.start();
+		try {
+			assertThat(restored.awaitRestored(30, TimeUnit.SECONDS)).isTrue();
+			assertThat(restored.getReplayedRecords()).isEqualTo(2);
+			assertThat(restored.getSize()).isEqualTo(9);
+			assertThat(restored.get("key10").getLastname()).isEqualTo("Cédric_10");
+			assertThat(restored.get("key0")).isNull();
+			assertThat(restored.get("key3").getLastname()).isEqualTo("Cédric_33");
+		} finally {
+			restored.close();
+		}
+	}
+
+}
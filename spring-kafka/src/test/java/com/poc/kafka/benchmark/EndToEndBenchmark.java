@@ -0,0 +1,101 @@
+package com.poc.kafka.benchmark;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.kafka.test.rule.KafkaEmbedded;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+
+import com.poc.kafka.model.PersonModel;
+
+/**
+ * Produce then consume a batch of PersonModel messages through an embedded
+ * broker with the JSON codec. Each operation is one message going through
+ * serialization, the broker and deserialization.
+ *
+ * @author kali
+ *
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EndToEndBenchmark {
+
+	private static final String TOPIC = "benchmark.t";
+
+	private static final int BATCH = 1000;
+
+	private KafkaEmbedded embeddedKafka;
+
+	private DefaultKafkaProducerFactory<String, PersonModel> producerFactory;
+
+	private KafkaTemplate<String, PersonModel> template;
+
+	private Consumer<String, PersonModel> consumer;
+
+	private PersonModel person;
+
+	@Setup
+	public void setUp() throws Exception {
+		embeddedKafka = new KafkaEmbedded(1, true, 1, TOPIC);
+		embeddedKafka.before();
+
+		producerFactory = new DefaultKafkaProducerFactory<>(
+				KafkaTestUtils.senderProps(embeddedKafka.getBrokersAsString()), new StringSerializer(),
+				new JsonSerializer<PersonModel>());
+		template = new KafkaTemplate<>(producerFactory);
+
+		Map<String, Object> consumerProperties = KafkaTestUtils.consumerProps("benchmark", "false", embeddedKafka);
+		consumerProperties.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+		consumer = new DefaultKafkaConsumerFactory<>(consumerProperties, new StringDeserializer(),
+				new JsonDeserializer<>(PersonModel.class)).createConsumer();
+		consumer.assign(Collections.singletonList(new TopicPartition(TOPIC, 0)));
+
+		person = new PersonModel("Roignant", "Cédric");
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		consumer.close();
+		producerFactory.destroy();
+		embeddedKafka.after();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public int produceAndConsume() {
+		for (int i = 0; i < BATCH; i++) {
+			template.send(TOPIC, person);
+		}
+		template.flush();
+		int received = 0;
+		while (received < BATCH) {
+			received += consumer.poll(100).count();
+		}
+		return received;
+	}
+
+}
@@ -0,0 +1,75 @@
+package com.poc.kafka.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+
+import com.poc.kafka.logging.MessageLogger;
+import com.poc.kafka.model.PersonModel;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * The per-message logging cost of the hot path, to be read with the gc
+ * profiler (-prof gc, as the benchmark profile does): the former eager
+ * toString() before a disabled logger, the disabled MessageLogger (the
+ * default) and a MessageLogger sampling one message out of 1000 into a logger
+ * without appender.
+ *
+ * @author kali
+ *
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageLoggingBenchmark {
+
+	private static final String TOPIC = "benchmark.t";
+
+	private final PersonModel person = new PersonModel("Roignant", "Cédric");
+
+	private Logger disabledLogger;
+
+	private MessageLogger disabledMessageLogger;
+
+	private MessageLogger sampledMessageLogger;
+
+	@Setup
+	public void setUp() {
+		disabledLogger = (Logger) LoggerFactory.getLogger("benchmark.disabled");
+		disabledLogger.setLevel(Level.WARN);
+		disabledMessageLogger = MessageLogger.disabled(disabledLogger);
+
+		Logger sampledLogger = (Logger) LoggerFactory.getLogger("benchmark.sampled");
+		sampledLogger.setLevel(Level.INFO);
+		sampledLogger.setAdditive(false);
+		sampledMessageLogger = new MessageLogger(sampledLogger, 1000, 0);
+	}
+
+	@Benchmark
+	public void eagerToString() {
+		disabledLogger.info("sending message='{}' to topic='{}'", person.toString(), TOPIC);
+	}
+
+	@Benchmark
+	public void disabled() {
+		disabledMessageLogger.log("sending message='{}' to topic='{}'", person, TOPIC);
+	}
+
+	@Benchmark
+	public void sampled() {
+		sampledMessageLogger.log("sending message='{}' to topic='{}'", person, TOPIC);
+	}
+
+}
@@ -0,0 +1,92 @@
+package com.poc.kafka.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.poc.kafka.consumer.ParallelRecordProcessor;
+import com.poc.kafka.consumer.VirtualThreads;
+
+/**
+ * Time to process a poll of records with a handler simulating a blocking
+ * call (a sleep of handlerMillis), on worker lanes (one platform thread per
+ * processor) and on a virtual thread per key in flight. The records of a poll
+ * have distinct keys, so the lanes are the bottleneck.
+ *
+ * The virtual executor needs the benchmark to run on Java 21 or later; on an
+ * older JDK it falls back to a platform pool of the same size as the lanes.
+ *
+ * @author kali
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParallelRecordProcessorBenchmark {
+
+	private static final TopicPartition PARTITION = new TopicPartition("benchmark.t", 0);
+
+	@Param({ "lanes", "virtual" })
+	public String executor;
+
+	@Param({ "1000" })
+	public int records;
+
+	@Param({ "1" })
+	public long handlerMillis;
+
+	private ParallelRecordProcessor processor;
+
+	private MockConsumer<String, String> consumer;
+
+	private long offset;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		int workers = Runtime.getRuntime().availableProcessors();
+		processor = "virtual".equals(executor)
+				? new ParallelRecordProcessor(VirtualThreads.newExecutor(workers, "benchmark-"),
+						ParallelRecordProcessor.Ordering.KEY, records)
+				: new ParallelRecordProcessor(workers, ParallelRecordProcessor.Ordering.KEY, records);
+		consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+		consumer.assign(Collections.singletonList(PARTITION));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		processor.shutdown();
+	}
+
+	@Benchmark
+	public void poll() throws InterruptedException {
+		List<ConsumerRecord<String, String>> batch = new ArrayList<>(records);
+		for (int i = 0; i < records; i++, offset++) {
+			batch.add(new ConsumerRecord<>(PARTITION.topic(), PARTITION.partition(), offset, "key" + i, "value"));
+		}
+		processor.process(batch, consumer, record -> Thread.sleep(handlerMillis));
+		processor.awaitCompletion(Collections.singletonList(PARTITION), 1, TimeUnit.MINUTES);
+	}
+
+}
@@ -0,0 +1,83 @@
+package com.poc.kafka.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import com.poc.kafka.model.PersonModel;
+import com.poc.kafka.serializer.PersonModelBinaryDeserializer;
+import com.poc.kafka.serializer.PersonModelBinarySerializer;
+
+/**
+ * Compares the JSON and the binary codec of PersonModel. With the GC profiler
+ * of the benchmark profile, gc.alloc.rate.norm gives the bytes allocated per
+ * op.
+ *
+ * @author kali
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PersonModelCodecBenchmark {
+
+	private static final String TOPIC = "benchmark.t";
+
+	private final JsonSerializer<PersonModel> jsonSerializer = new JsonSerializer<>();
+
+	private final JsonDeserializer<PersonModel> jsonDeserializer = new JsonDeserializer<>(PersonModel.class);
+
+	private final PersonModelBinarySerializer binarySerializer = new PersonModelBinarySerializer();
+
+	private final PersonModelBinaryDeserializer binaryDeserializer = new PersonModelBinaryDeserializer();
+
+	private PersonModel person;
+
+	private byte[] json;
+
+	private byte[] binary;
+
+	@Setup
+	public void setUp() {
+		person = new PersonModel("Roignant", "Cédric");
+		json = jsonSerializer.serialize(TOPIC, person);
+		binary = binarySerializer.serialize(TOPIC, person);
+	}
+
+	@Benchmark
+	public byte[] jsonSerialize() {
+		// The producer hands a fresh Headers to every record.
+		return jsonSerializer.serialize(TOPIC, new RecordHeaders(), person);
+	}
+
+	@Benchmark
+	public PersonModel jsonDeserialize() {
+		return jsonDeserializer.deserialize(TOPIC, json);
+	}
+
+	@Benchmark
+	public byte[] binarySerialize() {
+		return binarySerializer.serialize(TOPIC, person);
+	}
+
+	@Benchmark
+	public PersonModel binaryDeserialize() {
+		return binaryDeserializer.deserialize(TOPIC, binary);
+	}
+
+}
@@ -0,0 +1,36 @@
+package com.poc.kafka.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.poc.kafka.model.PersonModel;
+
+/**
+ * PersonModel.toString(), called for every message by the Sender and the
+ * Receiver logging.
+ *
+ * @author kali
+ *
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PersonModelToStringBenchmark {
+
+	private final PersonModel person = new PersonModel("Roignant", "Cédric");
+
+	@Benchmark
+	public String personToString() {
+		return person.toString();
+	}
+
+}
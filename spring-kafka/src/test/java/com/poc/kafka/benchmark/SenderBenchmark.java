@@ -0,0 +1,112 @@
+package com.poc.kafka.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.concurrent.ListenableFuture;
+
+import com.poc.kafka.logging.MessageLogger;
+import com.poc.kafka.metrics.KafkaMetrics;
+import com.poc.kafka.model.PersonModel;
+import com.poc.kafka.producer.PersonKeyExtractor;
+import com.poc.kafka.producer.Sender;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * The Sender send path on top of a MockProducer that acknowledges every record
+ * immediately, i.e. the cost of the Sender and the KafkaTemplate without any
+ * network. Per-message logging is disabled, as it is by default, and the
+ * Sender logger is raised to WARN so that no console output is part of the
+ * measure.
+ *
+ * @author kali
+ *
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SenderBenchmark {
+
+	private static final String TOPIC = "benchmark.t";
+
+	// The MockProducer keeps every record; clear it regularly to keep the heap flat.
+	private static final int HISTORY_SIZE = 10000;
+
+	private MockProducer<String, PersonModel> producer;
+
+	private Sender sender;
+
+	private PersonModel person;
+
+	private int sent;
+
+	@Setup
+	public void setUp() {
+		((Logger) LoggerFactory.getLogger(Sender.class)).setLevel(Level.WARN);
+
+		// The KafkaTemplate closes the producer after each send, which the producer
+		// of a DefaultKafkaProducerFactory ignores: so does this one.
+		producer = new MockProducer<String, PersonModel>(true, new StringSerializer(),
+				new JsonSerializer<PersonModel>()) {
+
+			@Override
+			public void close() {
+			}
+
+			@Override
+			public void close(long timeout, TimeUnit timeUnit) {
+			}
+
+		};
+		sender = new Sender();
+		ReflectionTestUtils.setField(sender, "kafkaTemplate", new KafkaTemplate<String, PersonModel>(() -> producer));
+		ReflectionTestUtils.setField(sender, "keyExtractor", new PersonKeyExtractor());
+		ReflectionTestUtils.setField(sender, "kafkaMetrics", new KafkaMetrics());
+		ReflectionTestUtils.setField(sender, "messageLogger",
+				MessageLogger.disabled(LoggerFactory.getLogger(Sender.class)));
+		ReflectionTestUtils.setField(sender, "topic", TOPIC);
+		ReflectionTestUtils.setField(sender, "maxInFlightSends", 1000);
+		sender.init();
+
+		person = new PersonModel("Roignant", "Cédric");
+	}
+
+	@Benchmark
+	public void send() {
+		sender.send(TOPIC, person);
+		clearHistory();
+	}
+
+	@Benchmark
+	public ListenableFuture<SendResult<String, PersonModel>> sendAsync() throws InterruptedException {
+		ListenableFuture<SendResult<String, PersonModel>> future = sender.sendAsync(TOPIC, person);
+		clearHistory();
+		return future;
+	}
+
+	private void clearHistory() {
+		if (++sent == HISTORY_SIZE) {
+			producer.clear();
+			sent = 0;
+		}
+	}
+
+}
@@ -0,0 +1,162 @@
+package com.poc.kafka.consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the batch limit, the restarts applying it, the given back records and
+ * the commits of the AdaptivePollController against a MockConsumer.
+ *
+ * @author kali
+ *
+ */
+public class AdaptivePollControllerTest {
+
+	private static final TopicPartition PARTITION = new TopicPartition("adaptive.t", 0);
+
+	private MockConsumer<String, String> consumer;
+
+	@Before
+	public void setUp() {
+		consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+		consumer.assign(Collections.singletonList(PARTITION));
+		consumer.updateBeginningOffsets(Collections.singletonMap(PARTITION, 0L));
+	}
+
+	@Test
+	public void testEveryPolledRecordIsProcessedAndTheLimitGrows() throws Exception {
+		AdaptivePollController controller = new AdaptivePollController(10, 1000, 10, 1000, 500, 30000, 0);
+		List<ConsumerRecord<String, String>> processed = new ArrayList<>();
+		// Where the poll left the consumer.
+		consumer.seek(PARTITION, 100);
+
+		controller.process(records(0, 100), consumer, processed::add);
+
+		// Nothing is given back: the consumer keeps its position.
+		assertThat(processed).hasSize(100);
+		assertThat(consumer.position(PARTITION)).isEqualTo(100);
+		assertThat(consumer.committed(PARTITION).offset()).isEqualTo(100);
+		assertThat(controller.getReturnedRecords()).isZero();
+
+		for (int i = 0; i < 20; i++) {
+			controller.process(records(0, 100), consumer, record -> {
+			});
+		}
+		assertThat(controller.getBatchLimit()).isGreaterThan(100);
+		assertThat(controller.getLimitDecreases()).isZero();
+	}
+
+	@Test
+	public void testOverrunHalvesTheLimitAndRestartsTheConsumers() throws Exception {
+		AdaptivePollController controller = new AdaptivePollController(1, 1000, 100, 100, 500, 30000, 0);
+		CountDownLatch restarted = new CountDownLatch(1);
+		controller.setRestarter(restarted::countDown);
+		assertThat(controller.consumerConfigs(Collections.emptyMap()))
+				.containsEntry(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 100);
+
+		controller.process(records(0, 10), consumer, record -> Thread.sleep(20));
+
+		// 20ms per record: the batch overran 100ms, the limit fits 5 records.
+		assertThat(consumer.committed(PARTITION).offset()).isEqualTo(10);
+		assertThat(controller.getLimitDecreases()).isEqualTo(1);
+		assertThat(controller.getBatchLimit()).isLessThanOrEqualTo(50);
+		assertThat(restarted.await(10, TimeUnit.SECONDS)).isTrue();
+		assertThat(controller.getRestarts()).isEqualTo(1);
+
+		// The restart creates consumers polling the new limit.
+		int limit = controller.getBatchLimit();
+		assertThat(controller.consumerConfigs(Collections.emptyMap()))
+				.containsEntry(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, limit);
+		assertThat(controller.getAppliedLimit()).isEqualTo(limit);
+		controller.close();
+	}
+
+	@Test
+	public void testGrowthDoesNotRestart() throws Exception {
+		AdaptivePollController controller = new AdaptivePollController(10, 1000, 100, 1000, 500, 30000, 0);
+		AtomicInteger restarts = new AtomicInteger();
+		controller.setRestarter(restarts::incrementAndGet);
+		controller.consumerConfigs(Collections.emptyMap());
+
+		// One fast batch: the limit grows by a quarter.
+		controller.process(records(0, 100), consumer, record -> {
+		});
+		assertThat(controller.getBatchLimit()).isEqualTo(125);
+		assertThat(controller.getRestarts()).isZero();
+
+		// Twice the applied limit waits for the consumers to be created again.
+		for (int i = 0; i < 10; i++) {
+			controller.process(records(0, 100), consumer, record -> {
+			});
+		}
+		assertThat(controller.getBatchLimit()).isGreaterThanOrEqualTo(200);
+		assertThat(controller.getAppliedLimit()).isEqualTo(100);
+		assertThat(controller.getRestarts()).isZero();
+		assertThat(restarts.get()).isZero();
+		controller.close();
+	}
+
+	@Test
+	public void testRecordsAfterAFailureAreGivenBack() throws Exception {
+		AdaptivePollController controller = new AdaptivePollController(10, 1000, 100, 1000, 500, 30000, 0);
+		consumer.seek(PARTITION, 10);
+		try {
+			controller.process(records(0, 10), consumer, record -> {
+				if (record.offset() == 3) {
+					throw new IllegalStateException("failed");
+				}
+			});
+			fail("The failure must reach the error handler");
+		} catch (IllegalStateException e) {
+			assertThat(e).hasMessage("failed");
+		}
+		assertThat(consumer.committed(PARTITION).offset()).isEqualTo(4);
+		assertThat(consumer.position(PARTITION)).isEqualTo(4);
+		assertThat(controller.getReturnedRecords()).isEqualTo(6);
+	}
+
+	@Test
+	public void testConsumerConfigsCarryTheDecisions() {
+		AdaptivePollController controller = new AdaptivePollController(10, 2000, 500, 1000, 500, 30000, 0);
+
+		Map<String, Object> props = controller
+				.consumerConfigs(Collections.singletonMap(ConsumerConfig.GROUP_ID_CONFIG, "json"));
+
+		assertThat(props).containsEntry(ConsumerConfig.GROUP_ID_CONFIG, "json")
+				.containsEntry(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 500)
+				.containsEntry(ConsumerConfig.MAX_POLL_INTERVAL_MS_CONFIG, 30000)
+				.containsEntry(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, 250)
+				.doesNotContainKey(ConsumerConfig.FETCH_MIN_BYTES_CONFIG);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPollIntervalMustExceedTwiceTheTargetCycle() {
+		new AdaptivePollController(10, 2000, 500, 20000, 500, 30000, 0);
+	}
+
+	private static List<ConsumerRecord<String, String>> records(long from, int count) {
+		List<ConsumerRecord<String, String>> records = new ArrayList<>();
+		for (long offset = from; offset < from + count; offset++) {
+			records.add(new ConsumerRecord<>(PARTITION.topic(), PARTITION.partition(), offset, "key" + offset,
+					"value" + offset));
+		}
+		return records;
+	}
+
+}
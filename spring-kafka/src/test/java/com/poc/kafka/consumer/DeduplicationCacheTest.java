@@ -0,0 +1,74 @@
+package com.poc.kafka.consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.Test;
+
+import com.poc.kafka.model.PersonModel;
+import com.poc.kafka.serializer.FailSafeDeserializer;
+
+/**
+ * Checks the duplicate detection, the bounded size and the filter identities of
+ * the DeduplicationCache.
+ *
+ * @author kali
+ *
+ */
+public class DeduplicationCacheTest {
+
+	@Test
+	public void testDuplicates() {
+		DeduplicationCache cache = new DeduplicationCache(1000, 60, TimeUnit.SECONDS);
+		for (long id = 1; id <= 500; id++) {
+			assertThat(cache.add(id)).isTrue();
+		}
+		for (long id = 1; id <= 500; id++) {
+			assertThat(cache.add(id)).isFalse();
+		}
+		assertThat(cache.getMisses()).isEqualTo(500);
+		assertThat(cache.getHits()).isEqualTo(500);
+	}
+
+	@Test
+	public void testBounded() {
+		DeduplicationCache cache = new DeduplicationCache(1024, 60, TimeUnit.SECONDS);
+		assertThat(cache.getCapacity()).isEqualTo(1024);
+		for (long id = 1; id <= 100_000; id++) {
+			cache.add(id);
+		}
+		assertThat(cache.getEvictions()).isGreaterThanOrEqualTo(100_000 - 1024);
+		// The most recent identities are still there.
+		assertThat(cache.add(100_000)).isFalse();
+	}
+
+	@Test
+	public void testFilter() {
+		DeduplicationFilter filter = new DeduplicationFilter(
+				new DeduplicationCache(1000, 60, TimeUnit.SECONDS));
+		PersonModel person = new PersonModel("Roignant", "Cédric");
+		PersonModel other = new PersonModel("Roignant", "Cédric");
+		other.setDate(new Date(person.getDate().getTime() + 1));
+
+		assertThat(filter.filter(new ConsumerRecord<>("dedup.t", 0, 0, "k", person))).isFalse();
+		// A redelivery of the same record, even at another offset, is discarded.
+		assertThat(filter.filter(new ConsumerRecord<>("dedup.t", 1, 5, "k", person))).isTrue();
+		assertThat(filter.filter(new ConsumerRecord<>("dedup.t", 0, 1, "k", other))).isFalse();
+		assertThat(filter.filter(new ConsumerRecord<>("dedup.t", 0, 2, "k2", person))).isFalse();
+	}
+
+	@Test
+	public void testUndeserializableRecordsAreNotFiltered() {
+		DeduplicationFilter filter = new DeduplicationFilter(
+				new DeduplicationCache(1000, 60, TimeUnit.SECONDS));
+		for (long offset = 0; offset < 2; offset++) {
+			ConsumerRecord<String, PersonModel> record = new ConsumerRecord<>("dedup.t", 0, offset, "k", null);
+			record.headers().add(FailSafeDeserializer.EXCEPTION_HEADER, new byte[0]);
+			assertThat(filter.filter(record)).isFalse();
+		}
+	}
+
+}
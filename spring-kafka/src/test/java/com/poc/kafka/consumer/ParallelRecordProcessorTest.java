@@ -0,0 +1,101 @@
+package com.poc.kafka.consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the per-key ordering and the contiguous offset commits of the
+ * ParallelRecordProcessor against a MockConsumer.
+ *
+ * @author kali
+ *
+ */
+public class ParallelRecordProcessorTest {
+
+	private static final TopicPartition PARTITION = new TopicPartition("parallel.t", 0);
+
+	private ParallelRecordProcessor processor;
+
+	private MockConsumer<String, String> consumer;
+
+	@Before
+	public void setUp() {
+		consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+		consumer.assign(Collections.singletonList(PARTITION));
+	}
+
+	@After
+	public void tearDown() {
+		processor.shutdown();
+	}
+
+	@Test
+	public void testOnlyContiguousOffsetsAreCommitted() throws Exception {
+		processor = new ParallelRecordProcessor(4, ParallelRecordProcessor.Ordering.KEY, 1000);
+		assertContiguousCommitsAndKeyOrdering();
+	}
+
+	@Test
+	public void testOnlyContiguousOffsetsAreCommittedWithChainedKeys() throws Exception {
+		processor = new ParallelRecordProcessor(Executors.newCachedThreadPool(), ParallelRecordProcessor.Ordering.KEY,
+				1000);
+		assertContiguousCommitsAndKeyOrdering();
+	}
+
+	private void assertContiguousCommitsAndKeyOrdering() throws Exception {
+		CountDownLatch blocker = new CountDownLatch(1);
+		// The records before offset 5, submitted before it whatever their lane.
+		CountDownLatch beforeStuck = new CountDownLatch(5);
+		Map<String, List<Long>> processed = new ConcurrentHashMap<>();
+		List<ConsumerRecord<String, String>> records = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			records.add(new ConsumerRecord<>(PARTITION.topic(), PARTITION.partition(), i, "key" + (i % 10),
+					"value" + i));
+		}
+
+		processor.process(records, consumer, record -> {
+			if (record.offset() == 5) {
+				blocker.await();
+			}
+			processed.computeIfAbsent(record.key(), k -> Collections.synchronizedList(new ArrayList<>()))
+					.add(record.offset());
+			if (record.offset() < 5) {
+				beforeStuck.countDown();
+			}
+		});
+
+		// Offset 5 is stuck, so are the records sharing its key: whatever completed
+		// after it, nothing at or above offset 5 may be committed.
+		assertThat(beforeStuck.await(10, TimeUnit.SECONDS)).isTrue();
+		processor.commitCompleted(consumer);
+		assertThat(consumer.committed(PARTITION).offset()).isEqualTo(5);
+
+		blocker.countDown();
+		assertThat(processor.awaitCompletion(Collections.singletonList(PARTITION), 10, TimeUnit.SECONDS)).isTrue();
+		processor.commitCompleted(consumer);
+		assertThat(consumer.committed(PARTITION).offset()).isEqualTo(100);
+
+		// Each key was processed in offset order.
+		for (List<Long> offsets : processed.values()) {
+			assertThat(offsets).isSorted();
+		}
+		assertThat(processor.getInFlightCount()).isEqualTo(0);
+	}
+
+}
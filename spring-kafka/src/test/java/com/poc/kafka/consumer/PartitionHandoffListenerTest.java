@@ -0,0 +1,101 @@
+package com.poc.kafka.consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that the PartitionHandoffListener commits the records completed
+ * before a revoke, and only those, and calls the warmers on assign.
+ *
+ * @author kali
+ *
+ */
+public class PartitionHandoffListenerTest {
+
+	private static final TopicPartition PARTITION = new TopicPartition("handoff.t", 0);
+
+	private ParallelRecordProcessor processor;
+
+	private MockConsumer<String, String> consumer;
+
+	@Before
+	public void setUp() {
+		processor = new ParallelRecordProcessor(4, ParallelRecordProcessor.Ordering.KEY, 1000);
+		consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+		consumer.assign(Collections.singletonList(PARTITION));
+	}
+
+	@After
+	public void tearDown() {
+		processor.shutdown();
+	}
+
+	@Test
+	public void testRevokeWaitsForTheRecordsInFlight() throws Exception {
+		PartitionHandoffListener listener = new PartitionHandoffListener(processor, 5000, null);
+		CountDownLatch started = new CountDownLatch(1);
+		processor.process(records(), consumer, record -> {
+			if (record.offset() == 10) {
+				started.countDown();
+				Thread.sleep(200);
+			}
+		});
+		assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+		listener.onPartitionsRevokedBeforeCommit(consumer, Collections.singletonList(PARTITION));
+
+		assertThat(consumer.committed(PARTITION).offset()).isEqualTo(100);
+	}
+
+	@Test
+	public void testRevokeCommitsOnlyTheCompletedOffsetsAfterTheTimeout() throws Exception {
+		PartitionHandoffListener listener = new PartitionHandoffListener(processor, 100, null);
+		CountDownLatch blocker = new CountDownLatch(1);
+		processor.process(records(), consumer, record -> {
+			if (record.offset() == 10) {
+				blocker.await();
+			}
+		});
+
+		listener.onPartitionsRevokedBeforeCommit(consumer, Collections.singletonList(PARTITION));
+		blocker.countDown();
+
+		assertThat(consumer.committed(PARTITION).offset()).isEqualTo(10);
+	}
+
+	@Test
+	public void testAssignCallsTheWarmers() {
+		List<TopicPartition> warmed = new ArrayList<>();
+		PartitionHandoffListener listener = new PartitionHandoffListener(null, 5000,
+				Collections.singletonList((c, partitions) -> warmed.addAll(partitions)));
+
+		Collection<TopicPartition> partitions = Collections.singletonList(PARTITION);
+		listener.onPartitionsAssigned(consumer, partitions);
+
+		assertThat(warmed).containsExactly(PARTITION);
+	}
+
+	private static List<ConsumerRecord<String, String>> records() {
+		List<ConsumerRecord<String, String>> records = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			records.add(new ConsumerRecord<>(PARTITION.topic(), PARTITION.partition(), i, "key" + (i % 10),
+					"value" + i));
+		}
+		return records;
+	}
+
+}
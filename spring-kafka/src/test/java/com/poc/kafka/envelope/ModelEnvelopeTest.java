@@ -0,0 +1,100 @@
+package com.poc.kafka.envelope;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.Test;
+
+import com.poc.kafka.model.Model;
+import com.poc.kafka.model.PersonModel;
+
+/**
+ * Round trips of several model types through the envelope, and their dispatch
+ * to typed handlers.
+ *
+ * @author kali
+ *
+ */
+public class ModelEnvelopeTest {
+
+	public static class AddressModel extends Model {
+
+		private String city;
+
+		public String getCity() {
+			return city;
+		}
+
+		public void setCity(String city) {
+			this.city = city;
+		}
+
+	}
+
+	private final ModelCodecRegistry registry = new ModelCodecRegistry().register(1, new PersonModelBinaryCodec())
+			.register(300, new JsonModelCodec<>(AddressModel.class, (byte) 2));
+
+	private final ModelEnvelopeSerializer serializer = new ModelEnvelopeSerializer(registry);
+
+	private final ModelEnvelopeDeserializer deserializer = new ModelEnvelopeDeserializer(registry);
+
+	@Test
+	public void testRoundTripOfSeveralTypes() {
+		PersonModel person = new PersonModel("Roignant", "Cédric");
+		AddressModel address = new AddressModel();
+		address.setCity("Nantes");
+
+		byte[] personData = serializer.serialize("t", person);
+		byte[] addressData = serializer.serialize("t", address);
+
+		assertThat(personData[0]).isEqualTo(ModelEnvelopeSerializer.MAGIC);
+		assertThat(addressData[1] & 0xFF).isEqualTo(1);
+		assertThat(addressData[2] & 0xFF).isEqualTo(44);
+		assertThat(addressData[3]).isEqualTo((byte) 2);
+
+		PersonModel readPerson = (PersonModel) deserializer.deserialize("t", personData);
+		assertThat(readPerson.getName()).isEqualTo(person.getName());
+		assertThat(readPerson.getLastname()).isEqualTo(person.getLastname());
+		assertThat(readPerson.getDate()).isEqualTo(person.getDate());
+		assertThat(((AddressModel) deserializer.deserialize("t", addressData)).getCity()).isEqualTo("Nantes");
+	}
+
+	@Test(expected = SerializationException.class)
+	public void testUnknownTypeIdFails() {
+		byte[] data = serializer.serialize("t", new PersonModel("a", "b"));
+		data[2] = 7;
+		deserializer.deserialize("t", data);
+	}
+
+	@Test(expected = SerializationException.class)
+	public void testUnregisteredTypeFails() {
+		serializer.serialize("t", new Model());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTypeIdCannotBeReused() {
+		registry.register(1, new JsonModelCodec<>(Model.class, (byte) 1));
+	}
+
+	@Test
+	public void testDispatchToTypedHandlers() throws Exception {
+		List<String> handled = new ArrayList<>();
+		ModelDispatcher dispatcher = new ModelDispatcher()
+				.on(PersonModel.class, record -> handled.add(record.value().getName()))
+				.on(AddressModel.class, record -> handled.add(record.value().getCity()));
+		AddressModel address = new AddressModel();
+		address.setCity("Nantes");
+
+		dispatcher.dispatch(new ConsumerRecord<>("t", 0, 0, "k", new PersonModel("Roignant", "Cédric")));
+		dispatcher.dispatch(new ConsumerRecord<>("t", 0, 1, "k", address));
+		dispatcher.dispatch(new ConsumerRecord<>("t", 0, 2, "k", new Model()));
+
+		assertThat(handled).containsExactly("Roignant", "Nantes");
+		assertThat(dispatcher.getSkipped()).isEqualTo(1);
+	}
+
+}
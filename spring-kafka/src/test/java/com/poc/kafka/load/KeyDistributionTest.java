@@ -0,0 +1,54 @@
+package com.poc.kafka.load;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the range and the skew of the key distributions of the load
+ * generator.
+ *
+ * @author kali
+ *
+ */
+public class KeyDistributionTest {
+
+	private static final int DRAWS = 100000;
+
+	@Test
+	public void testUniform() {
+		int[] counts = draw(KeyDistribution.uniform(10));
+
+		for (int count : counts) {
+			assertThat(count).isBetween(DRAWS / 10 - 1000, DRAWS / 10 + 1000);
+		}
+	}
+
+	@Test
+	public void testZipfianFavoursTheFirstKeys() {
+		int[] counts = draw(KeyDistribution.zipfian(1000, 0.99));
+
+		// With an exponent close to 1, key 0 is drawn about twice as often as key 1
+		// and ten times as often as key 9.
+		assertThat(counts[0]).isGreaterThan(counts[1]);
+		assertThat(counts[1]).isGreaterThan(counts[9]);
+		assertThat((double) counts[0] / counts[9]).isBetween(6.0, 15.0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownDistribution() {
+		KeyDistribution.fromName("gaussian", 10, 1);
+	}
+
+	private static int[] draw(KeyDistribution distribution) {
+		Random random = new Random(42);
+		int[] counts = new int[distribution.getKeys()];
+		for (int i = 0; i < DRAWS; i++) {
+			counts[distribution.next(random)]++;
+		}
+		return counts;
+	}
+
+}
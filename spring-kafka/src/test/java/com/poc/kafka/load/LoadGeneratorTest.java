@@ -0,0 +1,25 @@
+package com.poc.kafka.load;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+/**
+ * Checks which consumer lag entries the load generator counts for its topic.
+ *
+ * @author kali
+ *
+ */
+public class LoadGeneratorTest {
+
+	@Test
+	public void testOnlyThePartitionsOfTheTopicCount() {
+		assertThat(LoadGenerator.isPartitionOf("jsonKafka-0", "jsonKafka")).isTrue();
+		assertThat(LoadGenerator.isPartitionOf("jsonKafka-12", "jsonKafka")).isTrue();
+		assertThat(LoadGenerator.isPartitionOf("jsonKafka-retry-1s-0", "jsonKafka")).isFalse();
+		assertThat(LoadGenerator.isPartitionOf("jsonKafka-dlt-0", "jsonKafka")).isFalse();
+		assertThat(LoadGenerator.isPartitionOf("jsonKafkaBatch-0", "jsonKafka")).isFalse();
+		assertThat(LoadGenerator.isPartitionOf("jsonKafka-", "jsonKafka")).isFalse();
+	}
+
+}
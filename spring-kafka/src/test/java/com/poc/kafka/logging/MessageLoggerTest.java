@@ -0,0 +1,73 @@
+package com.poc.kafka.logging;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+
+/**
+ * Checks the sampling and the rate limit of the MessageLogger.
+ *
+ * @author kali
+ *
+ */
+public class MessageLoggerTest {
+
+	private Logger logger;
+
+	private ListAppender<ILoggingEvent> appender;
+
+	@Before
+	public void setUp() {
+		logger = (Logger) LoggerFactory.getLogger(MessageLoggerTest.class);
+		logger.setLevel(Level.INFO);
+		logger.setAdditive(false);
+		logger.detachAndStopAllAppenders();
+		appender = new ListAppender<>();
+		appender.start();
+		logger.addAppender(appender);
+	}
+
+	@Test
+	public void testDisabled() {
+		MessageLogger messageLogger = MessageLogger.disabled(logger);
+		for (int i = 0; i < 100; i++) {
+			messageLogger.log("message='{}' topic='{}'", i, "t");
+		}
+		assertThat(appender.list).isEmpty();
+	}
+
+	@Test
+	public void testSampled() {
+		MessageLogger messageLogger = new MessageLogger(logger, 10, 0);
+		for (int i = 1; i <= 100; i++) {
+			messageLogger.log("message='{}' topic='{}'", i, "t");
+		}
+		assertThat(appender.list).hasSize(10);
+		assertThat(appender.list.get(0).getFormattedMessage()).isEqualTo("message='10' topic='t'");
+	}
+
+	@Test
+	public void testRateLimited() {
+		MessageLogger messageLogger = new MessageLogger(logger, 1, 5);
+		for (int i = 0; i < 100; i++) {
+			messageLogger.log("message='{}' topic='{}'", i, "t");
+		}
+		// The loop may straddle two seconds.
+		assertThat(appender.list.size()).isBetween(5, 10);
+	}
+
+	@Test
+	public void testLoggerLevel() {
+		logger.setLevel(Level.WARN);
+		new MessageLogger(logger, 1, 0).log("message='{}' topic='{}'", 1, "t");
+		assertThat(appender.list).isEmpty();
+	}
+
+}
@@ -0,0 +1,48 @@
+package com.poc.kafka.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import org.junit.Test;
+
+/**
+ * Checks the bucket layout and the percentiles of the LatencyHistogram.
+ *
+ * @author kali
+ *
+ */
+public class LatencyHistogramTest {
+
+	@Test
+	public void testBucketsCoverEveryValue() {
+		for (long value : new long[] { 0, 1, 7, 8, 9, 15, 16, 1000, 123456789, Long.MAX_VALUE }) {
+			int index = LatencyHistogram.index(value);
+			assertThat(LatencyHistogram.upperBound(index)).isGreaterThanOrEqualTo(value);
+			if (index > 0) {
+				assertThat(LatencyHistogram.upperBound(index - 1)).isLessThan(value);
+			}
+		}
+	}
+
+	@Test
+	public void testPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int micros = 1; micros <= 10000; micros++) {
+			histogram.recordMicros(micros);
+		}
+		assertThat(histogram.getCount()).isEqualTo(10000);
+		assertThat(histogram.getMaxMicros()).isEqualTo(10000);
+		assertThat(histogram.getMeanMicros()).isCloseTo(5000.5, within(0.01));
+		// Buckets are 1/8 of a power of two wide.
+		assertThat(histogram.getPercentileMicros(50)).isBetween(5000L, 5000L + 5000 / 8);
+		assertThat(histogram.getPercentileMicros(99)).isBetween(9900L, 10000L);
+	}
+
+	@Test
+	public void testEmpty() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertThat(histogram.getPercentileMicros(99)).isEqualTo(0);
+		assertThat(histogram.getMeanMicros()).isEqualTo(0);
+	}
+
+}
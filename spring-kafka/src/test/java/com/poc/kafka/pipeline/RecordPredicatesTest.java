@@ -0,0 +1,55 @@
+package com.poc.kafka.pipeline;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.Test;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import com.poc.kafka.model.PersonModel;
+
+/**
+ * Checks the key, header and JSON field filters of the pass-through stage on
+ * the bytes written by the JSON serializer.
+ *
+ * @author kali
+ *
+ */
+public class RecordPredicatesTest {
+
+	private final JsonSerializer<PersonModel> serializer = new JsonSerializer<>();
+
+	@Test
+	public void testKeyPrefix() {
+		assertThat(RecordPredicates.keyPrefix("Roignant:").test(record("Roignant:Cédric", "Roignant", "Cédric")))
+				.isTrue();
+		assertThat(RecordPredicates.keyPrefix("Roignant:").test(record("Dupont:Jean", "Dupont", "Jean"))).isFalse();
+	}
+
+	@Test
+	public void testHeader() {
+		ConsumerRecord<String, byte[]> record = record("k", "Roignant", "Cédric");
+		record.headers().add("region", "eu".getBytes(StandardCharsets.UTF_8));
+
+		assertThat(RecordPredicates.header("region", "eu").test(record)).isTrue();
+		assertThat(RecordPredicates.header("region", "us").test(record)).isFalse();
+		assertThat(RecordPredicates.header("country", "eu").test(record)).isFalse();
+	}
+
+	@Test
+	public void testJsonFieldMatchesTheWholeValueOfTheField() {
+		ConsumerRecord<String, byte[]> record = record("k", "Roignant", "Cédric");
+
+		assertThat(RecordPredicates.jsonField("name", "Roignant").test(record)).isTrue();
+		assertThat(RecordPredicates.jsonField("lastname", "Cédric").test(record)).isTrue();
+		assertThat(RecordPredicates.jsonField("name", "Roig").test(record)).isFalse();
+		assertThat(RecordPredicates.jsonField("name", "Cédric").test(record)).isFalse();
+	}
+
+	private ConsumerRecord<String, byte[]> record(String key, String name, String lastname) {
+		return new ConsumerRecord<>("t", 0, 0, key, serializer.serialize("t", new PersonModel(name, lastname)));
+	}
+
+}
@@ -0,0 +1,70 @@
+package com.poc.kafka.producer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the partition mapping of the PersonKeyPartitioner without a broker.
+ *
+ * @author kali
+ *
+ */
+public class PersonKeyPartitionerTest {
+
+	private static final String TOPIC = "partitioner.t";
+	private static final int PARTITIONS = 6;
+
+	private PersonKeyPartitioner partitioner;
+
+	private Cluster cluster;
+
+	@Before
+	public void setUp() {
+		partitioner = new PersonKeyPartitioner();
+		partitioner.configure(Collections.singletonMap(PersonKeyPartitioner.HOT_KEYS_CONFIG, "hot1:a, hot2:b"));
+
+		Node node = new Node(0, "localhost", 9092);
+		List<PartitionInfo> partitions = new ArrayList<>();
+		for (int i = 0; i < PARTITIONS; i++) {
+			partitions.add(new PartitionInfo(TOPIC, i, node, new Node[] { node }, new Node[] { node }));
+		}
+		cluster = new Cluster("cluster", Collections.singletonList(node), partitions, Collections.emptySet(),
+				Collections.emptySet());
+	}
+
+	@Test
+	public void testHotKeysArePinnedOnTheirOwnPartition() {
+		assertThat(partition("hot1:a")).isEqualTo(0);
+		assertThat(partition("hot2:b")).isEqualTo(1);
+	}
+
+	@Test
+	public void testRegularKeysAreStableAndAvoidHotPartitions() {
+		Set<Integer> used = new HashSet<>();
+		for (int i = 0; i < 1000; i++) {
+			String key = "name" + i + ":lastname" + i;
+			int partition = partition(key);
+			assertThat(partition).isEqualTo(partition(key));
+			assertThat(partition).isBetween(2, PARTITIONS - 1);
+			used.add(partition);
+		}
+		assertThat(used).hasSize(PARTITIONS - 2);
+	}
+
+	private int partition(String key) {
+		return partitioner.partition(TOPIC, key, key.getBytes(StandardCharsets.UTF_8), null, null, cluster);
+	}
+
+}
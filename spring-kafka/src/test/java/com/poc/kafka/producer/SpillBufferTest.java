@@ -0,0 +1,169 @@
+package com.poc.kafka.producer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.kafka.clients.producer.RecordMetadata;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks the ordering, the segment rolling, the restart, the retention and the
+ * acknowledgements of the SpillBuffer.
+ *
+ * @author kali
+ *
+ */
+public class SpillBufferTest {
+
+	private static final String TOPIC = "spill.t";
+
+	// Room for a few records per segment.
+	private static final int SEGMENT_BYTES = 256;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRecordsAreReplayedInOrderAcrossSegments() throws Exception {
+		SpillBuffer buffer = new SpillBuffer(folder.getRoot(), SEGMENT_BYTES, 100, 60000);
+		for (int i = 0; i < 20; i++) {
+			assertThat(buffer.append(TOPIC, "key" + i, value(i))).isTrue();
+		}
+		assertThat(buffer.getSegmentCount()).isGreaterThan(1);
+
+		int expected = 0;
+		while (!buffer.isEmpty()) {
+			List<SpillBuffer.SpilledRecord> records = buffer.peek(3);
+			for (SpillBuffer.SpilledRecord record : records) {
+				assertThat(record.getTopic()).isEqualTo(TOPIC);
+				assertThat(record.getKey()).isEqualTo("key" + expected);
+				assertThat(record.getValue()).isEqualTo(value(expected));
+				expected++;
+			}
+			buffer.commit(records);
+		}
+		assertThat(expected).isEqualTo(20);
+		assertThat(buffer.getSegmentCount()).isEqualTo(1);
+		assertThat(folder.getRoot().listFiles()).hasSize(1);
+	}
+
+	@Test
+	public void testReopenResumesAfterTheLastCommittedRecord() throws Exception {
+		SpillBuffer buffer = new SpillBuffer(folder.getRoot(), SEGMENT_BYTES, 100, 60000);
+		for (int i = 0; i < 10; i++) {
+			buffer.append(TOPIC, null, value(i));
+		}
+		buffer.commit(buffer.peek(4));
+		// A peeked but uncommitted record is replayed after the restart.
+		buffer.peek(2);
+		buffer.close();
+
+		SpillBuffer reopened = new SpillBuffer(folder.getRoot(), SEGMENT_BYTES, 100, 60000);
+		assertThat(reopened.getPending()).isEqualTo(6);
+		List<SpillBuffer.SpilledRecord> records = reopened.peek(100);
+		assertThat(records).hasSize(6);
+		assertThat(records.get(0).getKey()).isNull();
+		assertThat(records.get(0).getValue()).isEqualTo(value(4));
+
+		// Appends go after the records left by the previous run.
+		reopened.append(TOPIC, null, value(10));
+		records = reopened.peek(100);
+		assertThat(records).hasSize(7);
+		assertThat(records.get(6).getValue()).isEqualTo(value(10));
+	}
+
+	@Test
+	public void testAppendIfPendingOnlyAppendsBehindSpilledRecords() throws Exception {
+		SpillBuffer buffer = new SpillBuffer(folder.getRoot(), SEGMENT_BYTES, 100, 60000);
+		assertThat(buffer.appendIfPending(TOPIC, "key", value(0), null)).isFalse();
+		buffer.append(TOPIC, "key", value(1));
+		assertThat(buffer.appendIfPending(TOPIC, "key", value(2), null)).isTrue();
+		buffer.commit(buffer.peek(100));
+		assertThat(buffer.appendIfPending(TOPIC, "key", value(3), null)).isFalse();
+	}
+
+	@Test
+	public void testRetention() throws Exception {
+		SpillBuffer buffer = new SpillBuffer(folder.getRoot(), SEGMENT_BYTES, 2, 50);
+		int appended = 0;
+		while (buffer.append(TOPIC, "key", value(appended))) {
+			appended++;
+		}
+		assertThat(buffer.getRefused()).isEqualTo(1);
+		assertThat(buffer.getSegmentCount()).isEqualTo(2);
+
+		Thread.sleep(100);
+		assertThat(buffer.expire()).isEqualTo(appended);
+		assertThat(buffer.isEmpty()).isTrue();
+		assertThat(buffer.getExpired()).isEqualTo(appended);
+		assertThat(buffer.append(TOPIC, "key", value(0))).isTrue();
+		assertThat(new File(folder.getRoot(), "spill-00000000000000000002.log")).exists();
+	}
+
+	@Test
+	public void testAcknowledgementsFollowTheirRecords() throws Exception {
+		SpillBuffer buffer = new SpillBuffer(folder.getRoot(), SEGMENT_BYTES, 100, 60000);
+		buffer.append(TOPIC, null, value(0));
+		buffer.commit(buffer.peek(1));
+		List<String> outcomes = new ArrayList<>();
+		buffer.append(TOPIC, null, value(1));
+		buffer.append(TOPIC, null, value(2), acknowledgement(outcomes, "2"));
+		buffer.append(TOPIC, null, value(3));
+		buffer.append(TOPIC, null, value(4), acknowledgement(outcomes, "4"));
+
+		List<SpillBuffer.SpilledRecord> records = buffer.peek(100);
+		assertThat(records).hasSize(4);
+		assertThat(records.get(0).getAcknowledgement()).isNull();
+		assertThat(records.get(2).getAcknowledgement()).isNull();
+		records.get(1).getAcknowledgement().replayed(null);
+		buffer.commit(records.subList(0, 2));
+
+		records = buffer.peek(100);
+		assertThat(records).hasSize(2);
+		assertThat(records.get(0).getAcknowledgement()).isNull();
+		assertThat(records.get(1).getAcknowledgement()).isNotNull();
+		assertThat(outcomes).containsExactly("2 replayed");
+	}
+
+	@Test
+	public void testExpiredRecordsAreAcknowledged() throws Exception {
+		SpillBuffer buffer = new SpillBuffer(folder.getRoot(), SEGMENT_BYTES, 100, 50);
+		List<String> outcomes = new ArrayList<>();
+		buffer.append(TOPIC, null, value(0), acknowledgement(outcomes, "0"));
+		buffer.append(TOPIC, null, value(1), acknowledgement(outcomes, "1"));
+
+		Thread.sleep(100);
+		assertThat(buffer.expire()).isEqualTo(2);
+		assertThat(outcomes).containsExactly("0 expired", "1 expired");
+
+		buffer.append(TOPIC, null, value(2), acknowledgement(outcomes, "2"));
+		assertThat(buffer.peek(100).get(0).getAcknowledgement()).isNotNull();
+	}
+
+	private static SpillBuffer.Acknowledgement acknowledgement(List<String> outcomes, String name) {
+		return new SpillBuffer.Acknowledgement() {
+
+			@Override
+			public void replayed(RecordMetadata metadata) {
+				outcomes.add(name + " replayed");
+			}
+
+			@Override
+			public void expired() {
+				outcomes.add(name + " expired");
+			}
+		};
+	}
+
+	private static byte[] value(int i) {
+		return ("value" + i).getBytes(StandardCharsets.UTF_8);
+	}
+
+}
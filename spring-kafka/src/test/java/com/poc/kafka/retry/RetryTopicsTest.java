@@ -0,0 +1,169 @@
+package com.poc.kafka.retry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import com.poc.kafka.metrics.KafkaMetrics;
+import com.poc.kafka.model.PersonModel;
+import com.poc.kafka.serializer.FailSafeDeserializer;
+
+/**
+ * Checks the progression of a failing record through the retry tiers, the
+ * routing of undeserializable records and the delay gate, without a broker.
+ *
+ * @author kali
+ *
+ */
+public class RetryTopicsTest {
+
+	private static final String TOPIC = "retry.t";
+
+	private MockProducer<String, byte[]> producer;
+
+	private RetryForwarder forwarder;
+
+	@Before
+	public void setUp() {
+		// The KafkaTemplate closes the producer after each send.
+		producer = new MockProducer<String, byte[]>(true, new StringSerializer(), new ByteArraySerializer()) {
+
+			@Override
+			public void close() {
+			}
+
+			@Override
+			public void close(long timeout, TimeUnit timeUnit) {
+			}
+
+		};
+		RetryTopics retryTopics = new RetryTopics(Collections.singletonList(TOPIC), new long[] { 1000, 30000 });
+		forwarder = new RetryForwarder(retryTopics, new KafkaTemplate<String, byte[]>(() -> producer),
+				new JsonSerializer<PersonModel>(), new KafkaMetrics(), 1000);
+	}
+
+	@Test
+	public void testTopicNames() {
+		RetryTopics retryTopics = new RetryTopics(Arrays.asList("a", "b"), new long[] { 1000, 30000, 250 });
+		assertThat(retryTopics.getRetryTopicNames()).containsExactly("a-retry-1s", "a-retry-30s", "a-retry-250ms",
+				"b-retry-1s", "b-retry-30s", "b-retry-250ms");
+		assertThat(retryTopics.getAllTopicNames()).contains("a-dlt", "b-dlt").hasSize(8);
+	}
+
+	@Test
+	public void testTiers() {
+		ConsumerRecord<String, PersonModel> record = new ConsumerRecord<>(TOPIC, 1, 42, "key",
+				new PersonModel("Roignant", "Cédric"));
+		long start = System.currentTimeMillis();
+		forwarder.forward(record, new IllegalStateException("down"));
+		ProducerRecord<String, byte[]> first = producer.history().get(0);
+		assertThat(first.topic()).isEqualTo("retry.t-retry-1s");
+		assertThat(first.key()).isEqualTo("key");
+		assertThat(intHeader(first, RetryHeaders.ATTEMPTS)).isEqualTo(1);
+		assertThat(ByteBuffer.wrap(first.headers().lastHeader(RetryHeaders.DUE).value()).getLong())
+				.isGreaterThanOrEqualTo(start + 1000);
+		assertThat(new String(first.headers().lastHeader(RetryHeaders.EXCEPTION).value(), StandardCharsets.UTF_8))
+				.contains("down");
+
+		forwarder.forward(received(first, 7), new IllegalStateException("still down"));
+		ProducerRecord<String, byte[]> second = producer.history().get(1);
+		assertThat(second.topic()).isEqualTo("retry.t-retry-30s");
+		assertThat(intHeader(second, RetryHeaders.ATTEMPTS)).isEqualTo(2);
+
+		forwarder.forward(received(second, 3), new IllegalStateException("gone"));
+		ProducerRecord<String, byte[]> third = producer.history().get(2);
+		assertThat(third.topic()).isEqualTo("retry.t-dlt");
+		assertThat(third.headers().lastHeader(RetryHeaders.DUE)).isNull();
+		// The original position is kept all along.
+		assertThat(new String(third.headers().lastHeader(RetryHeaders.ORIGINAL_TOPIC).value(),
+				StandardCharsets.UTF_8)).isEqualTo(TOPIC);
+		assertThat(intHeader(third, RetryHeaders.ORIGINAL_PARTITION)).isEqualTo(1);
+		assertThat(ByteBuffer.wrap(third.headers().lastHeader(RetryHeaders.ORIGINAL_OFFSET).value()).getLong())
+				.isEqualTo(42);
+	}
+
+	@Test
+	public void testPoisonGoesToDeadLetterTopic() {
+		byte[] poison = "{not json".getBytes(StandardCharsets.UTF_8);
+		ConsumerRecord<String, PersonModel> record = new ConsumerRecord<>(TOPIC, 0, 5, "key", null);
+		FailSafeDeserializer<PersonModel> deserializer = new FailSafeDeserializer<>(
+				new JsonDeserializer<>(PersonModel.class));
+		assertThat(deserializer.deserialize(TOPIC, record.headers(), poison)).isNull();
+		assertThat(FailSafeDeserializer.isFailed(record)).isTrue();
+
+		forwarder.forward(record, new IllegalStateException("undeserializable"));
+		ProducerRecord<String, byte[]> forwarded = producer.history().get(0);
+		assertThat(forwarded.topic()).isEqualTo("retry.t-dlt");
+		assertThat(forwarded.value()).isEqualTo(poison);
+		assertThat(forwarded.headers().lastHeader(FailSafeDeserializer.EXCEPTION_HEADER)).isNotNull();
+		assertThat(forwarded.headers().lastHeader(FailSafeDeserializer.VALUE_HEADER)).isNull();
+	}
+
+	@Test
+	public void testDelayGate() throws InterruptedException {
+		TopicPartition partition = new TopicPartition("retry.t-retry-1s", 0);
+		MockConsumer<String, PersonModel> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+		consumer.assign(Collections.singletonList(partition));
+		Map<TopicPartition, Long> beginning = new HashMap<>();
+		beginning.put(partition, 0L);
+		consumer.updateBeginningOffsets(beginning);
+
+		long now = System.currentTimeMillis();
+		ConsumerRecord<String, PersonModel> due = delayed(0, now - 1);
+		ConsumerRecord<String, PersonModel> later = delayed(1, now + 200);
+		ConsumerRecord<String, PersonModel> after = delayed(2, now - 1);
+
+		RetryDelayGate gate = new RetryDelayGate();
+		List<ConsumerRecord<String, PersonModel>> processed = gate.due(Arrays.asList(due, later, after), consumer);
+		assertThat(processed).containsExactly(due);
+		assertThat(consumer.paused()).containsExactly(partition);
+		assertThat(consumer.position(partition)).isEqualTo(1);
+
+		gate.resumeDue(consumer);
+		assertThat(consumer.paused()).containsExactly(partition);
+		Thread.sleep(250);
+		gate.resumeDue(consumer);
+		assertThat(consumer.paused()).isEmpty();
+	}
+
+	private static ConsumerRecord<String, PersonModel> received(ProducerRecord<String, byte[]> forwarded,
+			long offset) {
+		ConsumerRecord<String, PersonModel> record = new ConsumerRecord<>(forwarded.topic(), 0, offset,
+				forwarded.key(), new PersonModel("Roignant", "Cédric"));
+		forwarded.headers().forEach(record.headers()::add);
+		return record;
+	}
+
+	private static ConsumerRecord<String, PersonModel> delayed(long offset, long due) {
+		ConsumerRecord<String, PersonModel> record = new ConsumerRecord<>("retry.t-retry-1s", 0, offset, "key",
+				new PersonModel("Roignant", "Cédric"));
+		record.headers().add(RetryHeaders.DUE, ByteBuffer.allocate(8).putLong(due).array());
+		return record;
+	}
+
+	private static int intHeader(ProducerRecord<String, byte[]> record, String key) {
+		return ByteBuffer.wrap(record.headers().lastHeader(key).value()).getInt();
+	}
+
+}
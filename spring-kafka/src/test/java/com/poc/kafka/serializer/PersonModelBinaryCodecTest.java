@@ -0,0 +1,101 @@
+package com.poc.kafka.serializer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Date;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.Test;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import com.poc.kafka.model.PersonModel;
+
+/**
+ * Round trips of the binary PersonModel codec and of the per topic routing.
+ *
+ * @author kali
+ *
+ */
+public class PersonModelBinaryCodecTest {
+
+	private final PersonModelBinarySerializer serializer = new PersonModelBinarySerializer();
+
+	private final PersonModelBinaryDeserializer deserializer = new PersonModelBinaryDeserializer();
+
+	@Test
+	public void testRoundTrip() {
+		PersonModel person = new PersonModel("Roignant", "Cédric € 😀");
+		byte[] data = serializer.serialize("t", person);
+
+		assertThat(data[0]).isEqualTo(PersonModelBinarySerializer.VERSION);
+		PersonModel read = deserializer.deserialize("t", data);
+		assertThat(read.getName()).isEqualTo(person.getName());
+		assertThat(read.getLastname()).isEqualTo(person.getLastname());
+		assertThat(read.getDate()).isEqualTo(person.getDate());
+	}
+
+	@Test
+	public void testNullFields() {
+		PersonModel person = new PersonModel();
+		PersonModel read = deserializer.deserialize("t", serializer.serialize("t", person));
+
+		assertThat(read.getName()).isNull();
+		assertThat(read.getLastname()).isNull();
+		assertThat(read.getDate()).isNull();
+	}
+
+	@Test
+	public void testLongStringsGrowTheScratchBuffer() {
+		StringBuilder name = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			name.append("é");
+		}
+		PersonModel person = new PersonModel(name.toString(), "lastname");
+		person.setDate(new Date(0));
+
+		PersonModel read = deserializer.deserialize("t", serializer.serialize("t", person));
+		assertThat(read.getName()).isEqualTo(person.getName());
+		assertThat(read.getDate()).isEqualTo(new Date(0));
+	}
+
+	@Test(expected = SerializationException.class)
+	public void testNegativeStringLengthIsRejected() {
+		byte[] data = serializer.serialize("t", new PersonModel("Roignant", "Cédric"));
+		writeNameLength(data, -2);
+		deserializer.deserialize("t", data);
+	}
+
+	@Test(expected = SerializationException.class)
+	public void testOverflowingStringLengthIsRejected() {
+		byte[] data = serializer.serialize("t", new PersonModel("Roignant", "Cédric"));
+		writeNameLength(data, Integer.MAX_VALUE);
+		deserializer.deserialize("t", data);
+	}
+
+	@Test
+	public void testRoutingPerTopic() {
+		TopicRoutingSerializer<PersonModel> routingSerializer = new TopicRoutingSerializer<PersonModel>(
+				new JsonSerializer<>()).route("binary.t", serializer);
+		TopicRoutingDeserializer<PersonModel> routingDeserializer = new TopicRoutingDeserializer<PersonModel>(
+				new JsonDeserializer<>(PersonModel.class)).route("binary.t", deserializer);
+		PersonModel person = new PersonModel("Roignant", "Cédric");
+
+		byte[] binary = routingSerializer.serialize("binary.t", person);
+		byte[] json = routingSerializer.serialize("json.t", person);
+
+		assertThat(binary[0]).isEqualTo(PersonModelBinarySerializer.VERSION);
+		assertThat(json[0]).isEqualTo((byte) '{');
+		assertThat(routingDeserializer.deserialize("binary.t", binary).getName()).isEqualTo("Roignant");
+		assertThat(routingDeserializer.deserialize("json.t", json).getName()).isEqualTo("Roignant");
+	}
+
+	// The name length is the int right after the version byte.
+	private static void writeNameLength(byte[] data, int length) {
+		data[1] = (byte) (length >>> 24);
+		data[2] = (byte) (length >>> 16);
+		data[3] = (byte) (length >>> 8);
+		data[4] = (byte) length;
+	}
+
+}
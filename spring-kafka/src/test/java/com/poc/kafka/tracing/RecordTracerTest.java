@@ -0,0 +1,79 @@
+package com.poc.kafka.tracing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.Test;
+
+import com.poc.kafka.metrics.KafkaMetrics;
+import com.poc.kafka.metrics.TopicMetrics;
+
+/**
+ * Checks the stamping of the sampled records and the latency breakdown of the
+ * traced ones.
+ *
+ * @author kali
+ *
+ */
+public class RecordTracerTest {
+
+	private static final String TOPIC = "tracing.t";
+
+	private final KafkaMetrics kafkaMetrics = new KafkaMetrics();
+
+	@Test
+	public void testSampleRateBoundsStampEverythingOrNothing() {
+		Headers stamped = new RecordHeaders();
+		assertThat(new RecordTracer(kafkaMetrics, 1, 0).stamp(stamped)).isTrue();
+		assertThat(RecordTracer.getLong(stamped, TraceHeaders.PRODUCED_AT))
+				.isBetween(System.currentTimeMillis() - 1000, System.currentTimeMillis());
+		assertThat(stamped.lastHeader(TraceHeaders.TRACE_ID).value()).hasSize(8);
+
+		Headers skipped = new RecordHeaders();
+		assertThat(new RecordTracer(kafkaMetrics, 0, 0).stamp(skipped)).isFalse();
+		assertThat(skipped.toArray()).isEmpty();
+	}
+
+	@Test
+	public void testTracedRecordSplitsQueueAppendAndProcessingTimes() throws Exception {
+		RecordTracer tracer = new RecordTracer(kafkaMetrics, 1, 0);
+		long now = System.currentTimeMillis();
+		Headers headers = new RecordHeaders();
+		tracer.stamp(headers);
+		headers.remove(TraceHeaders.PRODUCED_AT);
+		headers.add(TraceHeaders.PRODUCED_AT, ByteBuffer.allocate(8).putLong(now - 500).array());
+
+		tracer.trace(record(now - 400, TimestampType.LOG_APPEND_TIME, headers), r -> Thread.sleep(50));
+
+		TopicMetrics metrics = kafkaMetrics.topic(TOPIC);
+		assertThat(metrics.getQueueLatency().getCount()).isEqualTo(1);
+		assertThat(metrics.getQueueLatency().getMaxMicros()).isGreaterThanOrEqualTo(500_000);
+		assertThat(metrics.getAppendLatency().getMaxMicros()).isEqualTo(100_000);
+		assertThat(metrics.getProcessingLatency().getMaxMicros()).isGreaterThanOrEqualTo(50_000);
+	}
+
+	@Test
+	public void testRecordWithoutTraceIsOnlyHandled() throws Exception {
+		RecordTracer tracer = new RecordTracer(kafkaMetrics, 1, 0);
+		int[] handled = new int[1];
+
+		tracer.trace(record(System.currentTimeMillis(), TimestampType.CREATE_TIME, new RecordHeaders()),
+				r -> handled[0]++);
+
+		assertThat(handled[0]).isEqualTo(1);
+		Map<String, Map<String, Object>> topics = kafkaMetrics.getTopicMetrics();
+		assertThat(topics).doesNotContainKey(TOPIC);
+	}
+
+	private static ConsumerRecord<String, String> record(long timestamp, TimestampType timestampType,
+			Headers headers) {
+		return new ConsumerRecord<>(TOPIC, 0, 0, timestamp, timestampType, 0L, 3, 5, "key", "value", headers);
+	}
+
+}
@@ -0,0 +1,228 @@
+package com.poc.kafka.window;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Test;
+
+import com.poc.kafka.model.PersonModel;
+import com.poc.kafka.retry.RetryHeaders;
+
+/**
+ * Checks the window assignment, the watermark based closing, per partition,
+ * and the aggregates of the WindowedAggregator.
+ *
+ * @author kali
+ *
+ */
+public class WindowedAggregatorTest {
+
+	private static final TopicPartition P0 = new TopicPartition("window.t", 0);
+
+	private static final TopicPartition P1 = new TopicPartition("window.t", 1);
+
+	private final List<WindowResult> results = new ArrayList<>();
+
+	@Test
+	public void testTumblingWindows() {
+		WindowedAggregator aggregator = new WindowedAggregator(WindowSpec.tumbling(1000), false, results::add);
+		aggregator.add(P0, person("a"), 100);
+		aggregator.add(P0, person("a"), 200);
+		aggregator.add(P0, person("b"), 999);
+		aggregator.add(P0, person("c"), 1000);
+		assertThat(results).hasSize(1);
+		assertResult(results.get(0), 0, 3, 2, 2);
+
+		aggregator.add(P0, person("c"), 2500);
+		assertThat(results).hasSize(2);
+		assertResult(results.get(1), 1000, 1, 1, 1);
+		assertThat(aggregator.getOpenWindows()).isEqualTo(1);
+
+		aggregator.flush();
+		assertResult(results.get(2), 2000, 1, 1, 1);
+		assertThat(aggregator.getEmitted()).isEqualTo(3);
+	}
+
+	@Test
+	public void testHoppingWindows() {
+		WindowedAggregator aggregator = new WindowedAggregator(WindowSpec.hopping(1000, 500), false, results::add);
+		// In the windows starting at 0 and 500.
+		aggregator.add(P0, person("a"), 700);
+		// In the windows starting at 500 and 1000.
+		aggregator.add(P0, person("b"), 1200);
+		aggregator.flush();
+		assertThat(results).hasSize(3);
+		assertResult(results.get(0), 0, 1, 1, 1);
+		assertResult(results.get(1), 500, 2, 2, 1);
+		assertResult(results.get(2), 1000, 1, 1, 1);
+	}
+
+	@Test
+	public void testAllowedLateness() {
+		WindowedAggregator aggregator = new WindowedAggregator(WindowSpec.tumbling(1000).withAllowedLateness(500),
+				false, results::add);
+		aggregator.add(P0, person("a"), 900);
+		aggregator.add(P0, person("b"), 1400);
+		// Late but within the allowed lateness of the first window.
+		aggregator.add(P0, person("c"), 950);
+		assertThat(results).isEmpty();
+
+		aggregator.add(P0, person("d"), 1500);
+		assertThat(results).hasSize(1);
+		assertResult(results.get(0), 0, 2, 2, 1);
+
+		// Its window is closed.
+		aggregator.add(P0, person("e"), 999);
+		assertThat(aggregator.getLate()).isEqualTo(1);
+		aggregator.flush();
+		assertResult(results.get(1), 1000, 2, 2, 1);
+	}
+
+	@Test
+	public void testEventTime() {
+		WindowedAggregator aggregator = new WindowedAggregator(WindowSpec.tumbling(1000), true, results::add);
+		PersonModel person = person("a");
+		person.setDate(new Date(5500));
+		aggregator.add(P0, person, 100);
+		// Without a date, the record timestamp is used.
+		PersonModel undated = person("b");
+		undated.setDate(null);
+		aggregator.add(P0, undated, 5100);
+		aggregator.flush();
+		assertThat(results).hasSize(1);
+		assertResult(results.get(0), 5000, 2, 2, 1);
+	}
+
+	@Test
+	public void testManyDistinctPersons() {
+		WindowedAggregator aggregator = new WindowedAggregator(WindowSpec.tumbling(1000), false, results::add);
+		for (int i = 0; i < 10000; i++) {
+			aggregator.add(P0, person("name" + i), 10);
+			aggregator.add(P0, person("name" + (i % 100)), 20);
+		}
+		aggregator.flush();
+		assertResult(results.get(0), 0, 20000, 10000, 101);
+	}
+
+	@Test
+	public void testWindowsCloseAtTheLowestPartitionWatermark() {
+		WindowedAggregator aggregator = new WindowedAggregator(WindowSpec.tumbling(1000), false, results::add);
+		aggregator.add(P0, person("a"), 100);
+		aggregator.add(P1, person("b"), 200);
+		// The first partition is ahead, the second one still fills the first window.
+		aggregator.add(P0, person("c"), 2500);
+		assertThat(results).isEmpty();
+		assertThat(aggregator.getWatermark()).isEqualTo(200);
+		aggregator.add(P1, person("d"), 900);
+		assertThat(aggregator.getLate()).isZero();
+
+		aggregator.add(P1, person("e"), 1100);
+		assertThat(results).hasSize(1);
+		assertResult(results.get(0), 0, 3, 3, 1);
+		assertThat(aggregator.getPartitionWatermarks()).containsEntry(P0.toString(), 2500L)
+				.containsEntry(P1.toString(), 1100L);
+	}
+
+	@Test
+	public void testRevokedPartitionNoLongerHoldsTheWatermark() {
+		WindowedAggregator aggregator = new WindowedAggregator(WindowSpec.tumbling(1000), false, results::add);
+		aggregator.add(P0, person("a"), 100);
+		aggregator.add(P1, person("b"), 200);
+		aggregator.add(P0, person("c"), 2500);
+		assertThat(results).isEmpty();
+
+		aggregator.release(Collections.singletonList(P1));
+		assertThat(results).hasSize(1);
+		assertResult(results.get(0), 0, 2, 2, 1);
+		assertThat(aggregator.getWatermark()).isEqualTo(2500);
+		assertThat(aggregator.getPartitionWatermarks()).containsOnlyKeys(P0.toString());
+	}
+
+	@Test
+	public void testIdlePartitionNoLongerHoldsTheWatermark() {
+		AtomicLong now = new AtomicLong();
+		WindowedAggregator aggregator = new WindowedAggregator(WindowSpec.tumbling(1000), false, 10000,
+				results::add, now::get);
+		// The first partition goes idle after a single record.
+		aggregator.add(P0, person("a"), 100);
+		now.set(5000);
+		aggregator.add(P1, person("b"), 200);
+		aggregator.add(P1, person("c"), 1500);
+		assertThat(results).isEmpty();
+
+		now.set(10000);
+		aggregator.add(P1, person("d"), 1600);
+		assertThat(results).hasSize(1);
+		assertResult(results.get(0), 0, 2, 2, 1);
+		assertThat(aggregator.getPartitionWatermarks()).containsOnlyKeys(P1.toString());
+		assertThat(aggregator.getExpiredPartitions()).isEqualTo(1);
+
+		// It counts again from its next record, and the other one expires while
+		// the listeners are idle.
+		now.set(12000);
+		aggregator.add(P0, person("e"), 2500);
+		assertThat(aggregator.getWatermark()).isEqualTo(1600);
+		now.set(20000);
+		aggregator.expireIdlePartitions();
+		assertThat(results).hasSize(2);
+		assertResult(results.get(1), 1000, 2, 2, 1);
+		assertThat(aggregator.getPartitionWatermarks()).containsOnlyKeys(P0.toString());
+	}
+
+	@Test
+	public void testWindowsCloseAtTheHighestWatermarkOnceEveryPartitionIsIdle() {
+		AtomicLong now = new AtomicLong();
+		WindowedAggregator aggregator = new WindowedAggregator(WindowSpec.tumbling(1000), false, 10000,
+				results::add, now::get);
+		aggregator.add(P0, person("a"), 100);
+		now.set(5000);
+		aggregator.add(P1, person("b"), 2500);
+		now.set(9000);
+		aggregator.expireIdlePartitions();
+		assertThat(results).isEmpty();
+
+		now.set(15000);
+		aggregator.expireIdlePartitions();
+		assertThat(results).hasSize(1);
+		assertResult(results.get(0), 0, 1, 1, 1);
+		assertThat(aggregator.getWatermark()).isEqualTo(2500);
+		assertThat(aggregator.getPartitionWatermarks()).isEmpty();
+	}
+
+	@Test
+	public void testRetryRecordsDoNotMoveTheWatermark() {
+		WindowedAggregator aggregator = new WindowedAggregator(WindowSpec.tumbling(1000), false, results::add);
+		aggregator.add(P0, person("a"), 100);
+		ConsumerRecord<String, PersonModel> retried = new ConsumerRecord<>("window.t-retry-1000", 0, 0, 5000L,
+				null, 0L, 0, 0, "k", person("b"));
+		retried.headers().add(RetryHeaders.ORIGINAL_TOPIC, "window.t".getBytes());
+		aggregator.add(retried);
+		assertThat(results).isEmpty();
+		assertThat(aggregator.getPartitionWatermarks()).containsOnlyKeys(P0.toString());
+		assertThat(aggregator.getWatermark()).isEqualTo(100);
+
+		aggregator.flush();
+		assertThat(results).hasSize(2);
+		assertResult(results.get(1), 5000, 1, 1, 1);
+	}
+
+	private static PersonModel person(String name) {
+		return new PersonModel(name, "lastname");
+	}
+
+	private static void assertResult(WindowResult result, long start, long count, long distinct, long max) {
+		assertThat(result.getWindowStart()).isEqualTo(start);
+		assertThat(result.getWindowEnd()).isEqualTo(start + 1000);
+		assertThat(result.getCount()).isEqualTo(count);
+		assertThat(result.getDistinctPersons()).isEqualTo(distinct);
+		assertThat(result.getMaxPerPerson()).isEqualTo(max);
+	}
+
+}